@@ -12,12 +12,18 @@ import java.util.Scanner;
  */
 public class CLI {
     private final ConnectionManager connection;
+    private final int udpPort;  // Porta per le notifiche UDP, 0 = nessuna
     private final Scanner scanner;
     private boolean loggedIn;
     private String currentUsername;
 
     public CLI(ConnectionManager connection) {
+        this(connection, 0);
+    }
+
+    public CLI(ConnectionManager connection, int udpPort) {
         this.connection = connection;
+        this.udpPort = udpPort;
         this.scanner = new Scanner(System.in);
         this.loggedIn = false;
         this.currentUsername = null;
@@ -167,6 +173,9 @@ public class CLI {
         request.addProperty("operation", "login");
         request.addProperty("username", username);
         request.addProperty("psw", password);
+        if (udpPort > 0) {
+            request.addProperty("udpPort", udpPort);
+        }
 
         JsonObject response = connection.sendRequest(request);
 
@@ -0,0 +1,154 @@
+package client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Thread di I/O condiviso da tutte le connessioni del processo client.
+ * Un solo Selector serve qualsiasi numero di ConnectionManager: un bot o un
+ * gateway può tenere aperte migliaia di sessioni senza un thread per ciascuna.
+ *
+ * Le callback dei CompletableFuture restituiti da ConnectionManager vengono
+ * eseguite su questo thread: non devono bloccare (usare le varianti *Async).
+ */
+public class ClientEventLoop implements Runnable {
+    private static final int READ_BUFFER_SIZE = 65536;
+
+    private static volatile ClientEventLoop instance;
+
+    private final Selector selector;
+    private final ByteBuffer readBuffer;
+
+    // Connessioni da registrare e connessioni con dati da inviare
+    private final Queue<ConnectionManager> pendingRegistrations;
+    private final Queue<ConnectionManager> pendingWrites;
+    private final AtomicBoolean wakeupPending;
+
+    private ClientEventLoop() throws IOException {
+        this.selector = Selector.open();
+        this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        this.pendingRegistrations = new ConcurrentLinkedQueue<>();
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean(false);
+    }
+
+    /**
+     * Restituisce il loop condiviso, avviandolo alla prima chiamata.
+     */
+    public static ClientEventLoop getInstance() throws IOException {
+        ClientEventLoop loop = instance;
+        if (loop == null) {
+            synchronized (ClientEventLoop.class) {
+                loop = instance;
+                if (loop == null) {
+                    loop = new ClientEventLoop();
+                    Thread thread = new Thread(loop, "client-io");
+                    thread.setDaemon(true);
+                    thread.start();
+                    instance = loop;
+                }
+            }
+        }
+        return loop;
+    }
+
+    void register(ConnectionManager connection) {
+        pendingRegistrations.offer(connection);
+        wakeup();
+    }
+
+    void requestWrite(ConnectionManager connection) {
+        pendingWrites.offer(connection);
+        wakeup();
+    }
+
+    /**
+     * Sveglia il Selector una sola volta per iterazione del loop.
+     */
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                wakeupPending.set(false);
+
+                registerPending();
+                processPendingWrites();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    ConnectionManager connection = (ConnectionManager) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            connection.onReadable(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable() && connection.flush()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                        }
+                    } catch (IOException e) {
+                        connection.fail(e);
+                    }
+                }
+
+            } catch (IOException e) {
+                System.err.println("✗ Errore nel loop di I/O del client: " + e.getMessage());
+            }
+        }
+    }
+
+    private void registerPending() {
+        ConnectionManager connection;
+        while ((connection = pendingRegistrations.poll()) != null) {
+            try {
+                SelectionKey key = connection.getChannel().register(selector, SelectionKey.OP_READ, connection);
+                connection.setSelectionKey(key);
+
+                // Richieste inviate prima della registrazione
+                if (connection.hasOutbound()) {
+                    pendingWrites.offer(connection);
+                }
+            } catch (ClosedChannelException e) {
+                connection.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Prova a inviare subito: OP_WRITE solo se il socket è pieno.
+     */
+    private void processPendingWrites() {
+        ConnectionManager connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            connection.clearWriteScheduled();
+
+            SelectionKey key = connection.getSelectionKey();
+            if (key == null || !key.isValid()) {
+                continue;  // Non ancora registrata (verrà ripresa) o chiusa
+            }
+
+            try {
+                if (!connection.flush()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                connection.fail(e);
+            }
+        }
+    }
+}
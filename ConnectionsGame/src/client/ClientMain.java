@@ -9,6 +9,7 @@ public class ClientMain {
     
     public static void main(String[] args) {
         ConnectionManager connection = null;
+        NotificationListener notifications = null;
         
         try {
             // 1. Carica configurazione
@@ -20,15 +21,27 @@ public class ClientMain {
             
             // 2. Connetti al server
             connection = new ConnectionManager();
+            connection.setCompression(config.isCompressionEnabled());
             boolean connected = connection.connect(serverHost, serverPort);
             
             if (!connected) {
                 System.err.println("✗ Impossibile connettersi al server");
                 System.exit(1);
             }
+            connection.startHeartbeat(config.getHeartbeatSeconds());
             
-            // 3. Avvia l'interfaccia CLI
-            CLI cli = new CLI(connection);
+            // 3. Avvia la ricezione delle notifiche UDP
+            int udpPort = 0;
+            try {
+                notifications = new NotificationListener(config.getUdpPort());
+                notifications.start();
+                udpPort = notifications.getPort();
+            } catch (Exception e) {
+                System.err.println("✗ Notifiche UDP non disponibili: " + e.getMessage());
+            }
+            
+            // 4. Avvia l'interfaccia CLI
+            CLI cli = new CLI(connection, udpPort);
             cli.start();
             
         } catch (Exception e) {
@@ -40,6 +53,9 @@ public class ClientMain {
             if (connection != null) {
                 connection.disconnect();
             }
+            if (notifications != null) {
+                notifications.close();
+            }
         }
     }
 }
@@ -1,97 +1,534 @@
 package client;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Gestisce la connessione TCP con il server.
  * Invia richieste JSON e riceve risposte JSON.
+ *
+ * Il channel è non-bloccante e servito dal ClientEventLoop condiviso:
+ * sendRequestAsync non attende la risposta, quindi sulla stessa connessione
+ * possono esserci molte richieste in volo. Ogni richiesta porta un requestId
+ * che il server rimanda nella risposta; le risposte senza id (es. richiesta
+ * non decodificabile) completano la richiesta più vecchia, dato che il server
+ * risponde nell'ordine di arrivo.
+ *
+ * Con la compressione attiva la connessione si apre con il preambolo del
+ * protocollo (0xC0 'C' 'G' flags, vedi server.protocol.ProtocolSession):
+ * i messaggi sono JSON preceduti dalla lunghezza e le risposte grandi
+ * arrivano compresse, decompresse da un unico Inflater per connessione.
+ *
+ * Dopo l'operazione "subscribe" il server invia anche eventi push (campo
+ * "event"), che non corrispondono a nessuna richiesta e vanno al pushListener.
+ *
+ * Con l'heartbeat attivo, una connessione senza richieste per un intervallo
+ * invia "ping": il server non la chiude per inattività mentre il giocatore
+ * pensa alla prossima proposta.
  */
 public class ConnectionManager {
-    private Socket socket;
-    private BufferedReader in;
-    private PrintWriter out;
-    private Gson gson;
-    private boolean connected;
-    
+    private static final byte DELIMITER = '\n';
+    private static final byte[] PREFACE = { (byte) 0xC0, 'C', 'G' };
+    private static final int FLAG_DEFLATE = 0x02;
+
+    // Thread condiviso dagli heartbeat di tutte le connessioni del processo
+    private static volatile ScheduledExecutorService heartbeatTimer;
+
+    private SocketChannel channel;
+    private ClientEventLoop eventLoop;
+    private volatile SelectionKey selectionKey;
+    private final Gson gson;
+    private volatile boolean connected;
+
+    // Richieste in attesa di risposta, ordinate per id (= ordine di invio)
+    private final ConcurrentSkipListMap<Long, CompletableFuture<JsonObject>> pending;
+    private final AtomicLong nextRequestId;
+
+    // Istante dell'ultima richiesta inviata e heartbeat pianificato (null = disattivato)
+    private volatile long lastRequestNanos;
+    private ScheduledFuture<?> heartbeat;
+
+    // Riceve gli eventi push (chiamato sul thread di I/O)
+    private volatile Consumer<JsonObject> pushListener;
+
+    // Richieste codificate e non ancora scritte sul socket
+    private final Queue<ByteBuffer> outbound;
+    private final AtomicBoolean writeScheduled;
+
+    // Byte della risposta incompleta (solo thread di I/O)
+    private byte[] partial;
+    private int partialLength;
+
+    // Protocollo con prefisso di lunghezza (solo se la compressione è richiesta)
+    private boolean compression;
+    private boolean lengthPrefixed;
+    private Inflater inflater;
+    private byte[] inflateBuffer;
+    private int headerValue;
+    private int headerShift;
+    private byte[] frame;
+    private int frameFilled;
+    private boolean frameCompressed;
+
     public ConnectionManager() {
         this.gson = new Gson();
         this.connected = false;
+        this.pending = new ConcurrentSkipListMap<>();
+        this.nextRequestId = new AtomicLong(1);
+        this.outbound = new ConcurrentLinkedQueue<>();
+        this.writeScheduled = new AtomicBoolean(false);
+        this.partial = new byte[1024];
+        this.partialLength = 0;
+        this.compression = false;
+    }
+
+    /**
+     * Chiede al server di comprimere le risposte grandi (da chiamare prima di connect).
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
     }
-    
+
     /**
      * Connette al server.
      */
     public boolean connect(String host, int port) {
         try {
             System.out.println("Connessione a " + host + ":" + port + "...");
-            
-            socket = new Socket(host, port);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new PrintWriter(socket.getOutputStream(), true);  // auto-flush
-            
+
+            // Connessione bloccante, poi il channel passa al loop non-bloccante
+            channel = SocketChannel.open(new InetSocketAddress(host, port));
+            if (compression) {
+                negotiateCompression();
+            }
+            channel.configureBlocking(false);
+
+            eventLoop = ClientEventLoop.getInstance();
             connected = true;
+            eventLoop.register(this);
+
             System.out.println("✓ Connesso al server!\n");
             return true;
-            
+
         } catch (IOException e) {
             System.err.println("✗ Errore di connessione: " + e.getMessage());
+            closeChannel();
             return false;
         }
     }
-    
+
+    /**
+     * Invia il preambolo e attende la conferma del server (channel ancora bloccante).
+     */
+    private void negotiateCompression() throws IOException {
+        ByteBuffer preface = ByteBuffer.allocate(PREFACE.length + 1);
+        preface.put(PREFACE).put((byte) FLAG_DEFLATE).flip();
+        while (preface.hasRemaining()) {
+            channel.write(preface);
+        }
+
+        ByteBuffer ack = ByteBuffer.allocate(PREFACE.length + 1);
+        while (ack.hasRemaining()) {
+            if (channel.read(ack) == -1) {
+                throw new IOException("Server ha chiuso la connessione");
+            }
+        }
+
+        for (int i = 0; i < PREFACE.length; i++) {
+            if (ack.get(i) != PREFACE[i]) {
+                throw new IOException("Risposta al preambolo non valida");
+            }
+        }
+
+        lengthPrefixed = true;
+        if ((ack.get(PREFACE.length) & FLAG_DEFLATE) != 0) {
+            inflater = new Inflater();
+            inflateBuffer = new byte[4096];
+            System.out.println("✓ Compressione attiva");
+        }
+    }
+
     /**
      * Invia una richiesta JSON al server e restituisce la risposta.
+     * Variante bloccante di sendRequestAsync.
      */
     public JsonObject sendRequest(JsonObject request) throws IOException {
+        try {
+            return sendRequestAsync(request).get();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Attesa della risposta interrotta");
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Invia una richiesta senza attendere la risposta.
+     * La richiesta non viene modificata: l'id è aggiunto a una copia.
+     * @return future completato con la risposta del server
+     */
+    public CompletableFuture<JsonObject> sendRequestAsync(JsonObject request) {
         if (!connected) {
             throw new IllegalStateException("Non connesso al server");
         }
-        
-        String requestStr = gson.toJson(request);
-        
-        // Invia la richiesta
-        out.println(requestStr);
-        
-        // Leggi la risposta
-        String responseStr = in.readLine();
-        
-        if (responseStr == null) {
-            throw new IOException("Server ha chiuso la connessione");
-        }
-        
-        // Parse della risposta
-        return gson.fromJson(responseStr, JsonObject.class);
-    }
-    
+
+        long requestId = nextRequestId.getAndIncrement();
+        lastRequestNanos = System.nanoTime();
+        JsonObject tagged = request.deepCopy();
+        tagged.addProperty("requestId", requestId);
+
+        // Registrata prima dell'invio: la risposta non può arrivare prima
+        CompletableFuture<JsonObject> future = new CompletableFuture<>();
+        pending.put(requestId, future);
+
+        outbound.offer(encode(gson.toJson(tagged)));
+
+        if (writeScheduled.compareAndSet(false, true)) {
+            eventLoop.requestWrite(this);
+        }
+
+        // Connessione chiusa nel frattempo: fail() potrebbe non averla vista
+        if (!connected && pending.remove(requestId) != null) {
+            future.completeExceptionally(new IOException("Server ha chiuso la connessione"));
+        }
+
+        return future;
+    }
+
+    private ByteBuffer encode(String json) {
+        if (!lengthPrefixed) {
+            return ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(5 + payload.length);
+        int length = payload.length;
+        while ((length & ~0x7F) != 0) {
+            buffer.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length).put(payload).flip();
+        return buffer;
+    }
+
+    /**
+     * Avvia l'heartbeat: se per intervalSeconds non viene inviata nessuna
+     * richiesta, invia "ping". Va scelto sotto la metà del timeout di
+     * inattività del server (server.idle.timeout.seconds).
+     * @param intervalSeconds 0 = nessun heartbeat
+     */
+    public synchronized void startHeartbeat(int intervalSeconds) {
+        if (intervalSeconds <= 0 || heartbeat != null) {
+            return;
+        }
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        lastRequestNanos = System.nanoTime();
+        heartbeat = heartbeatTimer().scheduleAtFixedRate(() -> {
+            if (!connected || System.nanoTime() - lastRequestNanos < intervalNanos) {
+                return;  // Connessione già attiva di recente
+            }
+            JsonObject ping = new JsonObject();
+            ping.addProperty("operation", "ping");
+            try {
+                sendRequestAsync(ping);  // Risposta ignorata: serve solo il traffico
+            } catch (IllegalStateException e) {
+                // Disconnesso nel frattempo
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private static ScheduledExecutorService heartbeatTimer() {
+        ScheduledExecutorService timer = heartbeatTimer;
+        if (timer == null) {
+            synchronized (ConnectionManager.class) {
+                timer = heartbeatTimer;
+                if (timer == null) {
+                    timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "client-heartbeat");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    heartbeatTimer = timer;
+                }
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Imposta chi riceve gli eventi push del server (non deve bloccare).
+     */
+    public void setPushListener(Consumer<JsonObject> pushListener) {
+        this.pushListener = pushListener;
+    }
+
+    /**
+     * Numero di richieste inviate e ancora senza risposta.
+     */
+    public int getPendingRequests() {
+        return pending.size();
+    }
+
+    // ==================== THREAD DI I/O ====================
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+
+    void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
+    }
+
+    boolean hasOutbound() {
+        return !outbound.isEmpty();
+    }
+
+    void clearWriteScheduled() {
+        writeScheduled.set(false);
+    }
+
+    /**
+     * Scrive le richieste accodate.
+     * @return true se tutto è stato inviato, false se il socket è pieno
+     */
+    boolean flush() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = outbound.peek()) != null) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return false;
+            }
+            outbound.poll();
+        }
+        return true;
+    }
+
+    /**
+     * Legge le risposte disponibili e completa le richieste corrispondenti.
+     */
+    void onReadable(ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            int bytesRead = channel.read(buffer);
+
+            if (bytesRead == -1) {
+                fail(new IOException("Server ha chiuso la connessione"));
+                return;
+            }
+            if (bytesRead == 0) {
+                return;
+            }
+
+            buffer.flip();
+            if (lengthPrefixed) {
+                decodeFrames(buffer);
+            } else {
+                decodeLines(buffer);
+            }
+        }
+    }
+
+    private void decodeLines(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == DELIMITER) {
+                String line = new String(partial, 0, partialLength, StandardCharsets.UTF_8);
+                partialLength = 0;
+                if (!line.isBlank()) {
+                    complete(gson.fromJson(line, JsonObject.class));
+                }
+            } else {
+                if (partialLength == partial.length) {
+                    partial = Arrays.copyOf(partial, partial.length * 2);
+                }
+                partial[partialLength++] = b;
+            }
+        }
+    }
+
+    /**
+     * Messaggi preceduti da varint (lunghezza << 1 | compresso) se la
+     * compressione è stata accettata, altrimenti dalla sola lunghezza.
+     */
+    private void decodeFrames(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (frame == null) {
+                byte b = buffer.get();
+                headerValue |= (b & 0x7F) << headerShift;
+                if ((b & 0x80) != 0) {
+                    headerShift += 7;
+                    continue;
+                }
+
+                int header = headerValue;
+                headerValue = 0;
+                headerShift = 0;
+
+                frameCompressed = inflater != null && (header & 1) == 1;
+                frame = new byte[inflater != null ? header >>> 1 : header];
+                frameFilled = 0;
+            }
+
+            int count = Math.min(buffer.remaining(), frame.length - frameFilled);
+            buffer.get(frame, frameFilled, count);
+            frameFilled += count;
+
+            if (frameFilled == frame.length) {
+                String json = frameCompressed
+                    ? inflate(frame)
+                    : new String(frame, StandardCharsets.UTF_8);
+                frame = null;
+                complete(gson.fromJson(json, JsonObject.class));
+            }
+        }
+    }
+
+    /**
+     * Decomprime un messaggio: l'Inflater è unico per la connessione perché
+     * il server usa un dizionario condiviso tra i messaggi.
+     */
+    private String inflate(byte[] compressed) throws IOException {
+        synchronized (inflater) {
+            if (!connected) {
+                throw new IOException("Connessione chiusa");
+            }
+
+            inflater.setInput(compressed);
+            int length = 0;
+            try {
+                while (true) {
+                    int count = inflater.inflate(inflateBuffer, length, inflateBuffer.length - length);
+                    length += count;
+                    if (length == inflateBuffer.length) {
+                        inflateBuffer = Arrays.copyOf(inflateBuffer, inflateBuffer.length * 2);
+                    } else if (count == 0) {
+                        break;
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Risposta compressa non valida: " + e.getMessage());
+            }
+            return new String(inflateBuffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void complete(JsonObject response) {
+        // Evento push: non è la risposta a una richiesta
+        if (response.has("event")) {
+            Consumer<JsonObject> listener = pushListener;
+            if (listener != null) {
+                listener.accept(response);
+            }
+            return;
+        }
+
+        CompletableFuture<JsonObject> future = null;
+
+        JsonElement id = response.remove("requestId");
+        if (id != null && id.isJsonPrimitive()) {
+            future = pending.remove(id.getAsLong());
+        }
+
+        // Risposta senza id: appartiene alla richiesta più vecchia
+        if (future == null) {
+            Map.Entry<Long, CompletableFuture<JsonObject>> oldest = pending.pollFirstEntry();
+            if (oldest == null) {
+                System.err.println("✗ Risposta inattesa dal server: " + response);
+                return;
+            }
+            future = oldest.getValue();
+        }
+
+        future.complete(response);
+    }
+
+    /**
+     * Chiude la connessione dopo un errore e fallisce le richieste in volo.
+     */
+    void fail(IOException cause) {
+        connected = false;
+        closeChannel();
+
+        synchronized (this) {
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+                heartbeat = null;
+            }
+        }
+
+        if (inflater != null) {
+            synchronized (inflater) {
+                inflater.end();
+            }
+        }
+
+        Map.Entry<Long, CompletableFuture<JsonObject>> entry;
+        while ((entry = pending.pollFirstEntry()) != null) {
+            entry.getValue().completeExceptionally(cause);
+        }
+    }
+
     /**
      * Chiude la connessione.
      */
     public void disconnect() {
-        connected = false;
-        
+        fail(new IOException("Connessione chiusa"));
+        System.out.println("✓ Disconnesso dal server");
+    }
+
+    private void closeChannel() {
         try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
+            if (selectionKey != null) {
+                selectionKey.cancel();
+            }
+            if (channel != null && channel.isOpen()) {
+                channel.close();
             }
-            System.out.println("✓ Disconnesso dal server");
         } catch (IOException e) {
             System.err.println("Errore durante disconnessione: " + e.getMessage());
         }
     }
-    
+
     /**
      * Verifica se è connesso.
      */
     public boolean isConnected() {
-        return connected && socket != null && !socket.isClosed();
+        return connected && channel != null && channel.isOpen();
     }
 }
@@ -0,0 +1,77 @@
+package client;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Riceve le notifiche UDP del server (inizio e fine partita) e le mostra.
+ * La porta viene comunicata al server nella richiesta di login.
+ */
+public class NotificationListener implements Runnable {
+    private static final int MAX_DATAGRAM_SIZE = 2048;
+
+    private final DatagramSocket socket;
+    private final Gson gson;
+
+    /**
+     * Apre il socket sulla porta richiesta; se è occupata (es. più client
+     * sulla stessa macchina) ne usa una libera scelta dal sistema.
+     */
+    public NotificationListener(int preferredPort) throws SocketException {
+        DatagramSocket opened;
+        try {
+            opened = new DatagramSocket(preferredPort);
+        } catch (SocketException e) {
+            opened = new DatagramSocket(0);
+        }
+        this.socket = opened;
+        this.gson = new Gson();
+    }
+
+    public void start() {
+        Thread thread = new Thread(this, "udp-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Porta locale su cui arrivano le notifiche.
+     */
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+
+        while (!socket.isClosed()) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                socket.receive(packet);
+
+                String json = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+                JsonObject notification = gson.fromJson(json, JsonObject.class);
+
+                System.out.println("\n[NOTIFICA] " + notification.get("message").getAsString());
+
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    System.err.println("✗ Errore ricezione notifica: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                System.err.println("✗ Notifica non valida: " + e.getMessage());
+            }
+        }
+    }
+
+    public void close() {
+        socket.close();
+    }
+}
@@ -114,6 +114,18 @@ public class ConfigManager {
         return getProperty("server.host", "localhost");
     }
 
+    public boolean isCompressionEnabled() {
+        return getBooleanProperty("client.compression", false);
+    }
+
+    /**
+     * Secondi senza richieste dopo cui il client invia "ping" (0 = mai).
+     * Deve restare sotto la metà di server.idle.timeout.seconds.
+     */
+    public int getHeartbeatSeconds() {
+        return getIntProperty("client.heartbeat.seconds", 0);
+    }
+
     public int getThreadPoolSize() {
         return getIntProperty("thread.pool.size", 20);
     }
@@ -0,0 +1,87 @@
+package server;
+
+import server.admission.AdmissionControl;
+import server.nio.RingBufferExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark del passaggio dei task ai worker NIO: ThreadPoolExecutor
+ * (AdmissionControl.newWorkerPool) contro RingBufferExecutor.
+ *
+ * Il produttore, come un reactor, passa una raffica di task e attende che
+ * siano eseguiti; si misura il costo medio per task. Stessa coda (1024
+ * posizioni) e stesso numero di worker per entrambi.
+ *
+ * COME USARLO:
+ *   java -cp bin:lib/gson-2.10.1.jar server.BenchmarkHandoff [worker] [ms per misura]
+ */
+public class BenchmarkHandoff {
+
+    private static final int CAPACITY = 1024;
+    private static final int[] BURSTS = {1, 16, 64};
+
+    public static void main(String[] args) {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        long measureMs = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        System.out.println("=== BENCHMARK: passaggio dei task ai worker ===\n");
+        System.out.println("Worker: " + workers + ", coda: " + CAPACITY + ", misura: " + measureMs + " ms");
+        System.out.println("Core disponibili: " + Runtime.getRuntime().availableProcessors() + "\n");
+
+        try {
+            int step = 1;
+            for (int burst : BURSTS) {
+                System.out.println(step++ + ". Raffiche da " + burst + " task...");
+                double threadPool = measure(new AdmissionControl("bench", CAPACITY, 0)
+                        .newWorkerPool("bench-pool", workers), burst, measureMs);
+                double ring = measure(new RingBufferExecutor("bench-ring", workers, CAPACITY,
+                        RingBufferExecutor.WaitStrategy.BLOCKING, 16), burst, measureMs);
+                System.out.printf("   threadpool: %8.0f ns/task%n", threadPool);
+                System.out.printf("   ringbuffer: %8.0f ns/task (%+.0f%%)%n%n",
+                        ring, (ring - threadPool) * 100 / threadPool);
+            }
+
+            System.out.println("BENCHMARK COMPLETATO");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il benchmark:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Riscaldamento per un terzo della durata, poi misura; chiude l'executor.
+     * @return nanosecondi medi per task
+     */
+    private static double measure(ExecutorService executor, int burst, long measureMs) throws InterruptedException {
+        AtomicLong done = new AtomicLong();
+        Runnable task = done::incrementAndGet;
+        double nanosPerTask = 0;
+
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            long stop = start + (round == 0 ? measureMs / 3 : measureMs) * 1_000_000L;
+            long expected = done.get();
+            long bursts = 0;
+
+            while (System.nanoTime() < stop) {
+                for (int i = 0; i < burst; i++) {
+                    executor.execute(task);
+                }
+                expected += burst;
+                while (done.get() < expected) {
+                    Thread.yield();
+                }
+                bursts++;
+            }
+            nanosPerTask = (double) (System.nanoTime() - start) / (bursts * burst);
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        return nanosPerTask;
+    }
+}
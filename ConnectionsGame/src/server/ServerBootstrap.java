@@ -0,0 +1,265 @@
+package server;
+
+import server.admission.AdmissionControl;
+import server.aio.AioTransport;
+import server.cluster.ClusterNode;
+import server.handler.TcpTransport;
+import server.log.AsyncLogger;
+import server.manager.ConfigManager;
+import server.manager.GameManager;
+import server.manager.UserManager;
+import server.nio.NioTransport;
+import server.notification.UdpNotifier;
+import server.partition.PartitionExecutor;
+import server.partition.PartitionedUserManager;
+import server.protocol.ProtocolSession;
+import server.ratelimit.RateLimiter;
+import server.transport.RequestPipeline;
+import server.transport.Transport;
+import server.util.JsonGameLoader;
+import server.util.UserPersistence;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Avvio e chiusura del server, comuni a tutti i trasporti.
+ *
+ * initialize() prepara configurazione, manager, persistenza, notifiche,
+ * cluster e prima partita; start() avvia un Transport sulla RequestPipeline
+ * condivisa; shutdown() esegue la chiusura ordinata.
+ */
+public class ServerBootstrap {
+    private final String configPath;
+
+    private PartitionExecutor partitions;
+    private UserManager userManager;
+    private GameManager gameManager;
+    private UdpNotifier udpNotifier;
+    private ClusterNode clusterNode;
+    private RateLimiter rateLimiter;
+    private AdmissionControl admission;
+    private JsonGameLoader gameLoader;
+    private UserPersistence userPersistence;
+    private RequestPipeline pipeline;
+    private Transport transport;
+    private long drainTimeoutMs;
+    private boolean closed;  // Protetto dal lock di shutdown()
+
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    public ServerBootstrap(String configPath) {
+        this.configPath = configPath;
+    }
+
+    /**
+     * Crea il trasporto indicato in configurazione (server.transport).
+     * @throws IllegalArgumentException se il nome non corrisponde a nessun trasporto
+     */
+    public static Transport createTransport(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "nio":
+                return new NioTransport();
+            case "tcp":
+                return new TcpTransport();
+            case "aio":
+                return new AioTransport();
+            default:
+                throw new IllegalArgumentException("Trasporto sconosciuto: " + name + " (nio | tcp | aio)");
+        }
+    }
+
+    /**
+     * Inizializza configurazione e servizi del server, senza aprire connessioni.
+     */
+    public RequestPipeline initialize() throws IOException {
+        // 1. Carica configurazione
+        System.out.println("1. Caricamento configurazione...");
+        ConfigManager.initialize(configPath);
+        ConfigManager config = ConfigManager.getInstance();
+        AsyncLogger.start(config);
+
+        drainTimeoutMs = config.getShutdownDrainTimeoutSeconds() * 1000L;
+        String gamesFile = config.getProperty("game.file.path");
+        int gameDurationMinutes = config.getIntProperty("game.duration.minutes");
+        long gameDurationMs = gameDurationMinutes * 60 * 1000L;
+
+        System.out.println("   Porta TCP: " + config.getTcpPort());
+        System.out.println("   Durata partita: " + gameDurationMinutes + " minuti\n");
+
+        // 2. Inizializza i manager
+        System.out.println("2. Inizializzazione manager...");
+        if (config.isPartitionEnabled()) {
+            partitions = new PartitionExecutor(config.getPartitionCount());
+            userManager = new PartitionedUserManager(partitions);
+        } else {
+            userManager = new UserManager();
+        }
+        userPersistence = new UserPersistence(config.getUsersFilePath());
+        userPersistence.load(userManager);
+        userPersistence.startPeriodic(userManager, config.getPersistenceIntervalSeconds());
+
+        gameLoader = new JsonGameLoader(gamesFile);
+        gameLoader.initialize();
+
+        gameManager = new GameManager(gameLoader, userManager, gameDurationMs);
+        if (partitions != null) {
+            gameManager.enablePartitions(partitions);
+        }
+        udpNotifier = UdpNotifier.startFor(gameManager);
+        clusterNode = ClusterNode.startFor(userManager, gameManager);
+        rateLimiter = RateLimiter.fromConfig();
+        admission = AdmissionControl.fromConfig("generale");
+        System.out.println();
+
+        // 3. Avvia la prima partita (in un cluster solo il coordinatore)
+        System.out.println("3. Avvio prima partita...");
+        if (clusterNode == null || clusterNode.isCoordinator()) {
+            gameManager.startNewGame();
+        } else {
+            System.out.println("   In attesa della partita dal coordinatore (nodo 0)");
+        }
+        System.out.println();
+
+        pipeline = new RequestPipeline(userManager, gameManager, udpNotifier,
+                                       rateLimiter, clusterNode, admission, config.getMaxFrameBytes());
+        return pipeline;
+    }
+
+    /**
+     * Avvia il trasporto sulla pipeline (initialize() deve essere già stato chiamato).
+     */
+    public void start(Transport transport) throws IOException {
+        this.transport = transport;
+        transport.start(pipeline);
+    }
+
+    /**
+     * Inizializza, avvia il trasporto e blocca fino alla chiusura del server
+     * (segnale di terminazione o errore fatale).
+     */
+    public void run(Transport transport) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("\n\n[WARNING] Ricevuto segnale di terminazione...");
+            shutdown();
+            System.out.println("[OK] Server " + transport.getName() + " terminato correttamente");
+        }));
+
+        try {
+            initialize();
+            start(transport);
+
+            System.out.println("╔════════════════════════════════════════╗");
+            System.out.println("║  SERVER PRONTO - In attesa di client   ║");
+            System.out.println("╚════════════════════════════════════════╝\n");
+
+            terminated.await();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+        } catch (Exception e) {
+            System.err.println("\n[ERR] ERRORE FATALE:");
+            e.printStackTrace();
+            shutdown();
+        }
+    }
+
+    /**
+     * Chiusura ordinata del server, a fasi:
+     * 1. il trasporto smette di accettare e leggere, completa le richieste
+     *    ricevute e invia le risposte (entro drainTimeoutMs);
+     * 2. la partita in corso viene chiusa e i risultati registrati;
+     * 3. snapshot finale degli utenti su file;
+     * 4. chiusura di connessioni e risorse.
+     * Chiamata sia dallo shutdown hook sia in caso di errore: viene eseguita una volta sola.
+     */
+    public synchronized void shutdown() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        System.out.println("\nChiusura ordinata (attesa massima " + drainTimeoutMs + " ms)...");
+        long start = System.nanoTime();
+
+        // 1. Niente nuove richieste, completamento di quelle ricevute
+        if (transport != null) {
+            transport.drain(start + drainTimeoutMs * 1_000_000L);
+        }
+        long drainMs = elapsedMs(start);
+
+        // 2. Notifiche e cluster fermati, partita chiusa: i risultati entrano nelle statistiche
+        if (udpNotifier != null) {
+            udpNotifier.shutdown();
+        }
+
+        // Gli altri nodi non possono più modificare gli utenti di questo nodo
+        if (clusterNode != null) {
+            clusterNode.shutdown();
+        }
+
+        if (gameManager != null) {
+            gameManager.shutdown();
+        }
+
+        // 3. Snapshot finale degli utenti
+        if (userPersistence != null) {
+            userPersistence.stopPeriodic();
+            try {
+                int saved = userPersistence.save(userManager);
+                System.out.println("[OK] Salvati " + saved + " utenti in " + userPersistence.getPath());
+            } catch (IOException e) {
+                System.err.println("[ERR] Salvataggio finale degli utenti fallito: " + e.getMessage());
+            }
+        }
+        long persistenceMs = elapsedMs(start);
+
+        // Le operazioni arrivate dopo (es. logout alla chiusura delle connessioni) vengono eseguite dal chiamante
+        if (partitions != null) {
+            partitions.shutdown();
+        }
+
+        // 4. Connessioni e risorse
+        if (transport != null) {
+            transport.close();
+        }
+
+        if (gameLoader != null) {
+            try {
+                gameLoader.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+
+        System.out.println("[OK] Chiusura completata in " + elapsedMs(start) + " ms (svuotamento: " +
+                         drainMs + " ms, salvataggio: " + persistenceMs + " ms)");
+
+        String transportStats = transport != null ? transport.getStats() : null;
+        if (transportStats != null) {
+            for (String line : transportStats.split("\n")) {
+                System.out.println("[METRICS] " + line);
+            }
+        }
+        System.out.println("[METRICS] " + ProtocolSession.compressionStats());
+        if (rateLimiter != null) {
+            System.out.println("[METRICS] " + rateLimiter.getStats());
+        }
+        if (partitions != null) {
+            System.out.println("[METRICS] " + partitions.getStats());
+        }
+
+        AsyncLogger.shutdown();
+        System.out.println("[OK] Risorse rilasciate");
+        terminated.countDown();
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    public RequestPipeline getPipeline() {
+        return pipeline;
+    }
+}
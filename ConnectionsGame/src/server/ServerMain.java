@@ -0,0 +1,30 @@
+package server;
+
+import server.manager.ConfigManager;
+import server.transport.Transport;
+
+/**
+ * Server del gioco Connections con il trasporto scelto in configurazione
+ * (server.transport = nio | tcp | aio, sovrascrivibile con -Dserver.transport=...).
+ * NIOServerMain e TCPServerMain restano per avviare direttamente un trasporto.
+ */
+public class ServerMain {
+    private static final String CONFIG_PATH = "config/server.properties";
+
+    public static void main(String[] args) {
+        Transport transport;
+        try {
+            ConfigManager.initialize(CONFIG_PATH);
+            transport = ServerBootstrap.createTransport(ConfigManager.getInstance().getServerTransport());
+        } catch (Exception e) {
+            System.err.println("[ERR] " + e.getMessage());
+            return;
+        }
+
+        System.out.println("╔════════════════════════════════════════╗");
+        System.out.println("║    CONNECTIONS SERVER - " + String.format("%-15s", transport.getName() + " Version") + "║");
+        System.out.println("╚════════════════════════════════════════╝\n");
+
+        new ServerBootstrap(CONFIG_PATH).run(transport);
+    }
+}
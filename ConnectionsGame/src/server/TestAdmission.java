@@ -0,0 +1,161 @@
+package server;
+
+import server.admission.AdmissionControl;
+import server.admission.LatencyHistogram;
+import server.protocol.ProtocolSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test per LatencyHistogram e AdmissionControl.
+ * Percentili entro l'errore dei bucket, coda limitata, scarto degli
+ * elementi rimasti in coda oltre la scadenza, pool dei worker pieno.
+ */
+public class TestAdmission {
+
+    private static final long MILLIS = 1_000_000L;
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: Admission Control ===\n");
+
+        try {
+            // 1. Istogramma: 1000 campioni da 1 a 1000 us
+            System.out.println("1. Percentili di LatencyHistogram...");
+            LatencyHistogram empty = new LatencyHistogram();
+            check(empty.getCount() == 0 && empty.percentileMicros(99) == 0, "istogramma vuoto");
+
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (int micros = 1; micros <= 1000; micros++) {
+                histogram.recordNanos(micros * 1000L);
+            }
+            check(histogram.getCount() == 1000, "campioni: " + histogram.getCount());
+            checkPercentile(histogram, 50, 500);
+            checkPercentile(histogram, 99, 990);
+            checkPercentile(histogram, 100, 1000);
+            System.out.println("   " + histogram.summary());
+
+            // Valori sotto gli 8 us: un bucket per microsecondo, nessun errore
+            LatencyHistogram small = new LatencyHistogram();
+            small.recordNanos(3_000);
+            small.recordNanos(3_999);
+            small.recordNanos(-5);  // Orologio non monotono: conta come 0
+            check(small.percentileMicros(100) == 3, "p100 dei valori piccoli: " + small.percentileMicros(100));
+            check(small.percentileMicros(1) == 0, "p1 dei valori piccoli: " + small.percentileMicros(1));
+            System.out.println("   Valori piccoli esatti: " + small.summary());
+            System.out.println();
+
+            // 2. Coda limitata: oltre la capacità tryAdmit() rifiuta
+            System.out.println("2. Coda di ammissione limitata...");
+            AdmissionControl admission = new AdmissionControl("test", 3, 0);
+            for (int i = 0; i < 3; i++) {
+                check(admission.tryAdmit(), "ammissione " + (i + 1) + " rifiutata");
+            }
+            check(!admission.tryAdmit(), "ammissione oltre la capacità");
+            check(admission.getQueued() == 3, "in coda: " + admission.getQueued());
+            check(admission.start(System.nanoTime()), "elemento scartato senza scadenza");
+            admission.cancel();
+            check(admission.getQueued() == 1, "in coda dopo start e cancel: " + admission.getQueued());
+            check(admission.tryAdmit() && admission.tryAdmit() && !admission.tryAdmit(), "posti liberati non riutilizzati");
+            System.out.println("   " + admission.getStats());
+
+            AdmissionControl unbounded = new AdmissionControl("illimitata", 0, 0);
+            for (int i = 0; i < 10000; i++) {
+                check(unbounded.tryAdmit(), "coda illimitata piena a " + i);
+            }
+            System.out.println("   Coda illimitata: " + unbounded.getQueued() + " ammessi");
+            System.out.println();
+
+            // 3. Scadenza: chi ha atteso oltre viene scartato e contato
+            System.out.println("3. Scarto oltre la scadenza...");
+            AdmissionControl deadline = new AdmissionControl("scadenza", 10, 50);
+            deadline.tryAdmit();
+            check(deadline.start(System.nanoTime() - 10 * MILLIS), "scartato dopo 10 ms con scadenza di 50 ms");
+            deadline.tryAdmit();
+            check(!deadline.start(System.nanoTime() - 100 * MILLIS), "eseguito dopo 100 ms con scadenza di 50 ms");
+            check(deadline.getQueued() == 0, "posto non liberato dallo scarto: " + deadline.getQueued());
+            check(deadline.getStats().contains("scadute=1"), "scarto non contato: " + deadline.getStats());
+
+            AdmissionControl noDeadline = new AdmissionControl("senza scadenza", 10, 0);
+            noDeadline.tryAdmit();
+            check(noDeadline.start(System.nanoTime() - TimeUnit.HOURS.toNanos(1)), "scartato senza scadenza");
+            System.out.println("   " + deadline.getStats());
+            System.out.println();
+
+            // 4. Risposta "server occupato" codificata una sola volta
+            System.out.println("4. Risposta server occupato...");
+            byte[] busy = admission.busy(ProtocolSession.JSON_LINES);
+            check(busy == admission.busy(ProtocolSession.JSON_LINES), "risposta ricodificata");
+            String line = new String(busy, StandardCharsets.UTF_8);
+            check(line.contains("Server occupato") && line.endsWith("\n"), "risposta: " + line);
+            System.out.print("   " + line);
+            System.out.println();
+
+            // 5. Pool dei worker: coda piena -> rifiuto, mai esecuzione nel chiamante
+            System.out.println("5. Pool dei worker pieno...");
+            ExecutorService pool = new AdmissionControl("pool", 2, 0).newWorkerPool("test-worker", 1);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger done = new AtomicInteger();
+            pool.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.incrementAndGet();
+            });
+            started.await();
+            pool.execute(done::incrementAndGet);
+            pool.execute(done::incrementAndGet);
+
+            String caller = Thread.currentThread().getName();
+            AtomicInteger ranOnCaller = new AtomicInteger();
+            try {
+                pool.execute(() -> {
+                    if (Thread.currentThread().getName().equals(caller)) {
+                        ranOnCaller.incrementAndGet();
+                    }
+                });
+                check(false, "task accettato con la coda piena");
+            } catch (RejectedExecutionException e) {
+                System.out.println("   Task oltre la coda rifiutato");
+            }
+            check(ranOnCaller.get() == 0, "task eseguito dal thread chiamante");
+
+            release.countDown();
+            pool.shutdown();
+            check(pool.awaitTermination(5, TimeUnit.SECONDS), "pool non terminato");
+            check(done.get() == 3, "task eseguiti: " + done.get() + " invece di 3");
+            System.out.println("   Task in coda eseguiti dopo lo sblocco: " + done.get());
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Il percentile è il limite superiore del bucket: mai sotto il valore
+     * esatto, al più il 12.5% sopra.
+     */
+    private static void checkPercentile(LatencyHistogram histogram, int percentile, long exactMicros) {
+        long reported = histogram.percentileMicros(percentile);
+        check(reported >= exactMicros && reported <= exactMicros * 1.125,
+                "p" + percentile + " = " + reported + "us, atteso " + exactMicros + "us (+12.5%)");
+        System.out.println("   p" + percentile + ": " + reported + "us (esatto " + exactMicros + "us)");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package server;
+
+import server.manager.ConfigManager;
+import server.manager.GameManager;
+import server.manager.UserManager;
+import server.model.Game;
+import server.protocol.BinaryCodec;
+import server.protocol.BinaryCodec.BinaryWriter;
+import server.protocol.JsonRequest;
+import server.protocol.JsonResponse;
+import server.util.JsonGameLoader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test per BinaryCodec.
+ * Richieste codificate a mano e decodificate dal server, messaggi non
+ * validi e byte esatti delle risposte.
+ */
+public class TestBinaryCodec {
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: BinaryCodec ===\n");
+
+        try {
+            // 1. Partita corrente, per gli indici delle parole di submitProposal
+            System.out.println("1. Inizializzazione GameManager...");
+            ConfigManager.initialize("config/server.properties");
+            ConfigManager config = ConfigManager.getInstance();
+            JsonGameLoader loader = new JsonGameLoader(config.getProperty("game.file.path"));
+            loader.initialize();
+            GameManager gameManager = new GameManager(loader, new UserManager(), 60000);
+            gameManager.startNewGame();
+            Game game = gameManager.getCurrentGame();
+            BinaryCodec codec = new BinaryCodec(gameManager);
+            System.out.println();
+
+            // 2. Varint
+            System.out.println("2. Varint...");
+            for (int value : new int[] {0, 1, 127, 128, 300, 16384, Integer.MAX_VALUE, -1}) {
+                BinaryWriter out = new BinaryWriter(1);
+                out.writeVarint(value);
+                int decoded = BinaryCodec.readVarint(ByteBuffer.wrap(out.toByteArray()));
+                check(decoded == value, "varint " + value + " letto come " + decoded);
+                System.out.println("   " + value + " -> " + out.size() + " byte");
+            }
+            System.out.println();
+
+            // 3. Richieste con campi obbligatori e opzionali
+            System.out.println("3. Decodifica delle richieste...");
+            BinaryWriter register = request(BinaryCodec.OP_REGISTER);
+            register.writeString("alice");
+            register.writeString("pàss");
+            JsonRequest decoded = codec.decodeRequest(register.toByteArray());
+            check("register".equals(decoded.getOperation()), "operazione " + decoded.getOperation());
+            check("alice".equals(decoded.getName()) && "pàss".equals(decoded.getPsw()), "credenziali errate");
+            System.out.println("   register: " + decoded.getName() + "/" + decoded.getPsw());
+
+            BinaryWriter update = request(BinaryCodec.OP_UPDATE_CREDENTIALS);
+            update.writeString("alice");
+            update.writeOptionalString(null);
+            update.writeString("old");
+            update.writeOptionalString("new");
+            decoded = codec.decodeRequest(update.toByteArray());
+            check(decoded.getNewName() == null && "new".equals(decoded.getNewPsw()), "opzionali errati");
+            System.out.println("   updateCredentials: newName=" + decoded.getNewName() + ", newPsw=" + decoded.getNewPsw());
+
+            BinaryWriter login = request(BinaryCodec.OP_LOGIN);
+            login.writeString("alice");
+            login.writeString("pw");
+            decoded = codec.decodeRequest(login.toByteArray());
+            check(decoded.getUdpPort() == null, "udpPort senza campo: " + decoded.getUdpPort());
+            login.writeVarint((5001 << 1) + 1);  // Opzionale: zigzag(5001) + 1
+            decoded = codec.decodeRequest(login.toByteArray());
+            check(Integer.valueOf(5001).equals(decoded.getUdpPort()), "udpPort " + decoded.getUdpPort());
+            System.out.println("   login: udpPort=" + decoded.getUdpPort());
+
+            BinaryWriter leaderboard = request(BinaryCodec.OP_REQUEST_LEADERBOARD);
+            leaderboard.writeOptionalString(null);
+            leaderboard.writeVarint((10 << 1) + 1);
+            decoded = codec.decodeRequest(leaderboard.toByteArray());
+            check(decoded.getPlayerName() == null && Integer.valueOf(10).equals(decoded.getTopPlayers()),
+                    "classifica: " + decoded.getPlayerName() + "/" + decoded.getTopPlayers());
+            System.out.println("   requestLeaderboard: topPlayers=" + decoded.getTopPlayers());
+
+            BinaryWriter stats = request(BinaryCodec.OP_REQUEST_GAME_STATS);
+            stats.writeVarint(5 + 1);  // zigzag(-3) = 5
+            decoded = codec.decodeRequest(stats.toByteArray());
+            check(Integer.valueOf(-3).equals(decoded.getGameId()), "gameId " + decoded.getGameId());
+            System.out.println("   requestGameStats: gameId=" + decoded.getGameId());
+
+            decoded = codec.decodeRequest(new byte[] {BinaryCodec.OP_PING});
+            check("ping".equals(decoded.getOperation()), "operazione " + decoded.getOperation());
+            System.out.println("   ping: nessun campo");
+
+            decoded = codec.decodeRequest(new byte[] {BinaryCodec.OP_SUBSCRIBE});
+            check("subscribe".equals(decoded.getOperation()), "operazione " + decoded.getOperation());
+            decoded = codec.decodeRequest(new byte[] {BinaryCodec.OP_UNSUBSCRIBE});
+            check("unsubscribe".equals(decoded.getOperation()), "operazione " + decoded.getOperation());
+            System.out.println("   subscribe, unsubscribe: nessun campo");
+            System.out.println();
+
+            // 4. Parole per indice nella partita corrente o per esteso
+            System.out.println("4. Parole di submitProposal...");
+            BinaryWriter proposal = request(BinaryCodec.OP_SUBMIT_PROPOSAL);
+            proposal.writeVarint(4);
+            proposal.writeVarint(0);
+            proposal.writeVarint(1 << 1);
+            proposal.writeVarint(2 << 1);
+            byte[] literal = "fuori".getBytes(StandardCharsets.UTF_8);
+            proposal.writeVarint(literal.length << 1 | 1);
+            proposal.writeBytes(literal);
+            List<String> words = codec.decodeRequest(proposal.toByteArray()).getWords();
+            List<String> expected = Arrays.asList(game.getWord(0), game.getWord(1), game.getWord(2), "fuori");
+            check(expected.equals(words), "parole " + words + " invece di " + expected);
+            System.out.println("   " + words);
+            System.out.println();
+
+            // 5. Messaggi non validi
+            System.out.println("5. Messaggi non validi...");
+            BinaryWriter badIndex = request(BinaryCodec.OP_SUBMIT_PROPOSAL);
+            badIndex.writeVarint(1);
+            badIndex.writeVarint(game.getWordCount() << 1);
+            BinaryWriter tooMany = request(BinaryCodec.OP_SUBMIT_PROPOSAL);
+            tooMany.writeVarint(17);
+            BinaryWriter badString = request(BinaryCodec.OP_REGISTER);
+            badString.writeVarint(50);
+            badString.writeBytes(new byte[] {'a'});
+
+            expectInvalid(codec, new byte[] {0}, "opcode 0");
+            expectInvalid(codec, new byte[] {(byte) 99}, "opcode sconosciuto");
+            expectInvalid(codec, new byte[] {BinaryCodec.OP_REGISTER}, "campi mancanti");
+            expectInvalid(codec, badString.toByteArray(), "stringa troncata");
+            expectInvalid(codec, badIndex.toByteArray(), "indice parola fuori dalla partita");
+            expectInvalid(codec, tooMany.toByteArray(), "troppe parole");
+            System.out.println();
+
+            // 6. Operazione senza decodificare (per rate limit e bulkhead)
+            System.out.println("6. peekOperation...");
+            check("login".equals(codec.peekOperation(login.toByteArray())), "peek login");
+            check("submitProposal".equals(codec.peekOperation(proposal.toByteArray())), "peek submitProposal");
+            check("subscribe".equals(codec.peekOperation(new byte[] {BinaryCodec.OP_SUBSCRIBE})), "peek subscribe");
+            check("unsubscribe".equals(codec.peekOperation(new byte[] {BinaryCodec.OP_UNSUBSCRIBE})), "peek unsubscribe");
+            check(codec.peekOperation(new byte[0]) == null, "peek di un messaggio vuoto");
+            check(codec.peekOperation(new byte[] {(byte) 99}) == null, "peek di un opcode sconosciuto");
+            System.out.println("   login, submitProposal, subscribe, unsubscribe, vuoto -> null, sconosciuto -> null");
+            System.out.println();
+
+            // 7. Byte esatti delle risposte
+            System.out.println("7. Codifica delle risposte...");
+            expectBytes(codec.encodeResponse(JsonResponse.error("no")),
+                    new byte[] {0, 3, 'n', 'o', 0}, "errore senza dati");
+            expectBytes(codec.encodeResponse(JsonResponse.event("gameEnded", null, null)),
+                    new byte[] {2, 9, 'g', 'a', 'm', 'e', 'E', 'n', 'd', 'e', 'd', 0, 0}, "evento push");
+
+            Map<String, Object> known = new LinkedHashMap<>();
+            known.put("score", 5);
+            expectBytes(codec.encodeResponse(JsonResponse.success("ok", known)),
+                    new byte[] {1, 3, 'o', 'k', 7, 1, 2 << 1, 3, 10}, "chiave nota come indice");
+
+            Map<String, Object> unknown = new LinkedHashMap<>();
+            unknown.put("x", -1);
+            expectBytes(codec.encodeResponse(JsonResponse.success("ok", unknown)),
+                    new byte[] {1, 3, 'o', 'k', 7, 1, 1 << 1 | 1, 'x', 3, 1}, "chiave per esteso");
+
+            expectBytes(codec.encodeResponse(JsonResponse.success(null, new int[] {1, 2})),
+                    new byte[] {1, 0, 6, 2, 3, 2, 3, 4}, "lista di interi");
+            expectBytes(codec.encodeResponse(JsonResponse.success(null, Arrays.asList(true, false, null, "a"))),
+                    new byte[] {1, 0, 6, 4, 1, 2, 0, 5, 1, 'a'}, "lista mista");
+
+            byte[] encodedDouble = codec.encodeResponse(JsonResponse.success(null, 0.5));
+            ByteBuffer doubleIn = ByteBuffer.wrap(encodedDouble, 3, 8);
+            check(encodedDouble.length == 11 && encodedDouble[2] == 4 && doubleIn.getDouble() == 0.5,
+                    "double " + Arrays.toString(encodedDouble));
+            System.out.println("   double: " + encodedDouble.length + " byte");
+            System.out.println();
+
+            // 8. Cleanup
+            System.out.println("8. Pulizia risorse...");
+            gameManager.shutdown();
+            loader.close();
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    private static BinaryWriter request(int opcode) {
+        BinaryWriter out = new BinaryWriter(16);
+        out.writeByte(opcode);
+        return out;
+    }
+
+    private static void expectInvalid(BinaryCodec codec, byte[] payload, String description) {
+        try {
+            codec.decodeRequest(payload);
+            check(false, description + ": messaggio accettato");
+        } catch (IllegalArgumentException e) {
+            System.out.println("   " + description + ": " + e.getMessage());
+        }
+    }
+
+    private static void expectBytes(byte[] actual, byte[] expected, String description) {
+        check(Arrays.equals(actual, expected),
+                description + ": " + Arrays.toString(actual) + " invece di " + Arrays.toString(expected));
+        System.out.println("   " + description + ": " + actual.length + " byte");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
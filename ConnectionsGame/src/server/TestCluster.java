@@ -0,0 +1,238 @@
+package server;
+
+import server.cluster.ClusterMessage;
+import server.cluster.ClusterNode;
+import server.handler.CommandHandler;
+import server.manager.ConfigManager;
+import server.manager.GameManager;
+import server.manager.UserManager;
+import server.protocol.JsonRequest;
+import server.protocol.JsonResponse;
+import server.util.JsonGameLoader;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Test per ClusterNode.
+ * Tre nodi nella stessa JVM su porte locali, collegati dal protocollo TCP
+ * interno: inoltro delle operazioni al nodo proprietario, classifica unita,
+ * logout degli utenti di un nodo caduto e ripresa dopo il riavvio.
+ */
+public class TestCluster {
+
+    private static final int NODES = 3;
+    private static final long TIMEOUT_MS = 2000;
+    private static final long WAIT_MS = 5000;
+
+    private static String[] addresses;
+    private static UserManager[] userManagers;
+    private static GameManager[] gameManagers;
+    private static ClusterNode[] nodes;
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: Cluster ===\n");
+
+        try {
+            // 1. Avvio: il nodo 0 carica la partita, gli altri la ricevono
+            System.out.println("1. Avvio di " + NODES + " nodi...");
+            ConfigManager.initialize("config/server.properties");
+            JsonGameLoader loader = new JsonGameLoader(ConfigManager.getInstance().getProperty("game.file.path"));
+            loader.initialize();
+
+            addresses = new String[NODES];
+            for (int i = 0; i < NODES; i++) {
+                addresses[i] = "localhost:" + freePort();
+            }
+            userManagers = new UserManager[NODES];
+            gameManagers = new GameManager[NODES];
+            nodes = new ClusterNode[NODES];
+            for (int i = 0; i < NODES; i++) {
+                userManagers[i] = new UserManager();
+                gameManagers[i] = new GameManager(loader, userManagers[i], 60000);
+                if (i == 0) {
+                    gameManagers[i].startNewGame();
+                }
+                startNode(i);
+            }
+            int gameId = gameManagers[0].getCurrentGame().getGameId();
+            for (int i = 1; i < NODES; i++) {
+                GameManager gameManager = gameManagers[i];
+                waitFor(() -> gameManager.getCurrentGame() != null, "partita non ricevuta dal nodo " + i);
+                check(gameManager.getCurrentGame().getGameId() == gameId, "partita diversa sul nodo " + i);
+            }
+            System.out.println("   Nodi: " + String.join(", ", addresses) + ", partita #" + gameId + " su tutti");
+            System.out.println();
+
+            // 2. Inoltro: client sul nodo 0, utente del nodo 2
+            System.out.println("2. Inoltro al nodo proprietario...");
+            String alice = userOf(2, "alice");
+            CommandHandler client = clientOn(0);
+            expectSuccess(client.execute(register(alice)), "register di " + alice);
+            check(userManagers[2].getUser(alice) != null, "utente non creato sul nodo 2");
+            check(userManagers[0].getUser(alice) == null, "utente creato sul nodo 0");
+
+            JsonResponse login = client.execute(login(alice));
+            expectSuccess(login, "login di " + alice);
+            check(userManagers[2].isLoggedIn(alice), "login non registrato sul nodo 2");
+            check(login.getData() != null, "login senza dati della partita: " + login.getMessage());
+            expectSuccess(client.execute(request("requestPlayerStats")), "requestPlayerStats inoltrata");
+            expectSuccess(client.execute(request("logout")), "logout di " + alice);
+            check(!userManagers[2].isLoggedIn(alice), "logout non registrato sul nodo 2");
+            System.out.println("   " + alice + ": register, login, statistiche e logout eseguiti sul nodo 2");
+            System.out.println();
+
+            // 3. Classifica: i top-K dei nodi uniti in una sola classifica
+            System.out.println("3. Classifica unita...");
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                int owner = i % NODES;
+                String name = userOf(owner, "player" + i);
+                check(userManagers[owner].register(name, "pw"), "register di " + name);
+                userManagers[owner].getUser(name).addScore(10 * (i + 1));
+                expected.add(0, name);  // Punteggi crescenti: la classifica è in ordine inverso
+            }
+            for (int i = 0; i < NODES; i++) {
+                List<ClusterMessage.ScoreEntry> top = nodes[i].getTopK(4);
+                check(names(top).equals(expected.subList(0, 4)), "top-4 dal nodo " + i + ": " + names(top));
+                check(top.get(0).rank == 1 && top.get(3).rank == 4 && top.get(0).score == 60,
+                        "posizioni o punteggi errati: " + top.get(0).score + "/" + top.get(3).rank);
+            }
+            ClusterMessage.ScoreEntry rank = nodes[1].getRank(expected.get(2));
+            check(rank != null && rank.rank == 3, "posizione di " + expected.get(2) + ": " + (rank != null ? rank.rank : null));
+            System.out.println("   Top-4 uguale da ogni nodo: " + names(nodes[0].getTopK(4)));
+            System.out.println("   " + rank.username + ": posizione " + rank.rank + " (punteggio " + rank.score + ")");
+            System.out.println();
+
+            // 4. Cade il nodo dei client: il proprietario disconnette i suoi utenti
+            System.out.println("4. Nodo con i client fermato...");
+            CommandHandler lost = clientOn(1);
+            expectSuccess(lost.execute(login(alice)), "login di " + alice + " dal nodo 1");
+            check(userManagers[2].isLoggedIn(alice), "login dal nodo 1 non registrato");
+            nodes[1].shutdown();
+            waitFor(() -> !userManagers[2].isLoggedIn(alice), alice + " ancora loggato dopo la caduta del nodo 1");
+            System.out.println("   " + alice + " disconnesso dal nodo 2 senza logout inoltrato");
+            System.out.println();
+
+            // 5. Cade il nodo proprietario: errore e classifica parziale, poi ripresa
+            System.out.println("5. Nodo proprietario fermato e riavviato...");
+            nodes[2].shutdown();
+            JsonResponse unreachable = clientOn(0).execute(login(alice));
+            check(!unreachable.isSuccess() && unreachable.getMessage().contains("non raggiungibile"),
+                    "login con il nodo 2 fermo: " + unreachable.getMessage());
+            List<ClusterMessage.ScoreEntry> partial = nodes[0].getTopK(null);
+            for (ClusterMessage.ScoreEntry entry : partial) {
+                check(nodes[0].ownerOf(entry.username) == 0, "classifica con un utente dei nodi fermi: " + entry.username);
+            }
+            System.out.println("   Nodo 2 fermo: \"" + unreachable.getMessage() + "\", classifica parziale di " +
+                               partial.size() + " utenti");
+
+            startNode(1);
+            startNode(2);
+            CommandHandler again = clientOn(1);
+            waitFor(() -> again.execute(login(alice)).isSuccess(), "login non riuscito dopo il riavvio");
+            check(userManagers[2].isLoggedIn(alice), "login dopo il riavvio non registrato");
+            List<ClusterMessage.ScoreEntry> top = nodes[1].getTopK(4);
+            check(names(top).equals(expected.subList(0, 4)), "top-4 dopo il riavvio: " + names(top));
+            expectSuccess(again.execute(request("logout")), "logout dopo il riavvio");
+            System.out.println("   Nodi 1 e 2 riavviati: login inoltrato e top-4 completo " + names(top));
+            System.out.println();
+
+            // 6. Cleanup
+            System.out.println("6. Pulizia risorse...");
+            for (int i = 0; i < NODES; i++) {
+                nodes[i].shutdown();
+                gameManagers[i].shutdown();
+            }
+            loader.close();
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Avvia (o riavvia sulla stessa porta) il nodo i con i suoi manager.
+     */
+    private static void startNode(int i) throws IOException {
+        nodes[i] = new ClusterNode(i, addresses, userManagers[i], gameManagers[i], TIMEOUT_MS, 2);
+        nodes[i].start();
+    }
+
+    private static CommandHandler clientOn(int node) {
+        return new CommandHandler(userManagers[node], gameManagers[node], null, null, null, nodes[node]);
+    }
+
+    /**
+     * Primo username con il prefisso dato che appartiene al nodo owner.
+     */
+    private static String userOf(int owner, String prefix) {
+        for (int i = 0; ; i++) {
+            String name = prefix + i;
+            if (nodes[0].ownerOf(name) == owner) {
+                return name;
+            }
+        }
+    }
+
+    private static JsonRequest register(String name) {
+        JsonRequest request = request("register");
+        request.setName(name);
+        request.setPsw("pw");
+        return request;
+    }
+
+    private static JsonRequest login(String name) {
+        JsonRequest request = request("login");
+        request.setUsername(name);
+        request.setPsw("pw");
+        return request;
+    }
+
+    private static JsonRequest request(String operation) {
+        JsonRequest request = new JsonRequest();
+        request.setOperation(operation);
+        return request;
+    }
+
+    private static List<String> names(List<ClusterMessage.ScoreEntry> entries) {
+        List<String> names = new ArrayList<>(entries.size());
+        for (ClusterMessage.ScoreEntry entry : entries) {
+            names.add(entry.username);
+        }
+        return names;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Attende (al più WAIT_MS) una condizione che dipende dagli altri nodi.
+     */
+    private static void waitFor(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.getAsBoolean()) {
+            check(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(50);
+        }
+    }
+
+    private static void expectSuccess(JsonResponse response, String description) {
+        check(response.isSuccess(), description + ": " + response.getMessage());
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package server;
+
+import client.ConnectionManager;
+import com.google.gson.JsonObject;
+import server.manager.ConfigManager;
+import server.protocol.JsonRequest;
+import server.protocol.JsonResponse;
+import server.protocol.ProtocolSession;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Test per la compressione delle risposte (FLAG_DEFLATE).
+ * Risposte appena sotto e sopra la soglia, più messaggi sullo stesso flusso
+ * decompressi da un solo Inflater, e il percorso completo: preambolo,
+ * ProtocolSession.encode sul server e decompressione in client.ConnectionManager.
+ */
+public class TestCompression {
+
+    private static int threshold;
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: Compressione ===\n");
+
+        try {
+            ConfigManager.initialize("config/server.properties");
+            threshold = ConfigManager.getInstance().getCompressionThresholdBytes();
+
+            // 1. Soglia: compresse solo le risposte di almeno threshold byte
+            System.out.println("1. Risposte intorno alla soglia di " + threshold + " byte...");
+            ProtocolSession session = newSession();
+            Inflater inflater = new Inflater();
+            for (int size : new int[] {threshold - 1, threshold, threshold + 1}) {
+                JsonResponse response = sized(null, size, session);
+                byte[] expected = payloadOf(session.encodeUncompressed(response));
+                check(expected.length == size, "risposta di " + expected.length + " byte invece di " + size);
+
+                byte[] frame = session.encode(response);
+                boolean compressed = (header(frame) & 1) == 1;
+                check(compressed == (size >= threshold), size + " byte: compressa=" + compressed);
+                byte[] decoded = compressed ? inflate(inflater, payloadOf(frame)) : payloadOf(frame);
+                check(Arrays.equals(decoded, expected), size + " byte: contenuto alterato");
+                System.out.println("   " + size + " byte -> " + (compressed ? "compressa, " : "non compressa, ") +
+                                   payloadOf(frame).length + " byte");
+            }
+            System.out.println();
+
+            // 2. Più messaggi sullo stesso flusso: dizionario condiviso, push non compressi in mezzo
+            System.out.println("2. Messaggi consecutivi su un solo flusso...");
+            session = newSession();
+            inflater = new Inflater();
+            List<Integer> sizes = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                JsonResponse response = i == 3 ? randomText(200_000) : leaderboard(50 + i);
+                byte[] expected = payloadOf(session.encodeUncompressed(response));
+                byte[] frame = session.encode(response);
+                check((header(frame) & 1) == 1, "messaggio " + i + " non compresso");
+                byte[] decoded = inflate(inflater, payloadOf(frame));
+                check(Arrays.equals(decoded, expected), "messaggio " + i + " alterato");
+                check(inflater.getRemaining() == 0 && !inflater.finished(), "flusso non svuotato dopo il messaggio " + i);
+                sizes.add(payloadOf(frame).length);
+
+                // Risposta piccola e push condiviso: non toccano il dizionario del flusso
+                JsonResponse small = JsonResponse.success("ok");
+                check((header(session.encode(small)) & 1) == 0, "risposta piccola compressa");
+                session.encodeUncompressed(JsonResponse.event("gameStarted", null, null));
+            }
+            check(sizes.get(1) * 2 < sizes.get(0), "dizionario non condiviso: " + sizes);
+            session.close();
+            inflater.end();
+            System.out.println("   Byte compressi per messaggio: " + sizes);
+            System.out.println("   Dal secondo messaggio le chiavi ripetute costano quasi nulla");
+            System.out.println();
+
+            // 3. Percorso completo: server con ProtocolSession, client ConnectionManager
+            System.out.println("3. Round-trip con client.ConnectionManager...");
+            List<JsonResponse> plan = Collections.synchronizedList(new ArrayList<>());
+            List<Boolean> compressedFrames = Collections.synchronizedList(new ArrayList<>());
+            AtomicReference<Exception> serverError = new AtomicReference<>();
+            ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            Thread server = new Thread(() -> serve(serverSocket, plan, compressedFrames, serverError), "test-server");
+            server.start();
+
+            ConnectionManager client = new ConnectionManager();
+            client.setCompression(true);
+            List<JsonObject> events = Collections.synchronizedList(new ArrayList<>());
+            client.setPushListener(events::add);
+            check(client.connect("127.0.0.1", serverSocket.getLocalPort()), "connessione non riuscita");
+
+            int requests = 8;
+            for (int i = 0; i < requests; i++) {
+                JsonObject request = new JsonObject();
+                request.addProperty("operation", "echo");
+                request.addProperty("topPlayers", i);
+                JsonObject reply = client.sendRequest(request);
+                JsonResponse sent = plan.get(i);
+                check(sent.getMessage().equals(reply.get("message").getAsString()), "risposta " + i + ": messaggio alterato");
+                if (sent.getData() != null) {
+                    check(reply.getAsJsonArray("data").size() == ((List<?>) sent.getData()).size(),
+                            "risposta " + i + ": dati alterati");
+                }
+            }
+            check(events.size() == requests, "eventi push ricevuti: " + events.size());
+            client.disconnect();
+            server.join(5000);
+            serverSocket.close();
+            check(serverError.get() == null, "errore del server: " + serverError.get());
+
+            int compressed = Collections.frequency(compressedFrames, Boolean.TRUE);
+            check(!compressedFrames.get(0) && compressedFrames.get(1) && compressedFrames.get(2) && !compressedFrames.get(5),
+                    "compressione intorno alla soglia: " + compressedFrames);
+            System.out.println("   " + requests + " risposte (" + compressed + " compresse, soglia ±1 byte compresa)" +
+                               " e " + events.size() + " eventi push ricevuti intatti");
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Server di prova: preambolo, poi per ogni richiesta un evento push non
+     * compresso e la risposta prevista per la sua posizione. Una risposta su
+     * due viene scritta in due pezzi, per spezzare il frame tra due letture.
+     */
+    private static void serve(ServerSocket serverSocket, List<JsonResponse> plan,
+                              List<Boolean> compressedFrames, AtomicReference<Exception> error) {
+        try (Socket socket = serverSocket.accept();
+             DataInputStream in = new DataInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            socket.setTcpNoDelay(true);
+            byte[] preface = new byte[ProtocolSession.PREFACE_LENGTH];
+            in.readFully(preface);
+            ProtocolSession session = ProtocolSession.negotiate(ProtocolSession.parsePreface(preface), null);
+            check(session.getFlags() == ProtocolSession.FLAG_DEFLATE, "flag negoziati: " + session.getFlags());
+            out.write(session.prefaceAck());
+            out.flush();
+
+            for (int i = 0; ; i++) {
+                byte[] payload = new byte[readVarint(in)];
+                in.readFully(payload);
+                JsonRequest request = session.decode(payload);
+
+                JsonResponse response = plannedResponse(i, request.getRequestId(), session);
+                plan.add(response);
+                out.write(session.encodeUncompressed(JsonResponse.event("gameStarted", "partita " + i, null)));
+
+                byte[] frame = session.encode(response);
+                compressedFrames.add((header(frame) & 1) == 1);
+                if (i % 2 == 0) {
+                    out.write(frame);
+                } else {
+                    out.write(frame, 0, frame.length / 2);
+                    out.flush();
+                    Thread.sleep(20);
+                    out.write(frame, frame.length / 2, frame.length - frame.length / 2);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Il client ha chiuso la connessione: fine del test
+        } catch (Exception e) {
+            error.set(e);
+        }
+    }
+
+    /**
+     * Risposte del percorso completo: intorno alla soglia (requestId compreso),
+     * classifiche con chiavi ripetute e un testo poco comprimibile.
+     */
+    private static JsonResponse plannedResponse(int index, Long requestId, ProtocolSession session) {
+        JsonResponse response;
+        switch (index) {
+            case 0: return sized(requestId, threshold - 1, session);
+            case 1: return sized(requestId, threshold, session);
+            case 2: return sized(requestId, threshold + 1, session);
+            case 3: response = leaderboard(100); break;
+            case 4: response = randomText(100_000); break;
+            case 5: response = JsonResponse.success("ok"); break;
+            default: response = leaderboard(20 + index); break;
+        }
+        response.setRequestId(requestId);
+        return response;
+    }
+
+    private static ProtocolSession newSession() {
+        return ProtocolSession.negotiate(ProtocolSession.FLAG_DEFLATE, null);
+    }
+
+    /**
+     * Risposta che codificata occupa esattamente size byte (messaggio ASCII di riempimento).
+     */
+    private static JsonResponse sized(Long requestId, int size, ProtocolSession session) {
+        JsonResponse response = JsonResponse.success("");
+        response.setRequestId(requestId);
+        int base = payloadOf(session.encodeUncompressed(response)).length;
+        response.setMessage("x".repeat(size - base));
+        return response;
+    }
+
+    private static JsonResponse leaderboard(int players) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("rank", i + 1);
+            row.put("username", "giocatore" + i);
+            row.put("score", 1000 - i * 7);
+            rows.add(row);
+        }
+        return JsonResponse.success("Classifica", rows);
+    }
+
+    /**
+     * Testo pseudo-casuale: compresso resta oltre metà dell'originale e fa
+     * crescere il buffer di compressione durante il ciclo di deflate.
+     */
+    private static JsonResponse randomText(int length) {
+        Random random = new Random(42);
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('!' + random.nextInt(90));
+            if (text[i] == '"' || text[i] == '\\') {
+                text[i] = 'q';
+            }
+        }
+        return JsonResponse.success(new String(text));
+    }
+
+    /**
+     * Decomprime un messaggio con l'Inflater del flusso, come il client.
+     */
+    private static byte[] inflate(Inflater inflater, byte[] compressed) throws DataFormatException {
+        inflater.setInput(compressed);
+        byte[] buffer = new byte[4096];
+        int length = 0;
+        while (true) {
+            int count = inflater.inflate(buffer, length, buffer.length - length);
+            length += count;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            } else if (count == 0) {
+                return Arrays.copyOf(buffer, length);
+            }
+        }
+    }
+
+    /**
+     * Varint iniziale di un frame: (lunghezza << 1) | compresso.
+     */
+    private static int header(byte[] frame) {
+        return readVarint(ByteBuffer.wrap(frame));
+    }
+
+    private static byte[] payloadOf(byte[] frame) {
+        ByteBuffer in = ByteBuffer.wrap(frame);
+        int length = readVarint(in) >>> 1;
+        check(in.remaining() == length, "frame di " + in.remaining() + " byte, dichiarati " + length);
+        byte[] payload = new byte[length];
+        in.get(payload);
+        return payload;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
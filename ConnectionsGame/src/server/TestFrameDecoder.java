@@ -0,0 +1,191 @@
+package server;
+
+import server.protocol.FrameDecoder;
+import server.protocol.ProtocolSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test per FrameDecoder.
+ * I byte arrivano spezzati in letture diverse, come dal socket: righe JSON,
+ * preambolo e frame con prefisso di lunghezza, frame oltre il limite.
+ */
+public class TestFrameDecoder {
+
+    private static final int MAX_FRAME_BYTES = 1024;
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: FrameDecoder ===\n");
+
+        try {
+            // 1. Righe JSON: più righe in una lettura, '\r' e righe vuote scartati
+            System.out.println("1. Righe in una sola lettura...");
+            FrameDecoder decoder = new FrameDecoder(MAX_FRAME_BYTES);
+            List<byte[]> frames = new ArrayList<>();
+            decoder.decode(wrap("{\"a\":1}\r\n\n  {\"b\":2}\n".getBytes(StandardCharsets.UTF_8)), frames);
+            checkFrames(frames, "{\"a\":1}", "{\"b\":2}");
+            System.out.println("   Frame: " + frames.size());
+            System.out.println();
+
+            // 2. Riga spezzata a ogni byte, con un carattere UTF-8 di due byte
+            System.out.println("2. Riga spezzata byte per byte...");
+            byte[] line = "{\"name\":\"città\"}\n".getBytes(StandardCharsets.UTF_8);
+            decoder = new FrameDecoder(MAX_FRAME_BYTES);
+            frames = feedByteByByte(decoder, line);
+            checkFrames(frames, "{\"name\":\"città\"}");
+            check(decoder.getPendingBytes() == 0, "byte trattenuti dopo il frame: " + decoder.getPendingBytes());
+            System.out.println("   Ricomposta: " + new String(frames.get(0), StandardCharsets.UTF_8));
+
+            // Frame grande in due letture: il buffer parziale viene rilasciato a frame completo
+            byte[] bigLine = new byte[900];
+            Arrays.fill(bigLine, (byte) 'z');
+            bigLine[bigLine.length - 1] = '\n';
+            frames = new ArrayList<>();
+            decoder.decode(wrap(Arrays.copyOfRange(bigLine, 0, 600)), frames);
+            int retained = decoder.getRetainedBytes();
+            check(retained >= 600, "buffer parziale di " + retained + " byte per 600 byte ricevuti");
+            decoder.decode(wrap(Arrays.copyOfRange(bigLine, 600, bigLine.length)), frames);
+            check(frames.size() == 1 && frames.get(0).length == 899, "riga da 899 byte non ricomposta");
+            check(decoder.getRetainedBytes() == 0, "buffer trattenuto dopo il frame: " + decoder.getRetainedBytes());
+            System.out.println("   Riga da 899 byte in due letture: " + retained + " byte trattenuti, poi 0");
+            System.out.println();
+
+            // 3. Preambolo spezzato, poi frame con lunghezza varint spezzata
+            System.out.println("3. Preambolo e varint tra letture diverse...");
+            byte[] payload = new byte[300];  // Lunghezza 300: varint di due byte
+            Arrays.fill(payload, (byte) 'x');
+            byte[] stream = concat(preface(ProtocolSession.FLAG_BINARY), varint(300), payload,
+                                   varint(2), new byte[] {10, 11});
+            decoder = new FrameDecoder(MAX_FRAME_BYTES);
+            frames = new ArrayList<>();
+
+            decoder.decode(wrap(Arrays.copyOfRange(stream, 0, 2)), frames);  // Metà preambolo
+            check(decoder.takeHandshake() == -1, "handshake con il preambolo incompleto");
+            decoder.decode(wrap(Arrays.copyOfRange(stream, 2, 5)), frames);  // Fine preambolo e primo byte del varint
+            int flags = decoder.takeHandshake();
+            check(flags == ProtocolSession.FLAG_BINARY, "flag del preambolo: " + flags);
+            check(decoder.takeHandshake() == -1, "handshake restituito due volte");
+            check(frames.isEmpty(), "frame prima della fine della lunghezza");
+            decoder.decode(wrap(Arrays.copyOfRange(stream, 5, 100)), frames);  // Secondo byte del varint e parte del payload
+            check(frames.isEmpty(), "frame incompleto restituito");
+            check(decoder.getPendingBytes() == 94, "byte trattenuti: " + decoder.getPendingBytes());
+            check(decoder.getRetainedBytes() == 300, "buffer del frame: " + decoder.getRetainedBytes());
+            decoder.decode(wrap(Arrays.copyOfRange(stream, 100, stream.length)), frames);
+            check(frames.size() == 2, "frame: " + frames.size());
+            check(Arrays.equals(frames.get(0), payload), "payload da 300 byte alterato");
+            check(Arrays.equals(frames.get(1), new byte[] {10, 11}), "secondo frame alterato");
+            check(decoder.getRetainedBytes() == 0, "buffer trattenuto dopo i frame: " + decoder.getRetainedBytes());
+            System.out.println("   Flag: " + flags + ", frame: " + frames.get(0).length + " + " + frames.get(1).length + " byte");
+
+            decoder = new FrameDecoder(MAX_FRAME_BYTES);
+            frames = feedByteByByte(decoder, stream);
+            check(frames.size() == 2 && Arrays.equals(frames.get(0), payload), "stesso flusso byte per byte");
+            System.out.println("   Stesso flusso byte per byte: " + frames.size() + " frame");
+            System.out.println();
+
+            // 4. Preambolo non valido
+            System.out.println("4. Preambolo non valido...");
+            byte[] badPreface = preface(ProtocolSession.FLAG_BINARY);
+            badPreface[2] = 'X';
+            expectRejected(new FrameDecoder(MAX_FRAME_BYTES), badPreface, "magic errato");
+            System.out.println();
+
+            // 5. Frame oltre il limite, riconosciuti prima di riceverli per intero
+            System.out.println("5. Frame oltre il limite...");
+            expectRejected(new FrameDecoder(MAX_FRAME_BYTES),
+                    concat(preface(0), varint(MAX_FRAME_BYTES + 1)), "lunghezza dichiarata");
+            expectRejected(new FrameDecoder(MAX_FRAME_BYTES),
+                    concat(preface(0), new byte[] {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80}),
+                    "varint troppo lungo");
+
+            byte[] longLine = new byte[MAX_FRAME_BYTES + 1];
+            Arrays.fill(longLine, (byte) 'y');
+            expectRejected(new FrameDecoder(MAX_FRAME_BYTES), longLine, "riga senza newline");
+
+            FrameDecoder growing = new FrameDecoder(MAX_FRAME_BYTES);
+            frames = new ArrayList<>();
+            growing.decode(wrap(Arrays.copyOfRange(longLine, 0, MAX_FRAME_BYTES)), frames);
+            check(growing.getPendingBytes() == MAX_FRAME_BYTES, "riga al limite non trattenuta");
+            expectRejected(growing, new byte[] {'y', '\n'}, "riga che supera il limite alla lettura successiva");
+
+            frames = new ArrayList<>();
+            byte[] atLimit = Arrays.copyOf(longLine, MAX_FRAME_BYTES + 1);
+            atLimit[MAX_FRAME_BYTES] = '\n';
+            new FrameDecoder(MAX_FRAME_BYTES).decode(wrap(atLimit), frames);
+            check(frames.size() == 1 && frames.get(0).length == MAX_FRAME_BYTES, "riga di esattamente " + MAX_FRAME_BYTES + " byte");
+            System.out.println("   Riga di " + MAX_FRAME_BYTES + " byte accettata");
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    private static List<byte[]> feedByteByByte(FrameDecoder decoder, byte[] data) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        for (byte b : data) {
+            decoder.decode(wrap(new byte[] {b}), frames);
+        }
+        return frames;
+    }
+
+    private static void expectRejected(FrameDecoder decoder, byte[] data, String description) {
+        try {
+            decoder.decode(wrap(data), new ArrayList<>());
+            check(false, description + ": accettato");
+        } catch (IOException e) {
+            System.out.println("   " + description + ": " + e.getMessage());
+        }
+    }
+
+    private static void checkFrames(List<byte[]> frames, String... expected) {
+        check(frames.size() == expected.length, "frame: " + frames.size() + " invece di " + expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            String actual = new String(frames.get(i), StandardCharsets.UTF_8);
+            check(actual.equals(expected[i]), "frame " + i + ": " + actual + " invece di " + expected[i]);
+        }
+    }
+
+    private static byte[] preface(int flags) {
+        return new byte[] {(byte) 0xC0, 'C', 'G', (byte) flags};
+    }
+
+    private static byte[] varint(int value) {
+        ByteBuffer out = ByteBuffer.allocate(5);
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            out.put(part);
+        }
+        return out.array();
+    }
+
+    private static ByteBuffer wrap(byte[] data) {
+        return ByteBuffer.wrap(data);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
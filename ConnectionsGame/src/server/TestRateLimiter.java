@@ -0,0 +1,137 @@
+package server;
+
+import server.manager.ConfigManager;
+import server.ratelimit.RateLimiter;
+import server.ratelimit.TokenBucket;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test per TokenBucket e RateLimiter.
+ * Il secchio riceve istanti simulati: raffica iniziale, ricarica parziale e
+ * completa senza superare la capacità, prelievi concorrenti. Il rate
+ * limiter usa i limiti di server.properties.
+ */
+public class TestRateLimiter {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: RateLimiter ===\n");
+
+        try {
+            // 1. Raffica: 10 token al secondo, al più 5 in una volta
+            System.out.println("1. Raffica iniziale...");
+            TokenBucket bucket = new TokenBucket(10, 5);
+            long now = System.nanoTime();
+            check(bucket.isFull(now), "secchio nuovo non pieno");
+            check(acquire(bucket, now, 10) == 5, "raffica diversa da 5 token");
+            check(!bucket.isFull(now), "secchio vuoto segnato pieno");
+            System.out.println("   Token disponibili subito: 5 su 10 richiesti");
+            System.out.println();
+
+            // 2. Ricarica: un token ogni 100 ms
+            System.out.println("2. Ricarica parziale...");
+            now += SECOND / 10;
+            check(acquire(bucket, now, 10) == 1, "dopo 100 ms più di un token");
+            now += SECOND / 4;
+            check(acquire(bucket, now, 10) == 2, "dopo 250 ms non 2 token");
+            System.out.println("   Dopo 100 ms: 1 token, dopo altri 250 ms: 2 token");
+            System.out.println();
+
+            // 3. Inattività lunga: il secchio torna pieno ma non oltre la capacità
+            System.out.println("3. Ricarica completa...");
+            now += 60 * SECOND;
+            check(bucket.isFull(now), "secchio non pieno dopo 60 s");
+            check(acquire(bucket, now, 100) == 5, "dopo 60 s più token della capacità");
+            System.out.println("   Dopo 60 s: 5 token (capacità), non 600");
+            System.out.println();
+
+            // 4. Prelievi concorrenti nello stesso istante: nessun token in più
+            System.out.println("4. Prelievi concorrenti...");
+            TokenBucket shared = new TokenBucket(1, 1000);
+            long sameInstant = System.nanoTime();
+            AtomicInteger granted = new AtomicInteger();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> granted.addAndGet(acquire(shared, sameInstant, 1000)));
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            check(granted.get() == 1000, "token concessi: " + granted.get() + " invece di 1000");
+            System.out.println("   4 thread x 1000 richieste: " + granted.get() + " token concessi");
+            System.out.println();
+
+            // 5. RateLimiter dalla configurazione: slot per operazione e per chiave
+            System.out.println("5. RateLimiter con i limiti di server.properties...");
+            ConfigManager.initialize("config/server.properties");
+            ConfigManager config = ConfigManager.getInstance();
+            int loginBurst = config.getRequestRateBurst("login");
+            check(config.getRequestRatePerSecond("login") > 0, "login senza limite in configurazione");
+
+            RateLimiter limiter = RateLimiter.fromConfig();
+            int loginGranted = 0;
+            for (int i = 0; i < loginBurst + 5; i++) {
+                if (limiter.tryAcquire("alice", "login")) {
+                    loginGranted++;
+                }
+            }
+            check(loginGranted == loginBurst, "login concessi ad alice: " + loginGranted + " invece di " + loginBurst);
+            check(limiter.tryAcquire("alice", "ping"), "ping di alice bloccato dal limite del login");
+            check(limiter.tryAcquire("bob", "login"), "login di bob bloccato dal limite di alice");
+            System.out.println("   alice: " + loginGranted + " login su " + (loginBurst + 5) + ", ping e bob non toccati");
+
+            InetAddress address = InetAddress.getLoopbackAddress();
+            int registerBurst = config.getRequestRateBurst("register");
+            int registerGranted = 0;
+            for (int i = 0; i < registerBurst + 5; i++) {
+                if (limiter.tryAcquire(address, "register")) {
+                    registerGranted++;
+                }
+            }
+            check(registerGranted == registerBurst, "register concessi: " + registerGranted + " invece di " + registerBurst);
+            System.out.println("   " + address.getHostAddress() + ": " + registerGranted + " register su " + (registerBurst + 5));
+
+            int acceptBurst = config.getAcceptRateBurst();
+            int accepted = 0;
+            for (int i = 0; i < acceptBurst + 5; i++) {
+                if (limiter.tryAcceptConnection(address)) {
+                    accepted++;
+                }
+            }
+            check(accepted == acceptBurst, "connessioni accettate: " + accepted + " invece di " + acceptBurst);
+            System.out.println("   Connessioni accettate: " + accepted + " su " + (acceptBurst + 5));
+            System.out.println("   " + limiter.getStats());
+            System.out.println("   Rifiuto: " + limiter.rejectionLine());
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Prova attempts prelievi nello stesso istante.
+     * @return token ottenuti
+     */
+    private static int acquire(TokenBucket bucket, long now, int attempts) {
+        int granted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (bucket.tryAcquire(now)) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
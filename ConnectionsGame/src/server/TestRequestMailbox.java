@@ -0,0 +1,285 @@
+package server;
+
+import server.admission.AdmissionControl;
+import server.admission.OperationClass;
+import server.manager.ConfigManager;
+import server.nio.Bulkheads;
+import server.nio.ClientAttachment;
+import server.nio.RequestMailbox;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test per RequestMailbox.
+ * Pool unico (bulkhead disattivati) con due worker: ordine e serialità
+ * delle richieste di una connessione, cessione del worker dopo un lotto,
+ * rifiuto delle richieste in attesa e azione di chiusura dopo il turno.
+ */
+public class TestRequestMailbox {
+
+    // RequestMailbox.MAX_BATCH: richieste per turno prima di cedere il worker
+    private static final int MAX_BATCH = 16;
+
+    // Eventi di tutte le mailbox, nell'ordine in cui avvengono
+    private static final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: RequestMailbox ===\n");
+
+        try {
+            System.setProperty("nio.bulkheads.enabled", "false");
+            System.setProperty("nio.worker.executor", "threadpool");
+            System.setProperty("thread.pool.size", "2");
+            ConfigManager.initialize("config/server.properties");
+
+            // 1. Due connessioni, classi alternate: ogni mailbox in ordine e una alla volta
+            System.out.println("1. Ordine e serialità per connessione...");
+            Bulkheads bulkheads = Bulkheads.fromConfig(new AdmissionControl("test", 0, 0));
+            int perConnection = 2000;
+            CountDownLatch handled = new CountDownLatch(2 * perConnection);
+            Recorder first = new Recorder("A", handled);
+            Recorder second = new Recorder("B", handled);
+            RequestMailbox firstMailbox = new RequestMailbox(null, bulkheads, first);
+            RequestMailbox secondMailbox = new RequestMailbox(null, bulkheads, second);
+            Thread[] producers = {
+                new Thread(() -> submitAll(firstMailbox, perConnection, OperationClass.GAMEPLAY, OperationClass.AUTH)),
+                new Thread(() -> submitAll(secondMailbox, perConnection, OperationClass.GAMEPLAY, OperationClass.AUTH))
+            };
+            for (Thread producer : producers) {
+                producer.start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            check(handled.await(5, TimeUnit.SECONDS), "richieste non eseguite: " + handled.getCount());
+            for (Recorder recorder : new Recorder[] {first, second}) {
+                check(recorder.maxInFlight.get() == 1,
+                        recorder.name + ": " + recorder.maxInFlight.get() + " richieste in parallelo");
+                check(recorder.handled.size() == perConnection, recorder.name + ": eseguite " + recorder.handled.size());
+                for (int i = 0; i < perConnection; i++) {
+                    check(recorder.handled.get(i) == i, recorder.name + ": posizione " + i + " = " + recorder.handled.get(i));
+                }
+            }
+            waitIdle(firstMailbox);
+            waitIdle(secondMailbox);
+            System.out.println("   2 connessioni x " + perConnection + " richieste: in ordine, al più una in corso per connessione");
+            System.out.println();
+
+            // 2. Un lotto di MAX_BATCH richieste, poi il worker passa all'altra connessione
+            System.out.println("2. Cessione del worker dopo " + MAX_BATCH + " richieste...");
+            events.clear();
+            Recorder blocker = new Recorder("X", null);
+            RequestMailbox firstBlocker = new RequestMailbox(null, bulkheads, blocker);
+            RequestMailbox secondBlocker = new RequestMailbox(null, bulkheads, blocker);
+            CountDownLatch releaseFirst = blocker.blockAt(0);
+            firstBlocker.submit(frame(0), OperationClass.GAMEPLAY, System.nanoTime());
+            blocker.awaitBlocked();
+            CountDownLatch releaseSecond = blocker.blockAt(1);
+            secondBlocker.submit(frame(1), OperationClass.GAMEPLAY, System.nanoTime());
+            blocker.awaitBlocked();
+
+            // Entrambi i worker occupati: A (40 richieste) e poi B (1) in coda nel pool
+            Recorder busy = new Recorder("A", null);
+            Recorder other = new Recorder("B", null);
+            RequestMailbox busyMailbox = new RequestMailbox(null, bulkheads, busy);
+            RequestMailbox otherMailbox = new RequestMailbox(null, bulkheads, other);
+            submitAll(busyMailbox, 40, OperationClass.GAMEPLAY);
+            otherMailbox.submit(frame(0), OperationClass.GAMEPLAY, System.nanoTime());
+
+            events.clear();
+            releaseFirst.countDown();  // Un solo worker libero
+            waitIdle(busyMailbox);
+            waitIdle(otherMailbox);
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                if (i == MAX_BATCH) {
+                    expected.add("B:0");
+                }
+                expected.add("A:" + i);
+            }
+            List<String> order = new ArrayList<>(events);
+            order.remove("X:0");  // Richiesta sbloccata che libera il worker
+            check(order.equals(expected), "ordine di esecuzione: " + order);
+            releaseSecond.countDown();
+            waitIdle(secondBlocker);
+            System.out.println("   A:0..A:" + (MAX_BATCH - 1) + ", B:0, A:" + MAX_BATCH + "..A:39");
+            System.out.println();
+
+            // 3. Pool pieno: tutte le richieste in attesa della connessione ricevono il rifiuto
+            System.out.println("3. Rifiuto delle richieste in attesa...");
+            Bulkheads small = Bulkheads.fromConfig(new AdmissionControl("piccola", 1, 0));
+            events.clear();
+            Recorder rejected = new Recorder("Z", null);
+            Recorder waiting = new Recorder("Y", null);
+            RequestMailbox rejectedMailbox = new RequestMailbox(null, small, rejected);
+            RequestMailbox blockerMailbox = new RequestMailbox(null, small, blocker);
+            RequestMailbox waitingMailbox = new RequestMailbox(null, small, waiting);
+
+            CountDownLatch releaseTurn = rejected.blockAt(0);
+            rejectedMailbox.submit(frame(0), OperationClass.GAMEPLAY, System.nanoTime());
+            rejected.awaitBlocked();
+            CountDownLatch releaseBlocker = blocker.blockAt(2);
+            blockerMailbox.submit(frame(2), OperationClass.GAMEPLAY, System.nanoTime());
+            blocker.awaitBlocked();
+            waitingMailbox.submit(frame(0), OperationClass.GAMEPLAY, System.nanoTime());  // Occupa l'unico posto in coda
+
+            // Classe diversa: il turno in corso si ferma e il turno successivo non trova posto
+            for (int i = 1; i <= 3; i++) {
+                rejectedMailbox.submit(frame(i), OperationClass.HEAVY, System.nanoTime());
+            }
+            releaseTurn.countDown();
+            waitIdle(rejectedMailbox);
+            check(rejected.handled.equals(Collections.singletonList(0)), "eseguite: " + rejected.handled);
+            check(rejected.rejected.equals(List.of(1, 2, 3)), "rifiutate: " + rejected.rejected);
+
+            releaseBlocker.countDown();
+            waitIdle(waitingMailbox);
+            check(waiting.handled.equals(Collections.singletonList(0)), "richiesta in coda non eseguita: " + waiting.handled);
+            System.out.println("   Turno interrotto: eseguita Z:0, rifiutate " + rejected.rejected + ", Y eseguita dopo lo sblocco");
+            System.out.println();
+
+            // 4. Chiusura durante un turno: l'azione finale aspetta la richiesta in corso
+            System.out.println("4. Chiusura dopo il turno in corso...");
+            events.clear();
+            Recorder closing = new Recorder("C", null);
+            RequestMailbox closingMailbox = new RequestMailbox(null, bulkheads, closing);
+            CountDownLatch releaseClosing = closing.blockAt(0);
+            for (int i = 0; i < 3; i++) {
+                closingMailbox.submit(frame(i), OperationClass.GAMEPLAY, System.nanoTime());
+            }
+            closing.awaitBlocked();
+
+            AtomicInteger closeRuns = new AtomicInteger();
+            CountDownLatch closed = new CountDownLatch(1);
+            closingMailbox.close(() -> {
+                events.add("logout");
+                closeRuns.incrementAndGet();
+                closed.countDown();
+            });
+            check(closeRuns.get() == 0, "azione di chiusura eseguita durante il turno");
+            releaseClosing.countDown();
+            check(closed.await(5, TimeUnit.SECONDS), "azione di chiusura non eseguita");
+            waitIdle(closingMailbox);
+            check(events.equals(List.of("C:0", "logout")), "sequenza: " + events);
+            check(closing.rejected.equals(List.of(1, 2)), "richieste non iniziate: " + closing.rejected);
+
+            closingMailbox.submit(frame(3), OperationClass.GAMEPLAY, System.nanoTime());
+            check(closeRuns.get() == 1, "azione di chiusura ripetuta");
+            check(closing.rejected.contains(3) && !closing.handled.contains(3), "richiesta dopo la chiusura eseguita");
+            System.out.println("   Sequenza: " + events + ", scartate " + closing.rejected);
+
+            AtomicInteger idleClose = new AtomicInteger();
+            new RequestMailbox(null, bulkheads, closing).close(idleClose::incrementAndGet);
+            check(idleClose.get() == 1, "chiusura di una mailbox inattiva non eseguita subito");
+            System.out.println("   Mailbox inattiva: azione eseguita subito dal chiamante");
+
+            bulkheads.shutdown();
+            small.shutdown();
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Handler che registra le richieste eseguite e rifiutate; può fermarsi
+     * su una richiesta finché il test non la sblocca.
+     */
+    private static final class Recorder implements RequestMailbox.Handler {
+        final String name;
+        final CountDownLatch done;
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> rejected = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        private volatile int blockIndex = -1;
+        private volatile CountDownLatch blocked;
+        private volatile CountDownLatch release;
+
+        Recorder(String name, CountDownLatch done) {
+            this.name = name;
+            this.done = done;
+        }
+
+        /**
+         * La richiesta index si fermerà: il latch restituito la sblocca.
+         */
+        CountDownLatch blockAt(int index) {
+            blocked = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+            blockIndex = index;
+            return release;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            check(blocked.await(5, TimeUnit.SECONDS), name + ": richiesta " + blockIndex + " non avviata");
+        }
+
+        @Override
+        public void handle(ClientAttachment attachment, byte[] frame, OperationClass operationClass, long admittedNanos) {
+            int index = ByteBuffer.wrap(frame).getInt();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            if (index == blockIndex) {
+                CountDownLatch waitFor = release;
+                blocked.countDown();
+                awaitQuietly(waitFor);
+            }
+            handled.add(index);
+            events.add(name + ":" + index);
+            inFlight.decrementAndGet();
+            if (done != null) {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void reject(ClientAttachment attachment, byte[] frame, OperationClass operationClass) {
+            rejected.add(ByteBuffer.wrap(frame).getInt());
+        }
+    }
+
+    /**
+     * Accoda count richieste, cambiando classe ogni 5 (un turno per gruppo).
+     */
+    private static void submitAll(RequestMailbox mailbox, int count, OperationClass... classes) {
+        for (int i = 0; i < count; i++) {
+            mailbox.submit(frame(i), classes[i / 5 % classes.length], System.nanoTime());
+        }
+    }
+
+    private static byte[] frame(int index) {
+        return ByteBuffer.allocate(4).putInt(index).array();
+    }
+
+    private static void waitIdle(RequestMailbox mailbox) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!mailbox.isIdle()) {
+            check(System.currentTimeMillis() < deadline, "mailbox ancora attiva");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
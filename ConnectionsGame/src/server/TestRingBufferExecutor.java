@@ -0,0 +1,166 @@
+package server;
+
+import server.nio.RingBufferExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test per RingBufferExecutor.
+ * Giro completo del ring più volte, prelievo a lotti, ring pieno e
+ * chiusura con task ancora in coda.
+ */
+public class TestRingBufferExecutor {
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: RingBufferExecutor ===\n");
+
+        try {
+            // 1. Ring da 4 posizioni, un worker: i task girano più volte sul ring, in ordine
+            System.out.println("1. Pubblicazione e prelievo oltre il giro del ring...");
+            RingBufferExecutor ring = new RingBufferExecutor("test-ring", 1, 4,
+                    RingBufferExecutor.WaitStrategy.BLOCKING, 2);
+            List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < 100; i++) {
+                int value = i;
+                while (true) {
+                    try {
+                        ring.execute(() -> executed.add(value));
+                        break;
+                    } catch (RejectedExecutionException e) {
+                        Thread.yield();  // Ring pieno: si riprova dopo che il worker ha liberato posizioni
+                    }
+                }
+            }
+            ring.shutdown();
+            check(ring.awaitTermination(5, TimeUnit.SECONDS), "worker non terminato");
+            check(executed.size() == 100, "eseguiti " + executed.size() + " task su 100");
+            for (int i = 0; i < executed.size(); i++) {
+                check(executed.get(i) == i, "ordine errato alla posizione " + i + ": " + executed.get(i));
+            }
+            System.out.println("   Capacità: " + ring.getCapacity() + ", task eseguiti in ordine: " + executed.size());
+            System.out.println();
+
+            // 2. Capacità arrotondata alla potenza di 2
+            System.out.println("2. Dimensionamento...");
+            RingBufferExecutor sized = new RingBufferExecutor("test-size", 1, 1000,
+                    RingBufferExecutor.WaitStrategy.BLOCKING, 16);
+            check(sized.getCapacity() == 1024, "capacità " + sized.getCapacity() + " invece di 1024");
+            sized.shutdown();
+            check(sized.awaitTermination(5, TimeUnit.SECONDS), "worker non terminato");
+            try {
+                new RingBufferExecutor("test-zero", 1, 0, RingBufferExecutor.WaitStrategy.BLOCKING, 16);
+                check(false, "capacità 0 accettata");
+            } catch (IllegalArgumentException e) {
+                System.out.println("   Capacità 0 rifiutata: " + e.getMessage());
+            }
+            System.out.println("   1000 posizioni richieste -> " + sized.getCapacity());
+            System.out.println();
+
+            // 3. Worker bloccato, ring pieno: il task viene rifiutato e non gira nel chiamante
+            System.out.println("3. Ring pieno...");
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger done = new AtomicInteger();
+            RingBufferExecutor full = new RingBufferExecutor("test-full", 1, 4,
+                    RingBufferExecutor.WaitStrategy.BLOCKING, 1);
+            full.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+                done.incrementAndGet();
+            });
+            started.await();
+            for (int i = 0; i < full.getCapacity(); i++) {
+                full.execute(done::incrementAndGet);
+            }
+
+            String caller = Thread.currentThread().getName();
+            AtomicInteger ranOnCaller = new AtomicInteger();
+            try {
+                full.execute(() -> {
+                    if (Thread.currentThread().getName().equals(caller)) {
+                        ranOnCaller.incrementAndGet();
+                    }
+                });
+                check(false, "task accettato con il ring pieno");
+            } catch (RejectedExecutionException e) {
+                System.out.println("   Task rifiutato: " + e.getMessage());
+            }
+            check(ranOnCaller.get() == 0, "task eseguito dal thread chiamante");
+            System.out.println("   In attesa: " + full.getPending() + "/" + full.getCapacity());
+            System.out.println();
+
+            // 4. Chiusura con il ring pieno: i task in coda vengono eseguiti, i nuovi rifiutati
+            System.out.println("4. Chiusura con task in coda...");
+            full.shutdown();
+            try {
+                full.execute(done::incrementAndGet);
+                check(false, "task accettato dopo shutdown()");
+            } catch (RejectedExecutionException e) {
+                System.out.println("   Task dopo shutdown() rifiutato: " + e.getMessage());
+            }
+            release.countDown();
+            check(full.awaitTermination(5, TimeUnit.SECONDS), "worker non terminato");
+            check(done.get() == full.getCapacity() + 1,
+                    "eseguiti " + done.get() + " task su " + (full.getCapacity() + 1));
+            System.out.println("   Task eseguiti prima della terminazione: " + done.get());
+            System.out.println();
+
+            // 5. Più produttori e più worker con prelievo a lotti: nessun task perso
+            System.out.println("5. Produttori e worker concorrenti...");
+            RingBufferExecutor shared = new RingBufferExecutor("test-mpmc", 3, 8,
+                    RingBufferExecutor.WaitStrategy.BLOCKING, 4);
+            AtomicInteger counted = new AtomicInteger();
+            AtomicInteger retries = new AtomicInteger();
+            Thread[] producers = new Thread[4];
+            for (int p = 0; p < producers.length; p++) {
+                producers[p] = new Thread(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        while (true) {
+                            try {
+                                shared.execute(counted::incrementAndGet);
+                                break;
+                            } catch (RejectedExecutionException e) {
+                                retries.incrementAndGet();
+                                Thread.yield();
+                            }
+                        }
+                    }
+                });
+                producers[p].start();
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            shared.shutdown();
+            check(shared.awaitTermination(5, TimeUnit.SECONDS), "worker non terminati");
+            check(counted.get() == 40000, "eseguiti " + counted.get() + " task su 40000");
+            System.out.println("   Eseguiti: " + counted.get() + ", nuovi tentativi con il ring pieno: " + retries.get());
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package server;
+
+import server.nio.TimerWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test per TimerWheel.
+ * La ruota riceve istanti simulati (in millisecondi): scadenza esatta,
+ * attività che rinvia la scadenza, rimozione dalle liste degli slot,
+ * timeout più lungo di un giro della ruota e pause lunghe tra due avanzamenti.
+ */
+public class TestTimerWheel {
+
+    // Istante dell'avanzamento in corso, registrato con ogni scadenza
+    private static long now;
+    private static final List<String> expired = new ArrayList<>();
+
+    public static void main(String[] args) {
+        System.out.println("=== TEST: TimerWheel ===\n");
+
+        try {
+            // 1. Scadenza: slot da 100 ms, timeout 300 ms
+            System.out.println("1. Scadenza di una connessione inattiva...");
+            TimerWheel wheel = newWheel(8, 100, 300, 0);
+            Connection a = new Connection("a");
+            wheel.add(a, 0);
+            advanceTo(wheel, 299);
+            check(expired.isEmpty(), "scaduta prima del timeout: " + expired);
+            advanceTo(wheel, 300);
+            checkExpired("a@300");
+            advanceTo(wheel, 2000);
+            check(expired.isEmpty(), "scadenza notificata due volte: " + expired);
+            System.out.println("   a: attività a 0 ms, scaduta a 300 ms, una sola volta");
+            System.out.println();
+
+            // 2. Attività: touch rinvia la scadenza, la voce cambia slot quando il suo scade
+            System.out.println("2. Attività che rinvia la scadenza...");
+            wheel = newWheel(8, 100, 300, 0);
+            Connection b = new Connection("b");
+            wheel.add(b, 0);
+            b.touch(250);
+            advanceTo(wheel, 300);
+            check(expired.isEmpty(), "scaduta nonostante l'attività a 250 ms: " + expired);
+            b.touch(420);
+            advanceTo(wheel, 700);
+            check(expired.isEmpty(), "scaduta nonostante l'attività a 420 ms: " + expired);
+            advanceTo(wheel, 750);  // Scadenza a 720 ms, ma al tick di 700 ms la voce è passata a quello di 800
+            check(expired.isEmpty(), "scaduta a metà tick: " + expired);
+            advanceTo(wheel, 800);
+            checkExpired("b@800");
+            System.out.println("   b: attività a 0, 250, 420 ms, scaduta al tick di 800 ms");
+            System.out.println();
+
+            // 3. Rimozione in testa, in mezzo e in coda alla lista di uno slot
+            System.out.println("3. Rimozione...");
+            wheel = newWheel(8, 100, 300, 1000);
+            Connection[] same = {new Connection("c"), new Connection("d"), new Connection("e"), new Connection("f")};
+            for (Connection connection : same) {
+                wheel.add(connection, 1000);  // Stesso slot: lista in ordine f, e, d, c
+            }
+            wheel.remove(same[3]);  // Testa
+            wheel.remove(same[1]);  // Mezzo
+            wheel.remove(same[0]);  // Coda
+            wheel.remove(same[0]);  // Già rimossa: nessun effetto
+            wheel.remove(new Connection("mai aggiunta"));
+            advanceTo(wheel, 1300);
+            checkExpired("e@1300");
+
+            wheel.add(same[1], 1300);  // Di nuovo in ruota dopo la rimozione
+            advanceTo(wheel, 1600);
+            checkExpired("d@1600");
+            System.out.println("   c, d, f rimosse dallo slot, e scaduta; d reinserita e scaduta");
+            System.out.println();
+
+            // 4. Timeout più lungo di un giro: la voce ripassa per lo slot senza scadere
+            System.out.println("4. Scadenza oltre il giro della ruota...");
+            wheel = newWheel(8, 100, 2000, 0);  // Giro di 800 ms, timeout 2000 ms
+            Connection g = new Connection("g");
+            Connection h = new Connection("h");
+            wheel.add(g, 0);
+            wheel.add(h, 50);
+            for (long time = 100; time <= 2000; time += 100) {
+                advanceTo(wheel, time);
+                if (time < 2000) {
+                    check(expired.isEmpty(), "scaduta a " + time + " ms: " + expired);
+                }
+            }
+            checkExpired("g@2000");
+            h.touch(1900);
+            for (long time = 2100; time <= 3900; time += 100) {
+                advanceTo(wheel, time);
+                if (time < 3900) {
+                    check(expired.isEmpty(), "h scaduta a " + time + " ms: " + expired);
+                }
+            }
+            checkExpired("h@3900");
+            System.out.println("   g: scaduta a 2000 ms dopo due giri; h: attività a 1900 ms, scaduta a 3900 ms");
+            System.out.println();
+
+            // 5. Pausa lunga tra due avanzamenti: un solo giro, nessuna voce persa o ripetuta
+            System.out.println("5. Avanzamento dopo una pausa lunga...");
+            wheel = newWheel(8, 100, 300, 0);
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Connection connection = new Connection("n" + i);
+                wheel.add(connection, i * 40);
+                names.add(connection.name + "@100000");
+            }
+            Connection recent = new Connection("recente");
+            wheel.add(recent, 99_900);
+            advanceTo(wheel, 100_000);
+            check(expired.size() == 20 && expired.containsAll(names), "scadute dopo la pausa: " + expired);
+            expired.clear();
+            advanceTo(wheel, 100_199);
+            check(expired.isEmpty(), "scaduta prima del timeout: " + expired);
+            advanceTo(wheel, 100_200);
+            checkExpired("recente@100200");
+            System.out.println("   20 voci scadute una volta sola dopo 100 s; attività a 99.9 s scaduta a 100.2 s");
+
+            System.out.println("\nTEST COMPLETATO CON SUCCESSO!");
+
+        } catch (Exception e) {
+            System.err.println("\nERRORE durante il test:");
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Connection extends TimerWheel.Entry {
+        final String name;
+
+        Connection(String name) {
+            this.name = name;
+        }
+    }
+
+    private static TimerWheel newWheel(int wheelSize, long tickMs, long timeoutMs, long start) {
+        expired.clear();
+        return new TimerWheel(wheelSize, tickMs, timeoutMs, start,
+                entry -> expired.add(((Connection) entry).name + "@" + now));
+    }
+
+    private static void advanceTo(TimerWheel wheel, long time) {
+        now = time;
+        wheel.advance(time);
+    }
+
+    /**
+     * Le scadenze notificate dall'ultimo controllo sono esattamente quelle attese.
+     */
+    private static void checkExpired(String... expected) {
+        check(expired.equals(List.of(expected)), "scadute: " + expired + " invece di " + List.of(expected));
+        expired.clear();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package server.admission;
+
+import server.manager.ConfigManager;
+import server.protocol.JsonResponse;
+import server.protocol.ProtocolSession;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Controllo di ammissione contro il sovraccarico, condiviso da tutte le connessioni.
+ *
+ * Il lavoro in attesa di un worker è limitato a queueCapacity elementi:
+ * oltre, tryAdmit() fallisce e il client riceve subito una risposta
+ * "server occupato" già codificata, invece di allungare la coda.
+ * Quando un worker prende in carico un elemento, start() registra il tempo
+ * passato in coda e scarta quelli che hanno atteso oltre la scadenza:
+ * il client ha probabilmente già rinunciato, eseguirli allungherebbe
+ * solo l'attesa degli altri.
+ *
+ * Il server NIO ammette le singole richieste (un controllo per classe di
+ * operazioni, vedi OperationClass), il server TCP le connessioni in attesa
+ * di un thread del pool.
+ */
+public class AdmissionControl {
+    private static final JsonResponse BUSY = JsonResponse.error("Server occupato, riprova tra poco");
+
+    private final String name;  // Per le metriche
+    private final int queueCapacity;  // 0 = nessun limite
+    private final long deadlineNanos;  // 0 = nessuna scadenza
+
+    // Elementi ammessi e non ancora presi in carico da un worker
+    private final AtomicInteger queued;
+
+    // Risposte "server occupato" già codificate, per variante di protocollo
+    private final AtomicReferenceArray<byte[]> busyResponses;
+
+    private final LatencyHistogram queueWait;
+    private final LongAdder rejected;
+    private final LongAdder expired;
+
+    public AdmissionControl(String name, int queueCapacity, long deadlineMs) {
+        this.name = name;
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.deadlineNanos = Math.max(0, deadlineMs) * 1_000_000L;
+        this.queued = new AtomicInteger();
+        this.busyResponses = new AtomicReferenceArray<>(ProtocolSession.PUSH_VARIANTS);
+        this.queueWait = new LatencyHistogram();
+        this.rejected = new LongAdder();
+        this.expired = new LongAdder();
+    }
+
+    /**
+     * Crea il controllo di ammissione con i limiti di server.properties.
+     */
+    public static AdmissionControl fromConfig(String name) {
+        ConfigManager config = ConfigManager.getInstance();
+        return new AdmissionControl(name, config.getAdmissionQueueCapacity(), config.getAdmissionDeadlineMs());
+    }
+
+    /**
+     * Prenota un posto in coda.
+     * @return false se la coda è piena: l'elemento va rifiutato con busy()
+     */
+    public boolean tryAdmit() {
+        if (queued.incrementAndGet() > queueCapacity && queueCapacity > 0) {
+            queued.decrementAndGet();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Un worker prende in carico un elemento ammesso: libera il posto in coda
+     * e registra l'attesa.
+     * @param admittedNanos System.nanoTime() al momento di tryAdmit()
+     * @return false se l'elemento ha atteso oltre la scadenza e va scartato
+     */
+    public boolean start(long admittedNanos) {
+        queued.decrementAndGet();
+        long waited = System.nanoTime() - admittedNanos;
+        queueWait.recordNanos(waited);
+
+        if (deadlineNanos > 0 && waited > deadlineNanos) {
+            expired.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Annulla un'ammissione il cui elemento non è stato accodato (es. executor chiuso).
+     */
+    public void cancel() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Risposta "server occupato" già codificata per il protocollo della sessione.
+     * Non va modificata: lo stesso array è condiviso tra le connessioni.
+     */
+    public byte[] busy(ProtocolSession session) {
+        int variant = session.getPushVariant();
+        byte[] encoded = busyResponses.get(variant);
+        if (encoded == null) {
+            // Più thread possono codificarla insieme: il risultato è identico
+            encoded = session.encodeUncompressed(BUSY);
+            busyResponses.set(variant, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Pool di worker con coda limitata alla capacità di ammissione
+     * (coda illimitata se la capacità è 0).
+     *
+     * Ogni task in coda ha almeno un elemento ammesso da eseguire, quindi il
+     * contatore di tryAdmit() tiene la coda sotto la capacità. Fanno eccezione
+     * le mailbox NIO che contengono solo rifiuti già codificati: se riempiono
+     * la coda, execute() lancia RejectedExecutionException e il chiamante
+     * risponde "server occupato" (il task non gira mai nel thread chiamante,
+     * che per NIO è il reactor). Dopo shutdown() i task vengono sempre rifiutati.
+     * @param threadName prefisso dei nomi dei thread (es. "nio-gameplay" -> nio-gameplay-0)
+     */
+    public ExecutorService newWorkerPool(String threadName, int threads) {
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+            ? new ArrayBlockingQueue<>(queueCapacity)
+            : new LinkedBlockingQueue<>();
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> new Thread(runnable, threadName + "-" + counter.getAndIncrement());
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, factory);
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Elementi ammessi al più in coda (0 = nessun limite).
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Riepilogo per le metriche.
+     */
+    public String getStats() {
+        return String.format("ammissione %s: in coda=%d/%s, rifiutate=%d, scadute=%d, attesa in coda %s",
+            name, queued.get(), queueCapacity > 0 ? String.valueOf(queueCapacity) : "illimitata",
+            rejected.sum(), expired.sum(), queueWait.summary());
+    }
+}
@@ -0,0 +1,101 @@
+package server.admission;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Istogramma di latenze in microsecondi, a bucket log-lineari: ogni
+ * potenza di 2 è divisa in 8 sotto-intervalli, quindi i percentili hanno
+ * un errore relativo massimo del 12.5% con memoria fissa.
+ * recordNanos() è lock-free e può essere chiamato da più thread insieme.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 40;  // Fino a 2^40 us (circa 12 giorni)
+    private static final int BUCKETS = MAGNITUDES * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder total;
+    private final LongAdder sumMicros;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.total = new LongAdder();
+        this.sumMicros = new LongAdder();
+    }
+
+    /**
+     * Registra una durata in nanosecondi.
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        total.increment();
+        sumMicros.add(micros);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;  // Valori piccoli: un bucket per microsecondo
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);  // >= SUB_BUCKET_BITS
+        int sub = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int index = (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    /**
+     * Limite superiore (in us) dei valori del bucket.
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long base = 1L << magnitude;
+        long step = base >>> SUB_BUCKET_BITS;
+        return base + (sub + 1) * step - 1;
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Percentile (0-100) in microsecondi, arrotondato al limite superiore del bucket.
+     */
+    public long percentileMicros(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(snapshot.length - 1);
+    }
+
+    /**
+     * Riepilogo leggibile: campioni, media e percentili principali.
+     */
+    public String summary() {
+        long count = total.sum();
+        long mean = count == 0 ? 0 : sumMicros.sum() / count;
+        return String.format("n=%d media=%dus p50=%dus p99=%dus p99.9=%dus max=%dus",
+            count, mean, percentileMicros(50), percentileMicros(99),
+            percentileMicros(99.9), percentileMicros(100));
+    }
+}
@@ -0,0 +1,50 @@
+package server.admission;
+
+/**
+ * Classi di operazioni del protocollo, con pool e coda separati nel server
+ * NIO (bulkhead): le richieste di una classe non occupano i worker delle altre.
+ */
+public enum OperationClass {
+    // Partita in corso: brevi e sensibili alla latenza
+    GAMEPLAY("gameplay"),
+
+    // Registrazione, login e credenziali
+    AUTH("auth"),
+
+    // Letture costose (classifica: ordina tutti gli utenti e produce risposte grandi)
+    HEAVY("heavy");
+
+    private final String configName;
+
+    OperationClass(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Nome usato nelle chiavi di configurazione e nelle metriche.
+     */
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Classe di un'operazione; le operazioni sconosciute o mancanti sono
+     * GAMEPLAY (vengono rifiutate subito dal CommandHandler).
+     */
+    public static OperationClass of(String operation) {
+        if (operation == null) {
+            return GAMEPLAY;
+        }
+        switch (operation) {
+            case "register":
+            case "login":
+            case "logout":
+            case "updateCredentials":
+                return AUTH;
+            case "requestLeaderboard":
+                return HEAVY;
+            default:
+                return GAMEPLAY;
+        }
+    }
+}
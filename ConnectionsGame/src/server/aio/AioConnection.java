@@ -0,0 +1,217 @@
+package server.aio;
+
+import server.log.AsyncLogger;
+import server.transport.ConnectionContext;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.InterruptedByTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connessione del server aio, guidata dai completamenti di NIO.2.
+ *
+ * Ciclo: read -> decodifica ed esecuzione dei messaggi letti (nel thread
+ * del gruppo che ha completato la lettura) -> write di tutte le risposte
+ * con una gathering write -> read successiva. C'è al più un'operazione in
+ * corso per connessione, quindi le risposte restano in ordine senza code e
+ * un client che non legge le risposte smette di essere letto.
+ */
+class AioConnection {
+    private static final int READ_BUFFER_SIZE = 16384;
+
+    private final AioTransport transport;
+    private final AsynchronousSocketChannel channel;
+    private final ConnectionContext context;
+    private final long idleTimeoutMs;  // 0 = nessun timeout
+
+    // Buffer di lettura della connessione (diretto: niente copia nel kernel)
+    private final ByteBuffer readBuffer;
+
+    // Frame estratti dall'ultima lettura (accesso da un completamento alla volta)
+    private final List<byte[]> frames;
+
+    // Risposte in corso di invio
+    private ByteBuffer[] pendingWrite;
+
+    // true tra il completamento di una lettura e la fine della scrittura (protetto da this)
+    private boolean busy;
+    private boolean closed;
+
+    private final CompletionHandler<Integer, Void> readHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Integer bytesRead, Void unused) {
+            onRead(bytesRead);
+        }
+
+        @Override
+        public void failed(Throwable error, Void unused) {
+            onError(error);
+        }
+    };
+
+    private final CompletionHandler<Long, Void> writeHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(Long bytesWritten, Void unused) {
+            onWrite();
+        }
+
+        @Override
+        public void failed(Throwable error, Void unused) {
+            onError(error);
+        }
+    };
+
+    AioConnection(AioTransport transport, AsynchronousSocketChannel channel,
+                  ConnectionContext context, long idleTimeoutMs) {
+        this.transport = transport;
+        this.channel = channel;
+        this.context = context;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        this.frames = new ArrayList<>();
+    }
+
+    String getClientAddress() {
+        return context.getClientAddress();
+    }
+
+    /**
+     * Avvia (o riprende) la lettura.
+     */
+    void read() {
+        readBuffer.clear();
+        try {
+            channel.read(readBuffer, idleTimeoutMs, TimeUnit.MILLISECONDS, null, readHandler);
+        } catch (RuntimeException e) {
+            // Canale già chiuso (es. dalla chiusura del server)
+            close();
+        }
+    }
+
+    private void onRead(int bytesRead) {
+        if (bytesRead == -1) {
+            AsyncLogger.debug("  Client ha chiuso la connessione: {}", getClientAddress());
+            close();
+            return;
+        }
+
+        synchronized (this) {
+            if (closed || transport.isDraining()) {
+                // Letto dopo l'inizio della chiusura: non viene elaborato
+                closeLocked();
+                return;
+            }
+            busy = true;
+        }
+
+        List<ByteBuffer> responses = new ArrayList<>();
+        try {
+            frames.clear();
+            readBuffer.flip();
+            byte[] prefaceAck = context.decode(readBuffer, frames);
+            if (prefaceAck != null) {
+                responses.add(ByteBuffer.wrap(prefaceAck));
+            }
+        } catch (IOException e) {
+            AsyncLogger.warn("✗ Errore con client {}: {}", getClientAddress(), e.getMessage());
+            close();
+            return;
+        }
+
+        for (byte[] frame : frames) {
+            byte[] response = context.checkRateLimit(frame);
+            if (response == null) {
+                response = context.process(frame);
+            }
+            responses.add(ByteBuffer.wrap(response));
+        }
+        AioTransport.RESPONSES.add(frames.size());
+
+        if (responses.isEmpty()) {
+            // Messaggio incompleto: si continua a leggere
+            finishWrite();
+            return;
+        }
+
+        pendingWrite = responses.toArray(new ByteBuffer[0]);
+        write();
+    }
+
+    private void write() {
+        try {
+            channel.write(pendingWrite, 0, pendingWrite.length, 0, TimeUnit.MILLISECONDS, null, writeHandler);
+        } catch (RuntimeException e) {
+            close();
+        }
+    }
+
+    private void onWrite() {
+        // Scrittura parziale: si riprende da dove si era rimasti
+        if (pendingWrite[pendingWrite.length - 1].hasRemaining()) {
+            write();
+            return;
+        }
+        pendingWrite = null;
+        finishWrite();
+    }
+
+    /**
+     * Fine di un giro lettura-elaborazione-scrittura: legge ancora, o chiude
+     * se nel frattempo è iniziata la chiusura del server.
+     */
+    private void finishWrite() {
+        synchronized (this) {
+            busy = false;
+            if (closed || transport.isDraining()) {
+                closeLocked();
+                return;
+            }
+        }
+        read();
+    }
+
+    private void onError(Throwable error) {
+        if (error instanceof InterruptedByTimeoutException) {
+            AsyncLogger.info("  Connessione inattiva: {}", getClientAddress());
+        } else if (!(error instanceof AsynchronousCloseException)) {
+            AsyncLogger.warn("✗ Errore con client {}: {}", getClientAddress(), error.getMessage());
+        }
+        close();
+    }
+
+    /**
+     * Chiusura ordinata del server: chiude subito la connessione se è in
+     * attesa di dati, altrimenti la chiuderà finishWrite() dopo l'invio delle risposte.
+     */
+    synchronized void closeIfIdle() {
+        if (!busy) {
+            closeLocked();
+        }
+    }
+
+    synchronized void close() {
+        closeLocked();
+    }
+
+    private void closeLocked() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        context.close();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignora
+        }
+        transport.connectionClosed(this);
+        AsyncLogger.info("✗ Connessione chiusa: {}", getClientAddress());
+    }
+}
@@ -0,0 +1,227 @@
+package server.aio;
+
+import server.log.AsyncLogger;
+import server.manager.ConfigManager;
+import server.ratelimit.RateLimiter;
+import server.transport.RequestPipeline;
+import server.transport.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Trasporto NIO.2 basato sui completamenti: AsynchronousServerSocketChannel
+ * e AsynchronousSocketChannel su un AsynchronousChannelGroup a thread fissi.
+ *
+ * Non ci sono selector né worker pool separati: il thread del gruppo che
+ * completa una lettura decodifica ed esegue i messaggi, poi avvia la
+ * scrittura delle risposte (vedi AioConnection).
+ */
+public class AioTransport implements Transport {
+    private static final long DRAIN_POLL_MS = 5;
+
+    static final LongAdder ACCEPTED = new LongAdder();
+    static final LongAdder RESPONSES = new LongAdder();
+
+    private final Set<AioConnection> connections = ConcurrentHashMap.newKeySet();
+
+    private AsynchronousChannelGroup group;
+    private AsynchronousServerSocketChannel serverChannel;
+    private RequestPipeline pipeline;
+    private RateLimiter rateLimiter;
+    private long idleTimeoutMs;
+    private volatile boolean draining;
+
+    private final CompletionHandler<AsynchronousSocketChannel, Void> acceptHandler = new CompletionHandler<>() {
+        @Override
+        public void completed(AsynchronousSocketChannel channel, Void unused) {
+            accept();  // Subito la prossima accept, poi la gestione di questa
+            handleAccept(channel);
+        }
+
+        @Override
+        public void failed(Throwable error, Void unused) {
+            if (draining || error instanceof AsynchronousCloseException) {
+                return;
+            }
+            System.err.println("✗ Errore nell'accettare connessione: " + error.getMessage());
+            accept();
+        }
+    };
+
+    @Override
+    public String getName() {
+        return "AIO";
+    }
+
+    @Override
+    public void start(RequestPipeline pipeline) throws IOException {
+        ConfigManager config = ConfigManager.getInstance();
+        int tcpPort = config.getTcpPort();
+        int groupThreads = config.getAioGroupThreads();
+        this.idleTimeoutMs = config.getIdleTimeoutSeconds() * 1000L;
+        this.pipeline = pipeline;
+        this.rateLimiter = pipeline.getRateLimiter();
+
+        System.out.println("4. Creazione AsynchronousChannelGroup...");
+        group = AsynchronousChannelGroup.withFixedThreadPool(groupThreads, groupThreadFactory());
+        System.out.println("   Thread del gruppo: " + groupThreads);
+        System.out.println("   Timeout inattività: " +
+                         (idleTimeoutMs > 0 ? (idleTimeoutMs / 1000) + " secondi" : "disattivato"));
+        System.out.println("   ✓ Gruppo creato\n");
+
+        System.out.println("5. Avvio server aio sulla porta " + tcpPort + "...");
+        serverChannel = AsynchronousServerSocketChannel.open(group);
+        serverChannel.bind(new InetSocketAddress(tcpPort));
+        accept();
+        System.out.println("   ✓ Server channel in ascolto\n");
+    }
+
+    private static ThreadFactory groupThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory defaults = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaults.newThread(runnable);
+            thread.setName("aio-group-" + counter.getAndIncrement());
+            return thread;
+        };
+    }
+
+    private void accept() {
+        try {
+            serverChannel.accept(null, acceptHandler);
+        } catch (RuntimeException e) {
+            // Server channel chiuso dalla chiusura ordinata
+        }
+    }
+
+    /**
+     * Registra una nuova connessione e avvia la prima lettura.
+     * Le connessioni oltre il limite per IP vengono chiuse subito.
+     */
+    private void handleAccept(AsynchronousSocketChannel channel) {
+        try {
+            InetSocketAddress remote = (InetSocketAddress) channel.getRemoteAddress();
+            if (draining || !rateLimiter.tryAcceptConnection(remote.getAddress())) {
+                channel.close();
+                return;
+            }
+
+            AioConnection connection = new AioConnection(this, channel,
+                    pipeline.open(remote.getAddress(), remote.toString()), idleTimeoutMs);
+            connections.add(connection);
+            if (draining) {
+                connection.close();  // Accettata mentre iniziava la chiusura
+                return;
+            }
+            ACCEPTED.increment();
+            AsyncLogger.info("✓ Nuova connessione da: {}", connection.getClientAddress());
+
+            connection.read();
+
+        } catch (IOException e) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // Ignora
+            }
+        }
+    }
+
+    boolean isDraining() {
+        return draining;
+    }
+
+    void connectionClosed(AioConnection connection) {
+        connections.remove(connection);
+    }
+
+    /**
+     * Chiusura ordinata, a fasi:
+     * 1. niente nuove connessioni;
+     * 2. le connessioni in attesa di dati vengono chiuse, le altre
+     *    completano la richiesta in corso, inviano le risposte e si chiudono.
+     */
+    @Override
+    public boolean drain(long deadlineNanos) {
+        long start = System.nanoTime();
+        int active = connections.size();
+
+        // 1. Niente nuove connessioni
+        draining = true;
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+
+        // 2. Niente nuove richieste, completamento di quelle in corso
+        for (AioConnection connection : connections) {
+            connection.closeIfIdle();
+        }
+
+        boolean drained = true;
+        while (!connections.isEmpty()) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                drained = false;
+                break;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drained = false;
+                break;
+            }
+        }
+
+        if (!drained) {
+            System.out.println("⚠ Scadenza raggiunta: " + connections.size() +
+                             " connessioni ancora attive (chiuse comunque)");
+        }
+        System.out.println("✓ Connessioni aio svuotate (" + active + " connessioni, richieste: " +
+                         (System.nanoTime() - start) / 1_000_000L + " ms)");
+        return drained;
+    }
+
+    /**
+     * Chiude le connessioni rimaste e ferma i thread del gruppo.
+     */
+    @Override
+    public void close() {
+        draining = true;
+        for (AioConnection connection : connections) {
+            connection.close();
+        }
+
+        if (group != null) {
+            try {
+                group.shutdownNow();
+                group.awaitTermination(2, TimeUnit.SECONDS);
+            } catch (IOException e) {
+                // Ignora
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public String getStats() {
+        return "aio: connessioni accettate=" + ACCEPTED.sum() + ", risposte=" + RESPONSES.sum();
+    }
+}
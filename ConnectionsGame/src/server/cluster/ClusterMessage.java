@@ -0,0 +1,246 @@
+package server.cluster;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.ToNumberPolicy;
+import server.manager.GameManager;
+import server.model.Game;
+import server.model.User;
+import server.model.WordGroup;
+import server.protocol.JsonRequest;
+import server.protocol.JsonResponse;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Messaggio del protocollo interno tra i nodi del cluster.
+ *
+ * Sul filo: [lunghezza (int, 4 byte)][JSON UTF-8]. Ogni richiesta ha un id
+ * scelto dal mittente; la risposta (tipo REPLY) riporta lo stesso id, così
+ * su una connessione possono esserci più richieste in volo.
+ * Come JsonRequest contiene tutti i campi possibili: ogni tipo usa i suoi.
+ */
+public class ClusterMessage {
+    private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    // I numeri dentro "data" restano interi (Long) anche dopo il passaggio tra nodi
+    private static final Gson GSON = new GsonBuilder()
+        .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+        .create();
+
+    // Tipi di messaggio
+    public static final String FORWARD = "forward";          // richiesta di un client per un utente del nodo
+    public static final String TOP_K = "topK";              // migliori giocatori del nodo
+    public static final String RANK = "rank";               // posizione locale e punteggio di un giocatore
+    public static final String COUNT_ABOVE = "countAbove";  // utenti del nodo con punteggio maggiore
+    public static final String GAME_STATS = "gameStats";    // statistiche locali della partita corrente
+    public static final String GAME_SYNC = "gameSync";      // partita corrente (inviata o richiesta al coordinatore)
+    public static final String DETACH_USER = "detachUser";  // rimuove un utente per spostarlo su un altro nodo
+    public static final String ATTACH_USER = "attachUser";  // aggiunge un utente spostato da un altro nodo
+    public static final String REPLY = "reply";
+
+    private String type;
+    private long id;
+
+    // FORWARD: utente loggato sulla connessione del client (null = nessuno)
+    // RANK, DETACH_USER: utente interessato
+    private String user;
+    private String password;
+    private JsonRequest request;
+
+    // TOP_K: quanti giocatori (null = tutti); risposte RANK e COUNT_ABOVE, ATTACH_USER (1 = ok)
+    private Integer count;
+    // COUNT_ABOVE: soglia; risposta RANK: punteggio del giocatore
+    private Integer score;
+
+    // Contenuti delle risposte (o di GAME_SYNC inviato dal coordinatore)
+    private JsonResponse response;
+    private List<ScoreEntry> entries;
+    private GameManager.GameStats stats;
+    private GameSnapshot game;
+    private User account;
+
+    /**
+     * Una riga di classifica.
+     */
+    public static class ScoreEntry {
+        public final String username;
+        public final int score;
+        public int rank;
+
+        public ScoreEntry(String username, int score) {
+            this.username = username;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Partita corrente come la vede il coordinatore: i nodi la ricreano
+     * con il tempo rimanente, così scadono tutti insieme.
+     */
+    public static class GameSnapshot {
+        final int gameId;
+        final long remainingTime;
+        final List<String> themes;
+        final List<List<String>> words;
+
+        GameSnapshot(Game game) {
+            this.gameId = game.getGameId();
+            this.remainingTime = game.getRemainingTime();
+            this.themes = new ArrayList<>();
+            this.words = new ArrayList<>();
+            for (WordGroup group : game.getGroups()) {
+                themes.add(group.getTheme());
+                words.add(group.getWordsList());
+            }
+        }
+
+        Game toGame() {
+            List<WordGroup> groups = new ArrayList<>();
+            for (int i = 0; i < themes.size(); i++) {
+                groups.add(new WordGroup(themes.get(i), words.get(i)));
+            }
+            return new Game(gameId, groups, remainingTime);
+        }
+    }
+
+    public ClusterMessage(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Risposta vuota a questo messaggio.
+     */
+    public ClusterMessage reply() {
+        ClusterMessage reply = new ClusterMessage(REPLY);
+        reply.id = id;
+        return reply;
+    }
+
+    // ==================== FILO ====================
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        byte[] json = GSON.toJson(this).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(json.length);
+        out.write(json);
+    }
+
+    public static ClusterMessage readFrom(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Messaggio di cluster non valido (" + length + " byte)");
+        }
+        byte[] json = new byte[length];
+        in.readFully(json);
+        return GSON.fromJson(new String(json, StandardCharsets.UTF_8), ClusterMessage.class);
+    }
+
+    // Getters e Setters
+
+    public String getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public ClusterMessage setUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public ClusterMessage setPassword(String password) {
+        this.password = password;
+        return this;
+    }
+
+    public JsonRequest getRequest() {
+        return request;
+    }
+
+    public ClusterMessage setRequest(JsonRequest request) {
+        this.request = request;
+        return this;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public ClusterMessage setCount(Integer count) {
+        this.count = count;
+        return this;
+    }
+
+    public Integer getScore() {
+        return score;
+    }
+
+    public ClusterMessage setScore(Integer score) {
+        this.score = score;
+        return this;
+    }
+
+    public JsonResponse getResponse() {
+        return response;
+    }
+
+    public ClusterMessage setResponse(JsonResponse response) {
+        this.response = response;
+        return this;
+    }
+
+    public List<ScoreEntry> getEntries() {
+        return entries;
+    }
+
+    public ClusterMessage setEntries(List<ScoreEntry> entries) {
+        this.entries = entries;
+        return this;
+    }
+
+    public GameManager.GameStats getStats() {
+        return stats;
+    }
+
+    public ClusterMessage setStats(GameManager.GameStats stats) {
+        this.stats = stats;
+        return this;
+    }
+
+    public GameSnapshot getGame() {
+        return game;
+    }
+
+    public ClusterMessage setGame(GameSnapshot game) {
+        this.game = game;
+        return this;
+    }
+
+    public User getAccount() {
+        return account;
+    }
+
+    public ClusterMessage setAccount(User account) {
+        this.account = account;
+        return this;
+    }
+}
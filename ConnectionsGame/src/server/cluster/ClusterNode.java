@@ -0,0 +1,680 @@
+package server.cluster;
+
+import server.handler.CommandHandler;
+import server.log.AsyncLogger;
+import server.manager.ConfigManager;
+import server.manager.GameEventListener;
+import server.manager.GameManager;
+import server.manager.UserManager;
+import server.model.Game;
+import server.model.User;
+import server.protocol.JsonRequest;
+import server.protocol.JsonResponse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Nodo di un cluster di server Connections.
+ *
+ * Gli utenti sono ripartiti tra i nodi in base all'hash dello username:
+ * ogni nodo tiene utenti, statistiche e stati di partita solo della propria
+ * partizione. Un client può collegarsi a qualunque nodo: le operazioni su un
+ * utente di un'altra partizione vengono inoltrate al nodo proprietario con un
+ * piccolo protocollo TCP interno (ClusterMessage) ed eseguite lì.
+ * La classifica globale unisce i top-K parziali di tutti i nodi.
+ *
+ * Il nodo 0 coordina le partite: le carica dal file come un server singolo e
+ * le invia agli altri nodi, che le rendono correnti con lo stesso tempo
+ * rimanente e non ne avviano di proprie.
+ */
+public class ClusterNode implements GameEventListener {
+    private static final int COORDINATOR = 0;
+    private static final long GAME_SYNC_RETRY_MS = 1000;
+
+    private final int nodeId;
+    private final int nodeCount;
+    private final PeerClient[] peers;  // null alla posizione di questo nodo
+    private final UserManager userManager;
+    private final GameManager gameManager;
+    private final long timeoutMs;
+
+    // Richieste ricevute dagli altri nodi
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final Set<Socket> inbound;
+
+    private volatile boolean running;
+
+    public ClusterNode(int nodeId, String[] nodes, UserManager userManager, GameManager gameManager,
+                       long timeoutMs, int workerThreads) throws IOException {
+        if (nodeId < 0 || nodeId >= nodes.length) {
+            throw new IllegalArgumentException("cluster.node.id=" + nodeId + " fuori da cluster.nodes (" +
+                                               nodes.length + " nodi)");
+        }
+
+        this.nodeId = nodeId;
+        this.nodeCount = nodes.length;
+        this.userManager = userManager;
+        this.gameManager = gameManager;
+        this.timeoutMs = timeoutMs;
+
+        this.peers = new PeerClient[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            if (i != nodeId) {
+                peers[i] = new PeerClient(i, parseAddress(nodes[i]), timeoutMs);
+            }
+        }
+
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(new InetSocketAddress(parseAddress(nodes[nodeId]).getPort()));
+
+        this.workers = Executors.newFixedThreadPool(Math.max(1, workerThreads), r -> {
+            Thread thread = new Thread(r, "cluster-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.inbound = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Crea e avvia il nodo se cluster.enabled=true e lo registra sul GameManager.
+     * @return il nodo, o null se il server funziona da solo
+     */
+    public static ClusterNode startFor(UserManager userManager, GameManager gameManager) throws IOException {
+        ConfigManager config = ConfigManager.getInstance();
+        if (!config.isClusterEnabled()) {
+            return null;
+        }
+
+        ClusterNode node = new ClusterNode(config.getClusterNodeId(), config.getClusterNodes(),
+            userManager, gameManager, config.getClusterRequestTimeoutMs(), config.getClusterWorkerThreads());
+        node.start();
+        return node;
+    }
+
+    public void start() {
+        running = true;
+
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        if (isCoordinator()) {
+            gameManager.addGameEventListener(this);
+        } else {
+            // Le partite arrivano dal coordinatore (all'avvio e a ogni nuova partita)
+            gameManager.setAutoAdvance(false);
+            Thread sync = new Thread(this::initialGameSync, "cluster-game-sync");
+            sync.setDaemon(true);
+            sync.start();
+        }
+
+        System.out.println("[OK] Nodo cluster " + nodeId + " di " + nodeCount + " in ascolto sulla porta " +
+                         serverSocket.getLocalPort() + (isCoordinator() ? " (coordinatore)" : ""));
+    }
+
+    private static InetSocketAddress parseAddress(String hostPort) {
+        int colon = hostPort.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Indirizzo di nodo non valido (host:porta): " + hostPort);
+        }
+        return new InetSocketAddress(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+    }
+
+    // ==================== PARTIZIONAMENTO ====================
+
+    /**
+     * Nodo proprietario di un utente (String.hashCode è uguale in ogni JVM).
+     */
+    public int ownerOf(String username) {
+        return Math.floorMod(username.hashCode(), nodeCount);
+    }
+
+    public boolean isLocal(String username) {
+        return ownerOf(username) == nodeId;
+    }
+
+    public boolean isCoordinator() {
+        return nodeId == COORDINATOR;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    // ==================== OPERAZIONI (nodo che ha ricevuto il client) ====================
+
+    /**
+     * Esegue una richiesta sul nodo proprietario di un utente e ne attende la risposta.
+     * @param owner utente che decide il nodo
+     * @param actingUser utente loggato sulla connessione del client (null = nessuno)
+     */
+    public JsonResponse forward(String owner, String actingUser, JsonRequest request) {
+        int node = ownerOf(owner);
+        try {
+            ClusterMessage reply = call(node, new ClusterMessage(ClusterMessage.FORWARD)
+                .setUser(actingUser)
+                .setRequest(request));
+            return reply.getResponse();
+        } catch (IOException e) {
+            return unreachable(node, e);
+        }
+    }
+
+    /**
+     * Come forward, senza attendere la risposta (es. logout alla chiusura della
+     * connessione, che può avvenire sul thread di I/O: anche l'invio è sul pool).
+     */
+    public void forwardAsync(String owner, String actingUser, JsonRequest request) {
+        int node = ownerOf(owner);
+        try {
+            workers.execute(() -> peers[node]
+                .send(new ClusterMessage(ClusterMessage.FORWARD).setUser(actingUser).setRequest(request))
+                .whenComplete((reply, error) -> {
+                    if (error != null) {
+                        AsyncLogger.warn("[WARNING] {} non inoltrato al nodo {}", request.getOperation(), node);
+                    }
+                }));
+        } catch (RejectedExecutionException e) {
+            // Nodo in chiusura
+        }
+    }
+
+    /**
+     * Classifica globale: i primi k di ogni nodo, uniti e ordinati.
+     * I nodi che non rispondono vengono esclusi (classifica parziale).
+     * @param k quanti giocatori (null = tutti)
+     */
+    public List<ClusterMessage.ScoreEntry> getTopK(Integer k) {
+        List<CompletableFuture<ClusterMessage>> replies =
+            sendToPeers(() -> new ClusterMessage(ClusterMessage.TOP_K).setCount(k));
+
+        List<ClusterMessage.ScoreEntry> merged = localTopK(k);
+        for (CompletableFuture<ClusterMessage> reply : replies) {
+            ClusterMessage message = awaitPartial(reply);
+            if (message != null && message.getEntries() != null) {
+                merged.addAll(message.getEntries());
+            }
+        }
+
+        // Ogni parziale è già ordinato: il sort li fonde come sequenze ordinate
+        merged.sort(Comparator.comparingInt((ClusterMessage.ScoreEntry e) -> e.score).reversed());
+        if (k != null && merged.size() > k) {
+            merged = new ArrayList<>(merged.subList(0, Math.max(0, k)));
+        }
+        for (int i = 0; i < merged.size(); i++) {
+            merged.get(i).rank = i + 1;
+        }
+        return merged;
+    }
+
+    /**
+     * Posizione globale di un giocatore: posizione sul suo nodo più i
+     * giocatori con punteggio maggiore sugli altri nodi.
+     * @return la riga di classifica, o null se il giocatore non esiste
+     * @throws IOException se il nodo del giocatore non è raggiungibile
+     */
+    public ClusterMessage.ScoreEntry getRank(String playerName) throws IOException {
+        int owner = ownerOf(playerName);
+        ClusterMessage position = owner == nodeId
+            ? handle(new ClusterMessage(ClusterMessage.RANK).setUser(playerName))
+            : call(owner, new ClusterMessage(ClusterMessage.RANK).setUser(playerName));
+
+        if (position.getCount() == null || position.getCount() < 0) {
+            return null;
+        }
+
+        int score = position.getScore();
+        int rank = position.getCount();
+        List<CompletableFuture<ClusterMessage>> replies = new ArrayList<>();
+        for (PeerClient peer : peers) {
+            if (peer != null && peer.getNodeId() != owner) {
+                replies.add(peer.send(new ClusterMessage(ClusterMessage.COUNT_ABOVE).setScore(score)));
+            }
+        }
+        if (owner != nodeId) {
+            rank += userManager.countUsersAbove(score);
+        }
+        for (CompletableFuture<ClusterMessage> reply : replies) {
+            ClusterMessage message = awaitPartial(reply);
+            if (message != null) {
+                rank += message.getCount();
+            }
+        }
+
+        ClusterMessage.ScoreEntry entry = new ClusterMessage.ScoreEntry(playerName, score);
+        entry.rank = rank;
+        return entry;
+    }
+
+    /**
+     * Statistiche della partita corrente sommate su tutti i nodi.
+     */
+    public GameManager.GameStats getGameStats() {
+        List<CompletableFuture<ClusterMessage>> replies =
+            sendToPeers(() -> new ClusterMessage(ClusterMessage.GAME_STATS));
+
+        GameManager.GameStats local = gameManager.getCurrentGameStats();
+        if (local == null) {
+            return null;
+        }
+
+        int totalPlayers = local.totalPlayers;
+        int finishedPlayers = local.finishedPlayers;
+        int winners = local.winners;
+        for (CompletableFuture<ClusterMessage> reply : replies) {
+            ClusterMessage message = awaitPartial(reply);
+            GameManager.GameStats stats = message != null ? message.getStats() : null;
+            if (stats != null && stats.gameId == local.gameId) {
+                totalPlayers += stats.totalPlayers;
+                finishedPlayers += stats.finishedPlayers;
+                winners += stats.winners;
+            }
+        }
+
+        return new GameManager.GameStats(local.gameId, local.active, local.remainingTime,
+                                         totalPlayers, finishedPlayers, winners);
+    }
+
+    /**
+     * true se il cambio di username sposta l'utente su un altro nodo.
+     */
+    public boolean changesOwner(String oldName, String newName) {
+        return newName != null && !newName.equals(oldName) && ownerOf(newName) != ownerOf(oldName);
+    }
+
+    /**
+     * Cambio di credenziali con spostamento dell'utente (e delle sue
+     * statistiche) dal nodo del vecchio username a quello del nuovo.
+     * Se il nuovo nodo rifiuta l'utente (username già in uso o nodo non
+     * raggiungibile), l'utente torna sul nodo di partenza.
+     */
+    public JsonResponse moveUser(JsonRequest req) {
+        String oldName = req.getOldName();
+        String newName = req.getNewName();
+        int from = ownerOf(oldName);
+        int to = ownerOf(newName);
+
+        User user;
+        try {
+            user = detachUser(from, oldName, req.getOldPsw());
+        } catch (IOException e) {
+            return unreachable(from, e);
+        }
+        if (user == null) {
+            return JsonResponse.error("Aggiornamento fallito: verifica le credenziali");
+        }
+
+        String oldPassword = user.getPassword();
+        user.setUsername(newName);
+        if (req.getNewPsw() != null) {
+            user.setPassword(req.getNewPsw());
+        }
+
+        IOException failure = null;
+        try {
+            if (attachUser(to, user)) {
+                AsyncLogger.info("[OK] Utente {} spostato sul nodo {} come {}", oldName, to, newName);
+                return JsonResponse.success("Credenziali aggiornate con successo");
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        // Ripristina l'utente sul nodo di partenza
+        user.setUsername(oldName);
+        user.setPassword(oldPassword);
+        try {
+            if (!attachUser(from, user)) {
+                throw new IOException("username occupato");
+            }
+        } catch (IOException e) {
+            AsyncLogger.error("[ERR] Utente {} non ripristinato: {}", oldName, e.getMessage());
+        }
+
+        return failure != null ? unreachable(to, failure)
+                               : JsonResponse.error("Aggiornamento fallito: verifica le credenziali");
+    }
+
+    private User detachUser(int node, String username, String password) throws IOException {
+        if (node == nodeId) {
+            return userManager.detachUser(username, password);
+        }
+        return call(node, new ClusterMessage(ClusterMessage.DETACH_USER)
+            .setUser(username)
+            .setPassword(password)).getAccount();
+    }
+
+    private boolean attachUser(int node, User user) throws IOException {
+        if (node == nodeId) {
+            return userManager.attachUser(user);
+        }
+        Integer result = call(node, new ClusterMessage(ClusterMessage.ATTACH_USER).setAccount(user)).getCount();
+        return result != null && result == 1;
+    }
+
+    private JsonResponse unreachable(int node, IOException e) {
+        AsyncLogger.warn("[WARNING] Nodo {} non raggiungibile: {}", node, e.getMessage());
+        return JsonResponse.error("Nodo " + node + " del cluster non raggiungibile, riprova più tardi");
+    }
+
+    // ==================== INVIO ====================
+
+    /**
+     * Invia un messaggio a un altro nodo e ne attende la risposta (al più timeoutMs).
+     */
+    private ClusterMessage call(int node, ClusterMessage message) throws IOException {
+        return await(peers[node].send(message));
+    }
+
+    private ClusterMessage await(CompletableFuture<ClusterMessage> reply) throws IOException {
+        try {
+            return reply.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new IOException("nessuna risposta entro " + timeoutMs + " ms");
+            }
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("attesa interrotta");
+        }
+    }
+
+    /**
+     * Risposta di un nodo per un'operazione su tutti i nodi: se manca, il
+     * risultato sarà parziale.
+     * @return la risposta, o null se il nodo non ha risposto
+     */
+    private ClusterMessage awaitPartial(CompletableFuture<ClusterMessage> reply) {
+        try {
+            return await(reply);
+        } catch (IOException e) {
+            AsyncLogger.warn("[WARNING] Risultato parziale, un nodo non ha risposto: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Invia un messaggio (nuovo per ogni nodo) a tutti gli altri nodi, senza attendere.
+     */
+    private List<CompletableFuture<ClusterMessage>> sendToPeers(Supplier<ClusterMessage> message) {
+        List<CompletableFuture<ClusterMessage>> replies = new ArrayList<>(nodeCount);
+        for (PeerClient peer : peers) {
+            if (peer != null) {
+                replies.add(peer.send(message.get()));
+            }
+        }
+        return replies;
+    }
+
+    // ==================== PARTITE ====================
+
+    /**
+     * Coordinatore: invia ogni nuova partita agli altri nodi.
+     */
+    @Override
+    public void onGameStarted(Game game) {
+        ClusterMessage.GameSnapshot snapshot = new ClusterMessage.GameSnapshot(game);
+        for (PeerClient peer : peers) {
+            if (peer != null) {
+                peer.send(new ClusterMessage(ClusterMessage.GAME_SYNC).setGame(snapshot))
+                    .whenComplete((reply, error) -> {
+                        if (error != null) {
+                            // Il nodo la chiederà al coordinatore quando si avvia
+                            AsyncLogger.warn("[WARNING] Partita #{} non inviata al nodo {}",
+                                             snapshot.gameId, peer.getNodeId());
+                        }
+                    });
+            }
+        }
+    }
+
+    @Override
+    public void onGameEnded(Game game, GameManager.GameStats finalStats) {
+        // Ogni nodo chiude la partita con il proprio timer
+    }
+
+    /**
+     * Nodo non coordinatore: all'avvio chiede la partita corrente al coordinatore,
+     * riprovando finché non risponde.
+     */
+    private void initialGameSync() {
+        while (running && gameManager.getCurrentGame() == null) {
+            try {
+                ClusterMessage reply = call(COORDINATOR, new ClusterMessage(ClusterMessage.GAME_SYNC));
+                if (reply.getGame() != null) {
+                    applyGame(reply.getGame());
+                    return;
+                }
+            } catch (IOException e) {
+                // Coordinatore non ancora avviato
+            }
+
+            try {
+                Thread.sleep(GAME_SYNC_RETRY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void applyGame(ClusterMessage.GameSnapshot snapshot) {
+        Game current = gameManager.getCurrentGame();
+        if (current != null && current.getGameId() == snapshot.gameId && current.isActive()) {
+            return;  // Già ricevuta (invio del coordinatore e richiesta all'avvio)
+        }
+        gameManager.startGame(snapshot.toGame());
+    }
+
+    // ==================== RICEZIONE (nodo proprietario) ====================
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+
+                Thread reader = new Thread(() -> serve(socket),
+                    "cluster-in-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    AsyncLogger.error("[ERR] Errore nell'accettare un nodo: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Legge le richieste di un altro nodo e le esegue sul pool; le risposte
+     * vengono scritte nell'ordine in cui sono pronte.
+     * I login inoltrati su questa connessione valgono finché resta aperta: se
+     * il nodo che tiene i client cade, il suo logout non arriverà mai e gli
+     * utenti vengono disconnessi qui.
+     */
+    private void serve(Socket socket) {
+        Set<String> forwardedLogins = ConcurrentHashMap.newKeySet();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (running) {
+                ClusterMessage message = ClusterMessage.readFrom(in);
+                workers.execute(() -> {
+                    ClusterMessage reply = handle(message);
+                    trackLogin(message, reply, forwardedLogins, socket);
+                    try {
+                        synchronized (out) {
+                            reply.writeTo(out);
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        // Connessione chiusa: il mittente lo scopre da solo
+                    }
+                });
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            // Nodo disconnesso o questo nodo in chiusura
+        } finally {
+            inbound.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+            expireLogins(forwardedLogins, socket);
+        }
+    }
+
+    /**
+     * Aggiorna i login inoltrati su una connessione dopo un FORWARD riuscito.
+     */
+    private void trackLogin(ClusterMessage message, ClusterMessage reply, Set<String> forwardedLogins,
+                            Socket socket) {
+        if (!ClusterMessage.FORWARD.equals(message.getType()) || reply.getResponse() == null
+                || !reply.getResponse().isSuccess()) {
+            return;
+        }
+        JsonRequest request = message.getRequest();
+        if ("login".equals(request.getOperation())) {
+            forwardedLogins.add(request.getUsername());
+            if (socket.isClosed()) {
+                // Connessione caduta mentre il login era in corso: la risposta non arriverà
+                expireLogins(forwardedLogins, socket);
+            }
+        } else if ("logout".equals(request.getOperation()) && message.getUser() != null) {
+            forwardedLogins.remove(message.getUser());
+        }
+    }
+
+    /**
+     * Connessione con un nodo chiusa: logout degli utenti che vi avevano fatto login.
+     */
+    private void expireLogins(Set<String> forwardedLogins, Socket socket) {
+        if (forwardedLogins.isEmpty() || !running) {
+            return;
+        }
+        AsyncLogger.warn("[WARNING] Connessione da {} chiusa: logout di {} utenti",
+                         socket.getRemoteSocketAddress(), forwardedLogins.size());
+        for (String username : forwardedLogins) {
+            if (forwardedLogins.remove(username)) {
+                userManager.logout(username);
+            }
+        }
+    }
+
+    private ClusterMessage handle(ClusterMessage message) {
+        ClusterMessage reply = message.reply();
+
+        try {
+            switch (message.getType()) {
+                case ClusterMessage.FORWARD:
+                    // Handler senza cluster: l'operazione viene eseguita su questo nodo
+                    CommandHandler handler = new CommandHandler(userManager, gameManager);
+                    return reply.setResponse(handler.executeAs(message.getUser(), message.getRequest()));
+
+                case ClusterMessage.TOP_K:
+                    return reply.setEntries(localTopK(message.getCount()));
+
+                case ClusterMessage.RANK: {
+                    User user = userManager.getUser(message.getUser());
+                    int rank = user != null ? userManager.getUserRank(message.getUser()) : -1;
+                    return reply.setCount(rank).setScore(user != null ? user.getTotalScore() : 0);
+                }
+
+                case ClusterMessage.COUNT_ABOVE:
+                    return reply.setCount(userManager.countUsersAbove(message.getScore()));
+
+                case ClusterMessage.GAME_STATS:
+                    return reply.setStats(gameManager.getCurrentGameStats());
+
+                case ClusterMessage.GAME_SYNC: {
+                    if (message.getGame() != null) {
+                        applyGame(message.getGame());
+                        return reply;
+                    }
+                    Game current = gameManager.getCurrentGame();
+                    return reply.setGame(current != null && current.isActive()
+                                         ? new ClusterMessage.GameSnapshot(current) : null);
+                }
+
+                case ClusterMessage.DETACH_USER:
+                    return reply.setAccount(userManager.detachUser(message.getUser(), message.getPassword()));
+
+                case ClusterMessage.ATTACH_USER:
+                    return reply.setCount(userManager.attachUser(message.getAccount()) ? 1 : 0);
+
+                default:
+                    return reply.setResponse(JsonResponse.error("Messaggio di cluster sconosciuto: " +
+                                                                message.getType()));
+            }
+        } catch (Exception e) {
+            AsyncLogger.error("[ERR] Errore nel messaggio di cluster {}", message.getType(), e);
+            return reply.setResponse(JsonResponse.error("Errore sul nodo " + nodeId + ": " + e.getMessage()));
+        }
+    }
+
+    private List<ClusterMessage.ScoreEntry> localTopK(Integer k) {
+        List<User> users = k == null ? userManager.getLeaderboard() : userManager.getTopKUsers(Math.max(0, k));
+        List<ClusterMessage.ScoreEntry> entries = new ArrayList<>(users.size());
+        for (User user : users) {
+            entries.add(new ClusterMessage.ScoreEntry(user.getUsername(), user.getTotalScore()));
+        }
+        return entries;
+    }
+
+    /**
+     * Ferma il nodo: niente più richieste dagli altri nodi né inoltri.
+     */
+    public void shutdown() {
+        running = false;
+
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Ignora
+        }
+        for (Socket socket : inbound) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (PeerClient peer : peers) {
+            if (peer != null) peer.close();
+        }
+        System.out.println("[OK] Nodo cluster " + nodeId + " fermato");
+    }
+}
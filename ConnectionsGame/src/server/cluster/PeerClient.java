@@ -0,0 +1,175 @@
+package server.cluster;
+
+import server.log.AsyncLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connessione verso un altro nodo del cluster.
+ *
+ * Una sola connessione TCP per nodo, condivisa da tutti i thread: le
+ * richieste vengono scritte una dopo l'altra (lock sull'oggetto) e le
+ * risposte, lette da un thread dedicato, completano il future con lo
+ * stesso id. La connessione viene aperta al primo invio e riaperta dopo
+ * un errore, al più una volta ogni RETRY_DELAY_MS.
+ */
+public class PeerClient {
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private final int nodeId;
+    private final InetSocketAddress address;
+    private final long timeoutMs;
+
+    // Richieste in attesa di risposta, per id
+    private final ConcurrentHashMap<Long, CompletableFuture<ClusterMessage>> pending;
+    private final AtomicLong nextId;
+
+    // Connessione corrente (protetta dal lock dell'oggetto)
+    private Socket socket;
+    private DataOutputStream out;
+    private long retryAt;
+    private boolean closed;
+
+    public PeerClient(int nodeId, InetSocketAddress address, long timeoutMs) {
+        this.nodeId = nodeId;
+        this.address = address;
+        this.timeoutMs = timeoutMs;
+        this.pending = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong();
+    }
+
+    /**
+     * Invia un messaggio al nodo.
+     * @return future completato con la risposta, o con un'eccezione se il nodo
+     *         non è raggiungibile o non risponde entro il timeout
+     */
+    public CompletableFuture<ClusterMessage> send(ClusterMessage message) {
+        long id = nextId.incrementAndGet();
+        message.setId(id);
+
+        CompletableFuture<ClusterMessage> future = new CompletableFuture<>();
+        pending.put(id, future);
+        future.whenComplete((reply, error) -> pending.remove(id));
+
+        Socket connection = null;
+        try {
+            synchronized (this) {
+                ensureConnected();
+                connection = socket;
+                message.writeTo(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            if (connection != null) {
+                disconnect(connection, e);
+            }
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        return future.orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void ensureConnected() throws IOException {
+        if (closed) {
+            throw new IOException("Nodo " + nodeId + ": client chiuso");
+        }
+        if (socket != null) {
+            return;
+        }
+        if (System.currentTimeMillis() < retryAt) {
+            throw new IOException("Nodo " + nodeId + " non raggiungibile");
+        }
+
+        Socket newSocket = new Socket();
+        try {
+            newSocket.setTcpNoDelay(true);
+            newSocket.connect(address, CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            newSocket.close();
+            retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+            throw new IOException("Nodo " + nodeId + " non raggiungibile (" + address + ")", e);
+        }
+
+        socket = newSocket;
+        out = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+
+        Thread reader = new Thread(() -> readLoop(newSocket), "cluster-peer-" + nodeId);
+        reader.setDaemon(true);
+        reader.start();
+        AsyncLogger.info("[OK] Connesso al nodo {} ({})", nodeId, address);
+    }
+
+    /**
+     * Legge le risposte e completa le richieste corrispondenti.
+     */
+    private void readLoop(Socket connection) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(connection.getInputStream()))) {
+            while (true) {
+                ClusterMessage reply = ClusterMessage.readFrom(in);
+                CompletableFuture<ClusterMessage> future = pending.get(reply.getId());
+                if (future != null) {
+                    future.complete(reply);
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection, e);
+        }
+    }
+
+    /**
+     * Chiude la connessione (se è ancora quella corrente) e fa fallire le
+     * richieste in attesa: non riceveranno più risposta.
+     */
+    private void disconnect(Socket connection, IOException cause) {
+        synchronized (this) {
+            if (socket != connection) {
+                return;
+            }
+            socket = null;
+            out = null;
+            retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+        }
+
+        try {
+            connection.close();
+        } catch (IOException e) {
+            // Ignora
+        }
+
+        if (!closed) {
+            AsyncLogger.warn("[WARNING] Connessione con il nodo {} persa: {}", nodeId, cause.getMessage());
+        }
+        IOException error = new IOException("Nodo " + nodeId + " disconnesso", cause);
+        for (CompletableFuture<ClusterMessage> future : pending.values()) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    public void close() {
+        Socket connection;
+        synchronized (this) {
+            closed = true;
+            connection = socket;
+        }
+        if (connection != null) {
+            disconnect(connection, new IOException("chiusura"));
+        }
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+}
@@ -1,63 +1,138 @@
 package server.handler;
 
-import server.manager.GameManager;
-import server.manager.UserManager;
+import server.admission.AdmissionControl;
+import server.log.AsyncLogger;
+import server.transport.ConnectionContext;
+import server.transport.RequestPipeline;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Gestisce la comunicazione con un singolo client.
- * Viene eseguito in un thread del pool.
+ * Viene eseguito in un thread del pool: legge i byte dal socket, li passa
+ * alla RequestPipeline ed elabora i messaggi nello stesso thread.
  */
 public class ClientHandler implements Runnable {
+    // Connessioni accettate e non ancora chiuse (per la chiusura ordinata del server)
+    private static final Set<ClientHandler> ACTIVE = ConcurrentHashMap.newKeySet();
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
     private final Socket clientSocket;
-    private final UserManager userManager;
-    private final GameManager gameManager;
-    private final CommandHandler commandHandler;
+    private final ConnectionContext context;
+    private final AdmissionControl admission;
+    private final long admittedNanos;  // Ingresso nella coda del pool
+    private final int idleTimeoutMs;  // 0 = nessun timeout
 
-    private BufferedReader in;
-    private PrintWriter out;
+    private volatile boolean draining;  // Chiusura del server: nessuna nuova richiesta
 
-    public ClientHandler(Socket socket, UserManager userManager, GameManager gameManager) {
+    /**
+     * @param admittedNanos System.nanoTime() dell'ammissione della connessione
+     *                      (AdmissionControl.tryAdmit() già riuscito)
+     */
+    public ClientHandler(Socket socket, RequestPipeline pipeline, int idleTimeoutMs, long admittedNanos) {
         this.clientSocket = socket;
-        this.userManager = userManager;
-        this.gameManager = gameManager;
-        this.commandHandler = new CommandHandler(userManager, gameManager);
+        this.context = pipeline.open(socket.getInetAddress(),
+                socket.getInetAddress().getHostAddress() + ":" + socket.getPort());
+        this.admission = pipeline.getAdmission();
+        this.admittedNanos = admittedNanos;
+        this.idleTimeoutMs = idleTimeoutMs;
+        ACTIVE.add(this);
+    }
+
+    /**
+     * Chiusura ordinata: chiude il lato in lettura di tutte le connessioni.
+     * Ogni handler completa e invia la risposta in corso, poi termina
+     * normalmente (logout compreso) senza elaborare altri messaggi: quanto
+     * letto dopo l'inizio della chiusura può essere una riga troncata.
+     * @return numero di connessioni interessate
+     */
+    public static int stopReadingAll() {
+        int count = 0;
+        for (ClientHandler handler : ACTIVE) {
+            handler.draining = true;
+            try {
+                if (!handler.clientSocket.isClosed()) {
+                    handler.clientSocket.shutdownInput();
+                    count++;
+                }
+            } catch (IOException e) {
+                // Connessione già chiusa dal client
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Handler rifiutato dal pool e mai eseguito: lo toglie dalle connessioni
+     * attive e chiude il contesto. Il socket resta al chiamante.
+     */
+    void abandon() {
+        ACTIVE.remove(this);
+        context.close();
     }
 
     @Override
     public void run() {
-        String clientAddress = clientSocket.getInetAddress().getHostAddress()
-                + ":" + clientSocket.getPort();
+        String clientAddress = context.getClientAddress();
 
         try {
-            System.out.println("[OK] Nuova connessione da: " + clientAddress);
-
-            // Setup stream I/O
-            in = new BufferedReader(
-                    new InputStreamReader(clientSocket.getInputStream())
-            );
-            out = new PrintWriter(clientSocket.getOutputStream(), true);  // auto-flush
-
-            // Loop di comunicazione
-            String request;
-            while ((request = in.readLine()) != null) {
-                System.out.println("[IN  " + clientAddress + "] " + request);
-
-                // Processa il comando
-                String response = commandHandler.handleCommand(request);
+            // Rimasta in coda oltre la scadenza: il client riceve "server occupato"
+            if (!admission.start(admittedNanos)) {
+                clientSocket.getOutputStream().write(context.serverBusy());
+                AsyncLogger.info("[CLOSE] Connessione scaduta in coda: {}", clientAddress);
+                return;
+            }
 
-                // Invia la risposta
-                out.println(response);
-                System.out.println("[OUT " + clientAddress + "] " + response);
+            AsyncLogger.info("[OK] Nuova connessione da: {}", clientAddress);
+
+            // Chiude la connessione se il client resta in silenzio troppo a lungo
+            clientSocket.setSoTimeout(idleTimeoutMs);
+
+            InputStream in = clientSocket.getInputStream();
+            OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream());
+            byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+            List<byte[]> frames = new ArrayList<>();
+
+            // Loop di comunicazione: tutti i messaggi di una lettura, una sola flush
+            int read;
+            while ((read = in.read(readBuffer)) != -1 && !draining) {
+                frames.clear();
+                byte[] prefaceAck = context.decode(ByteBuffer.wrap(readBuffer, 0, read), frames);
+                if (prefaceAck != null) {
+                    out.write(prefaceAck);
+                }
+
+                for (byte[] frame : frames) {
+                    if (draining) {
+                        break;  // Quanto letto dopo l'inizio della chiusura non viene elaborato
+                    }
+
+                    // Richieste oltre il limite: rifiuto già pronto, senza parsing
+                    byte[] response = context.checkRateLimit(frame);
+                    if (response == null) {
+                        response = context.process(frame);
+                    }
+                    out.write(response);
+                }
+                out.flush();
             }
 
+        } catch (SocketTimeoutException e) {
+            AsyncLogger.info("[CLOSE] Connessione inattiva: {}", clientAddress);
+
         } catch (IOException e) {
-            System.err.println("[ERR] Errore con client " + clientAddress + ": " + e.getMessage());
+            AsyncLogger.warn("[ERR] Errore con client {}: {}", clientAddress, e.getMessage());
 
         } finally {
             cleanup(clientAddress);
@@ -68,24 +143,20 @@ public class ClientHandler implements Runnable {
      * Chiude le risorse e effettua logout se necessario
      */
     private void cleanup(String clientAddress) {
+        ACTIVE.remove(this);
+
         // Logout automatico se era loggato
-        String loggedUser = commandHandler.getLoggedUsername();
-        if (loggedUser != null) {
-            userManager.logout(loggedUser);
-            System.out.println("Auto-logout: " + loggedUser);
-        }
+        context.close();
 
-        // Chiudi stream
+        // Chiudi socket
         try {
-            if (in != null) in.close();
-            if (out != null) out.close();
-            if (clientSocket != null && !clientSocket.isClosed()) {
+            if (!clientSocket.isClosed()) {
                 clientSocket.close();
             }
         } catch (IOException e) {
-            System.err.println("Errore durante cleanup: " + e.getMessage());
+            AsyncLogger.warn("Errore durante cleanup: {}", e.getMessage());
         }
 
-        System.out.println("[CLOSE] Connessione chiusa: " + clientAddress);
+        AsyncLogger.info("[CLOSE] Connessione chiusa: {}", clientAddress);
     }
 }
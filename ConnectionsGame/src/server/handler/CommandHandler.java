@@ -1,12 +1,23 @@
 package server.handler;
 
 import com.google.gson.Gson;
+import server.cluster.ClusterMessage;
+import server.cluster.ClusterNode;
+import server.log.AsyncLogger;
 import server.manager.GameManager;
 import server.manager.UserManager;
 import server.model.*;
+import server.notification.UdpNotifier;
+import server.partition.PartitionExecutor;
+import server.protocol.JsonCodec;
 import server.protocol.JsonRequest;
 import server.protocol.JsonResponse;
+import server.protocol.ProtocolSession;
+import server.ratelimit.RateLimiter;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.*;
 
 /**
@@ -14,17 +25,56 @@ import java.util.*;
  * Coordina UserManager e GameManager per eseguire le operazioni.
  */
 public class CommandHandler {
+    
+    /**
+     * Iscrizione della connessione agli eventi push (fornita dal server NIO).
+     */
+    public interface PushSubscriber {
+        void subscribe();
+        void unsubscribe();
+    }
+    
     private final UserManager userManager;
     private final GameManager gameManager;
     private final Gson gson;
     
+    // Notifiche UDP (null se disattivate) e indirizzo del client a cui inviarle
+    private final UdpNotifier udpNotifier;
+    private final InetAddress clientAddress;
+    
+    // Limiti di frequenza condivisi (null = nessun limite)
+    private final RateLimiter rateLimiter;
+    
+    // Nodo del cluster (null = server singolo): inoltra le operazioni sugli
+    // utenti delle altre partizioni al nodo proprietario
+    private final ClusterNode cluster;
+    
+    // Partizioni per core (null = disattivate): le operazioni su un utente
+    // vengono eseguite dal thread della sua partizione
+    private final PartitionExecutor partitions;
+    
+    // Eventi push (null se il server non li supporta, es. server TCP)
+    private volatile PushSubscriber pushSubscriber;
+    
     // Traccia quale utente è loggato su ogni connessione
-    private String loggedUsername;
+    // (volatile: alla chiusura viene letto dal thread di I/O)
+    private volatile String loggedUsername;
     
     public CommandHandler(UserManager userManager, GameManager gameManager) {
+        this(userManager, gameManager, null, null, null, null);
+    }
+    
+    public CommandHandler(UserManager userManager, GameManager gameManager,
+                          UdpNotifier udpNotifier, InetAddress clientAddress,
+                          RateLimiter rateLimiter, ClusterNode cluster) {
         this.userManager = userManager;
         this.gameManager = gameManager;
         this.gson = new Gson();
+        this.udpNotifier = udpNotifier;
+        this.clientAddress = clientAddress;
+        this.rateLimiter = rateLimiter;
+        this.cluster = cluster;
+        this.partitions = gameManager.getPartitions();
         this.loggedUsername = null;
     }
     
@@ -35,53 +85,264 @@ public class CommandHandler {
         try {
             // Parse della richiesta
             JsonRequest request = gson.fromJson(jsonRequest, JsonRequest.class);
-            
-            if (request.getOperation() == null) {
-                return toJson(JsonResponse.error("Campo 'operation' mancante"));
-            }
-            
-            // Dispatch al metodo appropriato
-            JsonResponse response;
-            switch (request.getOperation()) {
-                case "register":
-                    response = handleRegister(request);
-                    break;
-                case "updateCredentials":
-                    response = handleUpdateCredentials(request);
-                    break;
-                case "login":
-                    response = handleLogin(request);
-                    break;
-                case "logout":
-                    response = handleLogout(request);
-                    break;
-                case "submitProposal":
-                    response = handleSubmitProposal(request);
-                    break;
-                case "requestGameInfo":
-                    response = handleRequestGameInfo(request);
-                    break;
-                case "requestGameStats":
-                    response = handleRequestGameStats(request);
-                    break;
-                case "requestLeaderboard":
-                    response = handleRequestLeaderboard(request);
-                    break;
-                case "requestPlayerStats":
-                    response = handleRequestPlayerStats(request);
-                    break;
-                default:
-                    response = JsonResponse.error("Operazione sconosciuta: " + request.getOperation());
-            }
-            
-            return toJson(response);
+            return toJson(execute(request));
             
         } catch (Exception e) {
-            e.printStackTrace();
+            AsyncLogger.error("[ERR] Errore nel processare la richiesta di {}", clientAddress, e);
             return toJson(JsonResponse.error("Errore nel processare la richiesta: " + e.getMessage()));
         }
     }
     
+    /**
+     * Processa un messaggio ricevuto con il protocollo della connessione
+     * (righe JSON o binario) e restituisce la risposta già pronta da inviare.
+     */
+    public byte[] handleFrame(byte[] payload, ProtocolSession session) {
+        JsonResponse response;
+        
+        try {
+            response = execute(session.decode(payload));
+        } catch (Exception e) {
+            AsyncLogger.error("[ERR] Errore nel processare la richiesta di {}", clientAddress, e);
+            response = JsonResponse.error("Errore nel processare la richiesta: " + e.getMessage());
+        }
+        
+        return session.encode(response);
+    }
+    
+    /**
+     * Controlla il rate limit di un messaggio prima di decodificarlo:
+     * il limite è per utente se la connessione è loggata, altrimenti per IP.
+     * @return la risposta di rifiuto già codificata (condivisa, non modificarla),
+     *         o null se la richiesta può essere eseguita
+     */
+    public byte[] checkRateLimit(byte[] payload, ProtocolSession session) {
+        if (rateLimiter == null || tryAcquire(session.peekOperation(payload))) {
+            return null;
+        }
+        return rateLimiter.rejection(session);
+    }
+    
+    /**
+     * Come checkRateLimit, per una richiesta a righe JSON.
+     * @return la riga di rifiuto, o null se la richiesta può essere eseguita
+     */
+    public String checkRateLimit(String jsonRequest) {
+        if (rateLimiter == null || tryAcquire(JsonCodec.INSTANCE.peekOperation(jsonRequest))) {
+            return null;
+        }
+        return rateLimiter.rejectionLine();
+    }
+    
+    /**
+     * Risposta di rifiuto per il protocollo della sessione (già codificata).
+     */
+    public byte[] rateLimitedResponse(ProtocolSession session) {
+        return rateLimiter.rejection(session);
+    }
+    
+    private boolean tryAcquire(String operation) {
+        String username = loggedUsername;
+        if (username != null) {
+            return rateLimiter.tryAcquire(username, operation);
+        }
+        if (clientAddress != null) {
+            return rateLimiter.tryAcquire(clientAddress, operation);
+        }
+        return true;
+    }
+    
+    /**
+     * Esegue una richiesta già decodificata.
+     * La risposta riporta il requestId della richiesta, se presente,
+     * così i client con più richieste in volo possono abbinarle.
+     */
+    public JsonResponse execute(JsonRequest request) {
+        JsonResponse response = dispatch(request);
+        response.setRequestId(request.getRequestId());
+        return response;
+    }
+    
+    /**
+     * Esegue una richiesta inoltrata da un altro nodo del cluster per conto
+     * di un suo client (handler senza cluster: l'operazione resta su questo nodo).
+     * @param actingUser utente loggato sulla connessione del client (null = nessuno)
+     */
+    public JsonResponse executeAs(String actingUser, JsonRequest request) {
+        loggedUsername = actingUser;
+        return execute(request);
+    }
+    
+    private JsonResponse dispatch(JsonRequest request) {
+        if (request.getOperation() == null) {
+            return JsonResponse.error("Campo 'operation' mancante");
+        }
+        
+        if (cluster != null) {
+            JsonResponse routed = routeToOwner(request);
+            if (routed != null) {
+                return routed;
+            }
+        }
+        
+        if (partitions != null) {
+            String owner = partitionOwner(request);
+            if (owner != null) {
+                return partitions.call(owner, () -> dispatchLocal(request));
+            }
+        }
+        
+        return dispatchLocal(request);
+    }
+    
+    /**
+     * Modalità a partizioni: utente la cui partizione esegue la richiesta.
+     * @return null per le operazioni che restano nel thread corrente
+     *         (viste globali, cambio credenziali che può coinvolgere due partizioni)
+     */
+    private String partitionOwner(JsonRequest request) {
+        switch (request.getOperation()) {
+            case "register":
+                return request.getName();
+            case "login":
+                return loggedUsername == null ? request.getUsername() : null;
+            case "logout":
+            case "submitProposal":
+            case "requestPlayerStats":
+                return loggedUsername;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Verifica se una richiesta si risolve subito nel thread chiamante, senza
+     * attese: niente inoltro a un altro nodo né passaggio al thread di una
+     * partizione. Il server NIO le esegue direttamente nel thread del reactor.
+     * @param operation operazione del messaggio (vedi ProtocolSession.peekOperation)
+     * @param inlineOperations operazioni configurate come economiche
+     */
+    public boolean runsInline(String operation, Set<String> inlineOperations) {
+        if (operation == null) {
+            return false;
+        }
+    
+        if (loggedUsername == null) {
+            // Operazioni riservate agli utenti loggati: il rifiuto è immediato
+            return requiresLogin(operation);
+        }
+    
+        if (!inlineOperations.contains(operation)) {
+            return false;
+        }
+    
+        switch (operation) {
+            case "ping":
+                return true;
+            case "requestPlayerStats":
+                return partitions == null && (cluster == null || cluster.isLocal(loggedUsername));
+            default:
+                // Statistiche e classifica passano dagli altri nodi o dalle partizioni
+                return partitions == null && cluster == null;
+        }
+    }
+    
+    private static boolean requiresLogin(String operation) {
+        switch (operation) {
+            case "logout":
+            case "submitProposal":
+            case "requestGameInfo":
+            case "requestGameStats":
+            case "requestLeaderboard":
+            case "requestPlayerStats":
+            case "subscribe":
+            case "unsubscribe":
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    private JsonResponse dispatchLocal(JsonRequest request) {
+        // Dispatch al metodo appropriato
+        switch (request.getOperation()) {
+            case "register":
+                return handleRegister(request);
+            case "updateCredentials":
+                return handleUpdateCredentials(request);
+            case "login":
+                return handleLogin(request);
+            case "logout":
+                return handleLogout(request);
+            case "submitProposal":
+                return handleSubmitProposal(request);
+            case "requestGameInfo":
+                return handleRequestGameInfo(request);
+            case "requestGameStats":
+                return handleRequestGameStats(request);
+            case "requestLeaderboard":
+                return handleRequestLeaderboard(request);
+            case "requestPlayerStats":
+                return handleRequestPlayerStats(request);
+            case "ping":
+                return JsonResponse.success("pong");
+            case "subscribe":
+                return handleSubscribe(true);
+            case "unsubscribe":
+                return handleSubscribe(false);
+            default:
+                return JsonResponse.error("Operazione sconosciuta: " + request.getOperation());
+        }
+    }
+    
+    /**
+     * Modalità cluster: le operazioni su un utente di un'altra partizione
+     * vengono eseguite dal nodo proprietario; qui restano solo gli effetti
+     * sulla connessione (utente loggato, endpoint UDP, eventi push).
+     * @return la risposta del nodo proprietario, o null se la richiesta va eseguita qui
+     */
+    private JsonResponse routeToOwner(JsonRequest request) {
+        String owner;  // Utente che decide il nodo
+        
+        switch (request.getOperation()) {
+            case "register":
+                owner = request.getName();
+                break;
+            case "updateCredentials":
+                if (request.getOldName() != null && request.getOldPsw() != null
+                        && cluster.changesOwner(request.getOldName(), request.getNewName())) {
+                    return cluster.moveUser(request);
+                }
+                owner = request.getOldName();
+                break;
+            case "login":
+                owner = loggedUsername == null ? request.getUsername() : null;
+                break;
+            case "logout":
+            case "submitProposal":
+            case "requestGameInfo":
+            case "requestPlayerStats":
+                owner = loggedUsername;
+                break;
+            default:
+                return null;  // Locali o già distribuite (classifica, statistiche partita)
+        }
+        
+        if (owner == null || cluster.isLocal(owner)) {
+            return null;
+        }
+        
+        JsonResponse response = cluster.forward(owner, loggedUsername, request);
+        if (response.isSuccess()) {
+            if ("login".equals(request.getOperation())) {
+                startSession(request.getUsername(), request.getUdpPort());
+            } else if ("logout".equals(request.getOperation())) {
+                endSession();
+            }
+        }
+        return response;
+    }
+    
     /**
      * REGISTER: Registra un nuovo utente
      */
@@ -136,7 +397,7 @@ public class CommandHandler {
         boolean success = userManager.login(req.getUsername(), req.getPsw());
         
         if (success) {
-            loggedUsername = req.getUsername();
+            startSession(req.getUsername(), req.getUdpPort());
             
             // Fa entrare automaticamente nella partita corrente
             PlayerGameState state = gameManager.joinGame(loggedUsername);
@@ -170,11 +431,35 @@ public class CommandHandler {
         }
         
         userManager.logout(loggedUsername);
-        loggedUsername = null;
+        endSession();
         
         return JsonResponse.success("Logout effettuato");
     }
     
+    /**
+     * Login riuscito: la connessione appartiene all'utente e, se ha indicato
+     * una porta, riceve le notifiche UDP.
+     */
+    private void startSession(String username, Integer udpPort) {
+        loggedUsername = username;
+        
+        if (udpNotifier != null && clientAddress != null
+                && udpPort != null && udpPort > 0 && udpPort <= 65535) {
+            udpNotifier.registerEndpoint(username,
+                new InetSocketAddress(clientAddress, udpPort));
+        }
+    }
+    
+    private void endSession() {
+        if (udpNotifier != null) {
+            udpNotifier.unregisterEndpoint(loggedUsername);
+        }
+        if (pushSubscriber != null) {
+            pushSubscriber.unsubscribe();
+        }
+        loggedUsername = null;
+    }
+    
     /**
      * SUBMIT_PROPOSAL: Invia una proposta
      */
@@ -223,7 +508,8 @@ public class CommandHandler {
             return JsonResponse.error("Devi effettuare il login");
         }
         
-        GameManager.GameStats stats = gameManager.getCurrentGameStats();
+        GameManager.GameStats stats = cluster != null ? cluster.getGameStats()
+                                                      : gameManager.getCurrentGameStats();
         
         if (stats == null) {
             return JsonResponse.error("Nessuna partita in corso");
@@ -248,6 +534,10 @@ public class CommandHandler {
             return JsonResponse.error("Devi effettuare il login");
         }
         
+        if (cluster != null) {
+            return handleClusterLeaderboard(req);
+        }
+        
         List<Map<String, Object>> leaderboardData = new ArrayList<>();
         
         if (req.getPlayerName() != null) {
@@ -295,6 +585,62 @@ public class CommandHandler {
         return JsonResponse.success("Classifica", leaderboardData);
     }
     
+    /**
+     * REQUEST_LEADERBOARD in modalità cluster: classifica unita da tutti i nodi
+     */
+    private JsonResponse handleClusterLeaderboard(JsonRequest req) {
+        if (req.getPlayerName() != null) {
+            ClusterMessage.ScoreEntry entry;
+            try {
+                entry = cluster.getRank(req.getPlayerName());
+            } catch (IOException e) {
+                return JsonResponse.error("Classifica non disponibile: " + e.getMessage());
+            }
+            if (entry == null) {
+                return JsonResponse.error("Giocatore non trovato");
+            }
+            
+            Map<String, Object> playerData = new HashMap<>();
+            playerData.put("rank", entry.rank);
+            playerData.put("username", entry.username);
+            playerData.put("score", entry.score);
+            
+            return JsonResponse.success("Posizione in classifica", playerData);
+        }
+        
+        List<Map<String, Object>> leaderboardData = new ArrayList<>();
+        for (ClusterMessage.ScoreEntry entry : cluster.getTopK(req.getTopPlayers())) {
+            Map<String, Object> userData = new HashMap<>();
+            userData.put("rank", entry.rank);
+            userData.put("username", entry.username);
+            userData.put("score", entry.score);
+            leaderboardData.add(userData);
+        }
+        
+        return JsonResponse.success("Classifica", leaderboardData);
+    }
+    
+    /**
+     * SUBSCRIBE / UNSUBSCRIBE: attiva o disattiva gli eventi push di partita
+     */
+    private JsonResponse handleSubscribe(boolean subscribe) {
+        if (loggedUsername == null) {
+            return JsonResponse.error("Devi effettuare il login");
+        }
+        
+        if (pushSubscriber == null) {
+            return JsonResponse.error("Eventi push non disponibili su questo server");
+        }
+        
+        if (subscribe) {
+            pushSubscriber.subscribe();
+            return JsonResponse.success("Iscritto agli eventi di partita");
+        } else {
+            pushSubscriber.unsubscribe();
+            return JsonResponse.success("Iscrizione agli eventi annullata");
+        }
+    }
+    
     /**
      * REQUEST_PLAYER_STATS: Richiede statistiche personali
      */
@@ -328,6 +674,32 @@ public class CommandHandler {
         return gson.toJson(obj);
     }
     
+    /**
+     * Chiamato alla chiusura della connessione: effettua il logout automatico.
+     * @return l'username disconnesso, o null se non era loggato
+     */
+    public String disconnect() {
+        String username = loggedUsername;
+        if (username != null) {
+            if (cluster != null && !cluster.isLocal(username)) {
+                JsonRequest logout = new JsonRequest();
+                logout.setOperation("logout");
+                cluster.forwardAsync(username, username, logout);
+            } else {
+                userManager.logout(username);
+            }
+            if (udpNotifier != null) {
+                udpNotifier.unregisterEndpoint(username);
+            }
+            loggedUsername = null;
+        }
+        return username;
+    }
+    
+    public void setPushSubscriber(PushSubscriber pushSubscriber) {
+        this.pushSubscriber = pushSubscriber;
+    }
+    
     /**
      * Restituisce l'username loggato (per debug)
      */
@@ -0,0 +1,211 @@
+package server.handler;
+
+import server.admission.AdmissionControl;
+import server.manager.ConfigManager;
+import server.protocol.ProtocolSession;
+import server.ratelimit.RateLimiter;
+import server.transport.RequestPipeline;
+import server.transport.Transport;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trasporto TCP bloccante (non NIO): un thread per client, preso da un
+ * Thread Pool oppure, con tcp.thread.mode=virtual, un virtual thread per
+ * connessione.
+ */
+public class TcpTransport implements Transport {
+    private volatile boolean running = true;
+    private ServerSocket serverSocket;
+    private ExecutorService threadPool;
+    private Thread acceptorThread;
+    private RequestPipeline pipeline;
+    private RateLimiter rateLimiter;
+    private AdmissionControl admission;
+    private int idleTimeoutMs;
+
+    @Override
+    public String getName() {
+        return "TCP";
+    }
+
+    @Override
+    public void start(RequestPipeline pipeline) throws IOException {
+        ConfigManager config = ConfigManager.getInstance();
+        int tcpPort = config.getTcpPort();
+        int threadPoolSize = config.getThreadPoolSize();
+        String threadMode = config.getProperty("tcp.thread.mode", "pool");
+        this.idleTimeoutMs = config.getIdleTimeoutSeconds() * 1000;
+        this.pipeline = pipeline;
+        this.rateLimiter = pipeline.getRateLimiter();
+        this.admission = pipeline.getAdmission();
+
+        // Executor dei client
+        System.out.println("4. Creazione Thread Pool...");
+        System.out.println("   Modalità thread: " + threadMode);
+        if (!"virtual".equals(threadMode)) {
+            System.out.println("   Thread Pool: " + threadPoolSize + " threads");
+        }
+        threadPool = createExecutor(threadMode, threadPoolSize, admission);
+        System.out.println();
+
+        // Server socket
+        System.out.println("5. Avvio server TCP sulla porta " + tcpPort + "...");
+        serverSocket = new ServerSocket(tcpPort);
+        System.out.println("   [OK] Server TCP in ascolto\n");
+
+        acceptorThread = new Thread(this::acceptLoop, "tcp-acceptor");
+        acceptorThread.start();
+    }
+
+    /**
+     * Loop di accettazione connessioni.
+     */
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+
+                // Oltre il limite di connessioni per IP: chiude senza occupare un thread
+                if (!rateLimiter.tryAcceptConnection(clientSocket.getInetAddress())) {
+                    clientSocket.close();
+                    continue;
+                }
+
+                // Tutti i thread occupati e coda piena: "server occupato" senza accodare
+                if (!admission.tryAdmit()) {
+                    rejectBusy(clientSocket);
+                    continue;
+                }
+
+                // Assegna la gestione del client al thread pool
+                ClientHandler handler = new ClientHandler(clientSocket, pipeline, idleTimeoutMs, System.nanoTime());
+                try {
+                    threadPool.execute(handler);
+                } catch (RejectedExecutionException e) {
+                    handler.abandon();
+                    admission.cancel();
+                    rejectBusy(clientSocket);
+                }
+
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("[ERR] Errore nell'accettare connessione: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Risponde "server occupato" (righe JSON: il protocollo non è ancora negoziato) e chiude.
+     */
+    private void rejectBusy(Socket clientSocket) {
+        try {
+            clientSocket.getOutputStream().write(admission.busy(ProtocolSession.JSON_LINES));
+        } catch (IOException e) {
+            // Client già disconnesso
+        }
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            // Ignora
+        }
+    }
+
+    /**
+     * Chiusura ordinata, a fasi:
+     * 1. niente nuove connessioni;
+     * 2. le connessioni smettono di leggere (shutdownInput);
+     * 3. ogni handler completa e invia la risposta in corso, entro la scadenza.
+     * Gli handler ancora attivi alla scadenza vengono interrotti.
+     */
+    @Override
+    public boolean drain(long deadlineNanos) {
+        long start = System.nanoTime();
+
+        // 1. Niente nuove connessioni
+        running = false;
+        if (serverSocket != null && !serverSocket.isClosed()) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+
+        // 2-3. Niente nuove richieste, completamento di quelle in corso
+        int connections = ClientHandler.stopReadingAll();
+        boolean drained = true;
+        if (threadPool != null) {
+            threadPool.shutdown();
+            try {
+                drained = threadPool.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()),
+                                                      TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drained = false;
+            }
+            if (!drained) {
+                threadPool.shutdownNow();
+            }
+        }
+
+        if (!drained) {
+            System.out.println("[WARNING] Scadenza raggiunta: connessioni ancora attive interrotte");
+        }
+        System.out.println("[OK] Connessioni TCP svuotate (" + connections + " connessioni, richieste: " +
+                         (System.nanoTime() - start) / 1_000_000L + " ms)");
+        return drained;
+    }
+
+    /**
+     * Le connessioni sono già chiuse dagli handler durante drain().
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+    }
+
+    @Override
+    public String getStats() {
+        return admission != null ? admission.getStats() : null;
+    }
+
+    /**
+     * Crea l'executor su cui girano i ClientHandler.
+     * In modalità "virtual" ogni connessione ha il proprio virtual thread, quindi
+     * il numero di client non è più limitato da thread.pool.size.
+     * I virtual thread richiedono Java 21+: vengono cercati via reflection per
+     * poter compilare ed eseguire il server anche con JDK precedenti.
+     */
+    private static ExecutorService createExecutor(String threadMode, int threadPoolSize,
+                                                  AdmissionControl admission) {
+        if ("virtual".equals(threadMode)) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                ExecutorService executor = (ExecutorService) factory.invoke(null);
+                System.out.println("   [OK] Virtual thread per connessione");
+                System.out.println("   (usa -Djdk.tracePinnedThreads=short per segnalare i pinning)");
+                return executor;
+
+            } catch (ReflectiveOperationException e) {
+                System.err.println("   [WARNING] Virtual thread non disponibili (serve Java 21+), " +
+                                 "uso il Thread Pool");
+            }
+        }
+
+        ExecutorService executor = admission.newWorkerPool("tcp-client", threadPoolSize);
+        System.out.println("   [OK] Thread Pool creato");
+        return executor;
+    }
+}
@@ -0,0 +1,487 @@
+package server.log;
+
+import server.manager.ConfigManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logger asincrono del server.
+ *
+ * I thread che loggano (reactor, worker) non fanno mai I/O: copiano livello,
+ * pattern e argomenti in uno slot di un ring buffer preallocato e proseguono.
+ * Un solo thread "async-logger" formatta i messaggi (i "{}" del pattern sono
+ * sostituiti solo qui, quindi i messaggi scartati dal livello non costano
+ * nulla) e li scrive a lotti sul file di log, che ruota oltre la dimensione
+ * massima, ed eventualmente sulla console.
+ * Se il buffer è pieno il messaggio viene scartato e contato: il logging non
+ * deve mai rallentare chi serve le richieste.
+ *
+ * Prima di start() (o dopo shutdown()) i messaggi vanno direttamente su console.
+ */
+public final class AsyncLogger {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    /**
+     * Un messaggio nel ring buffer. sequence viene scritto per ultimo
+     * (volatile) e pubblica gli altri campi al thread del logger.
+     */
+    private static final class Slot {
+        volatile long sequence = -1;
+        long timestamp;
+        Level level;
+        String thread;
+        String pattern;
+        Object arg0;
+        Object arg1;
+        Object arg2;
+        Throwable error;
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static volatile Level level = Level.INFO;
+    private static volatile int requestSampleRate = 1;
+    private static volatile AsyncLogger instance;
+
+    private static final LongAdder DROPPED = new LongAdder();
+
+    // Ring buffer: più produttori, un consumatore
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail;     // Prossima sequenza da assegnare
+    private volatile long head;        // Prossima sequenza da consumare
+    private volatile boolean sleeping;
+
+    // Destinazioni (solo thread del logger)
+    private final File file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final boolean console;
+    private OutputStream out;
+    private long fileBytes;
+
+    // Formattazione (solo thread del logger)
+    private final StringBuilder batch;
+    private long cachedSecond = -1;
+    private String cachedTime;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    private AsyncLogger(int capacity, File file, long maxFileBytes, int maxFiles, boolean console) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.tail = new AtomicLong(0);
+        this.head = 0;
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.console = console;
+        this.batch = new StringBuilder(16384);
+    }
+
+    /**
+     * Avvia il logger con le impostazioni di server.properties.
+     */
+    public static void start(ConfigManager config) {
+        level = parseLevel(config.getLogLevel());
+        requestSampleRate = Math.max(1, config.getLogRequestSampleRate());
+
+        String path = config.getLogFilePath();
+        AsyncLogger logger = new AsyncLogger(config.getLogBufferSize(),
+            path == null || path.isEmpty() ? null : new File(path),
+            config.getLogFileMaxMb() * 1024L * 1024L, config.getLogFileMaxCount(),
+            config.isLogConsoleEnabled());
+
+        try {
+            logger.openFile();
+        } catch (IOException e) {
+            System.err.println("[ERR] File di log non disponibile: " + e.getMessage());
+        }
+
+        logger.running = true;
+        logger.thread = new Thread(logger::run, "async-logger");
+        logger.thread.setDaemon(true);
+        logger.thread.start();
+        instance = logger;
+
+        System.out.println("[OK] Logger asincrono attivo (livello " + level + ", richieste 1 su " +
+                           requestSampleRate + (logger.file != null ? ", file " + logger.file.getPath() : "") + ")");
+    }
+
+    /**
+     * Svuota il buffer e chiude il file. I messaggi successivi vanno su console.
+     */
+    public static void shutdown() {
+        AsyncLogger logger = instance;
+        if (logger == null) {
+            return;
+        }
+        instance = null;
+        logger.running = false;
+        LockSupport.unpark(logger.thread);
+
+        try {
+            logger.thread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ==================== CONFIGURAZIONE A RUNTIME ====================
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Logga una richiesta/risposta ogni sampleRate (1 = tutte).
+     */
+    public static void setRequestSampleRate(int sampleRate) {
+        requestSampleRate = Math.max(1, sampleRate);
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && level != Level.OFF;
+    }
+
+    /**
+     * true se la richiesta corrente va loggata (livello INFO e campionamento).
+     * Da controllare prima di costruire gli argomenti delle righe per richiesta.
+     */
+    public static boolean sampleRequest() {
+        if (!isEnabled(Level.INFO)) {
+            return false;
+        }
+        int rate = requestSampleRate;
+        return rate == 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+
+    /**
+     * Messaggi scartati perché il buffer era pieno.
+     */
+    public static long getDroppedCount() {
+        return DROPPED.sum();
+    }
+
+    // ==================== API DI LOG ====================
+
+    public static void debug(String pattern) {
+        log(Level.DEBUG, pattern, null, null, null, null);
+    }
+
+    public static void debug(String pattern, Object arg0) {
+        log(Level.DEBUG, pattern, arg0, null, null, null);
+    }
+
+    public static void debug(String pattern, Object arg0, Object arg1) {
+        log(Level.DEBUG, pattern, arg0, arg1, null, null);
+    }
+
+    public static void debug(String pattern, Object arg0, Object arg1, Object arg2) {
+        log(Level.DEBUG, pattern, arg0, arg1, arg2, null);
+    }
+
+    public static void info(String pattern) {
+        log(Level.INFO, pattern, null, null, null, null);
+    }
+
+    public static void info(String pattern, Object arg0) {
+        log(Level.INFO, pattern, arg0, null, null, null);
+    }
+
+    public static void info(String pattern, Object arg0, Object arg1) {
+        log(Level.INFO, pattern, arg0, arg1, null, null);
+    }
+
+    public static void info(String pattern, Object arg0, Object arg1, Object arg2) {
+        log(Level.INFO, pattern, arg0, arg1, arg2, null);
+    }
+
+    public static void warn(String pattern, Object arg0) {
+        log(Level.WARN, pattern, arg0, null, null, null);
+    }
+
+    public static void warn(String pattern, Object arg0, Object arg1) {
+        log(Level.WARN, pattern, arg0, arg1, null, null);
+    }
+
+    public static void error(String pattern, Object arg0) {
+        log(Level.ERROR, pattern, arg0, null, null, null);
+    }
+
+    public static void error(String pattern, Object arg0, Object arg1) {
+        log(Level.ERROR, pattern, arg0, arg1, null, null);
+    }
+
+    /**
+     * Errore con stack trace (formattato dal thread del logger).
+     */
+    public static void error(String pattern, Object arg0, Throwable error) {
+        log(Level.ERROR, pattern, arg0, null, null, error);
+    }
+
+    private static void log(Level messageLevel, String pattern, Object arg0, Object arg1, Object arg2,
+                            Throwable error) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+
+        AsyncLogger logger = instance;
+        if (logger == null) {
+            // Logger non avviato: scrittura diretta
+            StringBuilder line = new StringBuilder();
+            appendMessage(line, pattern, arg0, arg1, arg2);
+            System.out.println(line);
+            if (error != null) {
+                error.printStackTrace();
+            }
+            return;
+        }
+
+        logger.publish(messageLevel, pattern, arg0, arg1, arg2, error);
+    }
+
+    // ==================== RING BUFFER ====================
+
+    private void publish(Level messageLevel, String pattern, Object arg0, Object arg1, Object arg2,
+                         Throwable error) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                DROPPED.increment();  // Buffer pieno
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.timestamp = System.currentTimeMillis();
+        slot.level = messageLevel;
+        slot.thread = Thread.currentThread().getName();
+        slot.pattern = pattern;
+        slot.arg0 = arg0;
+        slot.arg1 = arg1;
+        slot.arg2 = arg2;
+        slot.error = error;
+        slot.sequence = sequence;  // Pubblica lo slot
+
+        if (sleeping) {
+            sleeping = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            int drained = drain();
+
+            if (drained > 0) {
+                continue;
+            }
+            if (!running) {
+                break;
+            }
+
+            // Niente da scrivere: si addormenta finché un produttore non lo sveglia
+            sleeping = true;
+            if (slots[(int) head & mask].sequence != head && running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+
+        drain();
+        closeFile();
+    }
+
+    /**
+     * Formatta e scrive i messaggi pubblicati, a lotti.
+     * @return numero di messaggi scritti
+     */
+    private int drain() {
+        int total = 0;
+        long next = head;
+
+        while (true) {
+            Slot slot = slots[(int) next & mask];
+            if (slot.sequence != next) {
+                break;
+            }
+
+            format(slot);
+            slot.pattern = null;
+            slot.arg0 = null;
+            slot.arg1 = null;
+            slot.arg2 = null;
+            slot.error = null;
+            next++;
+            head = next;  // Libera lo slot per i produttori
+            total++;
+
+            if (total % BATCH_SIZE == 0) {
+                write();
+            }
+        }
+
+        if (batch.length() > 0) {
+            write();
+        }
+        return total;
+    }
+
+    // ==================== FORMATTAZIONE E SCRITTURA ====================
+
+    private void format(Slot slot) {
+        long second = slot.timestamp / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = LocalDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneId.systemDefault())
+                .format(TIME_FORMAT);
+        }
+
+        long millis = slot.timestamp % 1000;
+        batch.append(cachedTime).append('.');
+        if (millis < 100) batch.append('0');
+        if (millis < 10) batch.append('0');
+        batch.append(millis).append(' ');
+        batch.append(slot.level.name());
+        for (int i = slot.level.name().length(); i < 5; i++) {
+            batch.append(' ');
+        }
+        batch.append(" [").append(slot.thread).append("] ");
+        appendMessage(batch, slot.pattern, slot.arg0, slot.arg1, slot.arg2);
+        batch.append('\n');
+
+        if (slot.error != null) {
+            StringWriter trace = new StringWriter();
+            slot.error.printStackTrace(new PrintWriter(trace));
+            batch.append(trace);
+        }
+    }
+
+    /**
+     * Sostituisce i "{}" del pattern con gli argomenti, in ordine.
+     */
+    private static void appendMessage(StringBuilder target, String pattern, Object arg0, Object arg1, Object arg2) {
+        int argIndex = 0;
+        int from = 0;
+
+        while (argIndex < 3) {
+            int placeholder = pattern.indexOf("{}", from);
+            if (placeholder < 0) {
+                break;
+            }
+            target.append(pattern, from, placeholder);
+            target.append(argIndex == 0 ? arg0 : argIndex == 1 ? arg1 : arg2);
+            from = placeholder + 2;
+            argIndex++;
+        }
+        target.append(pattern, from, pattern.length());
+    }
+
+    private void write() {
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        batch.setLength(0);
+
+        if (console) {
+            System.out.write(bytes, 0, bytes.length);
+            System.out.flush();
+        }
+
+        if (out == null) {
+            return;
+        }
+
+        try {
+            if (fileBytes + bytes.length > maxFileBytes && fileBytes > 0) {
+                rotate();
+            }
+            out.write(bytes);
+            out.flush();
+            fileBytes += bytes.length;
+        } catch (IOException e) {
+            System.err.println("[ERR] Scrittura del log fallita: " + e.getMessage());
+        }
+    }
+
+    private void openFile() throws IOException {
+        if (file == null) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        out = new FileOutputStream(file, true);
+        fileBytes = file.length();
+    }
+
+    /**
+     * server.log -> server.log.1 -> server.log.2 ... (il più vecchio viene eliminato).
+     */
+    private void rotate() throws IOException {
+        closeFile();
+
+        new File(file.getPath() + "." + (maxFiles - 1)).delete();
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            File older = new File(file.getPath() + "." + i);
+            if (older.exists()) {
+                older.renameTo(new File(file.getPath() + "." + (i + 1)));
+            }
+        }
+        if (maxFiles > 1) {
+            file.renameTo(new File(file.getPath() + ".1"));
+        } else {
+            file.delete();
+        }
+
+        openFile();
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+            out = null;
+        }
+    }
+
+    private static Level parseLevel(String value) {
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (Exception e) {
+            return Level.INFO;
+        }
+    }
+}
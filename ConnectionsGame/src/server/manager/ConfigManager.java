@@ -3,7 +3,9 @@ package server.manager;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Gestisce la lettura dei parametri di configurazione dal file properties.
@@ -30,6 +32,16 @@ public class ConfigManager {
             properties.load(reader);
             System.out.println("[OK] Configurazione caricata da: " + configFilePath);
         }
+
+        // Le proprietà di sistema (-Dchiave=valore) sostituiscono quelle del file:
+        // così più processi (es. nodi di un cluster) condividono lo stesso file
+        for (String key : properties.stringPropertyNames()) {
+            String override = System.getProperty(key);
+            if (override != null) {
+                properties.setProperty(key, override);
+                System.out.println("  " + key + " = " + override + " (da -D" + key + ")");
+            }
+        }
     }
 
     /**
@@ -118,6 +130,338 @@ public class ConfigManager {
         return getIntProperty("thread.pool.size", 20);
     }
 
+    /**
+     * Trasporto usato da ServerMain: "nio" (Selector), "tcp" (bloccante)
+     * oppure "aio" (AsynchronousServerSocketChannel).
+     */
+    public String getServerTransport() {
+        return getProperty("server.transport", "nio");
+    }
+
+    /**
+     * Thread dell'AsynchronousChannelGroup del server aio (0 = thread.pool.size).
+     */
+    public int getAioGroupThreads() {
+        int threads = getIntProperty("aio.group.threads", 0);
+        return threads > 0 ? threads : getThreadPoolSize();
+    }
+
+    /**
+     * Elementi (richieste NIO, connessioni TCP) in attesa di un worker oltre
+     * cui i nuovi vengono rifiutati con "server occupato" (0 = nessun limite).
+     */
+    public int getAdmissionQueueCapacity() {
+        return getIntProperty("admission.queue.capacity", 0);
+    }
+
+    /**
+     * Attesa massima in coda (ms): oltre, la richiesta viene scartata senza eseguirla (0 = nessuna).
+     */
+    public int getAdmissionDeadlineMs() {
+        return getIntProperty("admission.queue.deadline.ms", 0);
+    }
+
+    /**
+     * Bulkhead del server NIO: pool e coda separati per classe di operazioni
+     * (gameplay, auth, heavy). Con false un solo pool per tutte le richieste.
+     */
+    public boolean isNioBulkheadsEnabled() {
+        return getBooleanProperty("nio.bulkheads.enabled", false);
+    }
+
+    /**
+     * Worker del pool di una classe di operazioni (0 = thread.pool.size).
+     */
+    public int getNioBulkheadThreads(String operationClass) {
+        int threads = getIntProperty("nio.bulkhead." + operationClass + ".threads", 0);
+        return threads > 0 ? threads : getThreadPoolSize();
+    }
+
+    /**
+     * Coda di una classe di operazioni (0 = admission.queue.capacity).
+     */
+    public int getNioBulkheadQueueCapacity(String operationClass) {
+        int capacity = getIntProperty("nio.bulkhead." + operationClass + ".queue.capacity", 0);
+        return capacity > 0 ? capacity : getAdmissionQueueCapacity();
+    }
+
+    /**
+     * Passaggio delle richieste dai reactor ai worker NIO:
+     * "threadpool" (ThreadPoolExecutor) oppure "ringbuffer" (RingBufferExecutor).
+     */
+    public String getNioWorkerExecutor() {
+        return getProperty("nio.worker.executor", "threadpool");
+    }
+
+    /**
+     * Attesa dei worker con il ring vuoto: "blocking", "yielding" oppure "busy-spin".
+     */
+    public String getNioRingWaitStrategy() {
+        return getProperty("nio.ring.wait.strategy", "blocking");
+    }
+
+    /**
+     * Posizioni di ciascun ring (arrotondate alla potenza di 2 successiva).
+     * A ring pieno le richieste vengono rifiutate con "server occupato".
+     */
+    public int getNioRingSize() {
+        return getIntProperty("nio.ring.size", 1024);
+    }
+
+    /**
+     * Task presi al più da un worker del ring per ogni sveglia.
+     */
+    public int getNioRingBatchSize() {
+        return getIntProperty("nio.ring.batch.size", 16);
+    }
+
+    /**
+     * Esecuzione inline del server NIO: le operazioni economiche e non
+     * bloccanti vengono eseguite dal thread del reactor, senza passare dal pool.
+     */
+    public boolean isNioInlineEnabled() {
+        return getBooleanProperty("nio.inline.enabled", false);
+    }
+
+    /**
+     * Operazioni eseguite inline (nio.inline.operations, separate da virgole).
+     */
+    public Set<String> getNioInlineOperations() {
+        Set<String> operations = new HashSet<>();
+        for (String operation : getProperty("nio.inline.operations", "").split(",")) {
+            if (!operation.isBlank()) {
+                operations.add(operation.trim());
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Secondi di inattività dopo cui il server chiude una connessione (0 = mai).
+     */
+    public int getIdleTimeoutSeconds() {
+        return getIntProperty("server.idle.timeout.seconds", 0);
+    }
+
+    /**
+     * Numero di reactor del server NIO (0 = uno per core disponibile).
+     */
+    public int getReactorCount() {
+        int count = getIntProperty("nio.reactor.count", 0);
+        return count > 0 ? count : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Strategia di assegnazione delle connessioni ai reactor:
+     * "round-robin" oppure "least-loaded".
+     */
+    public String getReactorBalancing() {
+        return getProperty("nio.reactor.balancing", "round-robin");
+    }
+
+    /**
+     * Dimensione massima (in byte) di un singolo messaggio ricevuto.
+     */
+    public int getMaxFrameBytes() {
+        return getIntProperty("nio.max.frame.bytes", 65536);
+    }
+
+    /**
+     * Byte letti al massimo da una connessione per ogni passata del selector.
+     */
+    public int getReadBudgetBytes() {
+        return getIntProperty("nio.read.budget.bytes", 32768);
+    }
+
+    /**
+     * Datagram di notifica inviati per lotto.
+     */
+    public int getUdpBatchSize() {
+        return getIntProperty("udp.notify.batch.size", 256);
+    }
+
+    /**
+     * Pausa (ms) tra due lotti di notifiche UDP.
+     */
+    public int getUdpBatchPauseMs() {
+        return getIntProperty("udp.notify.batch.pause.ms", 2);
+    }
+
+    /**
+     * Finestra (ms) su cui distribuire la consegna di un evento push agli iscritti.
+     */
+    public int getPushJitterWindowMs() {
+        return getIntProperty("push.jitter.window.ms", 500);
+    }
+
+    /**
+     * Risposte più piccole di questa soglia (byte) non vengono compresse.
+     */
+    public int getCompressionThresholdBytes() {
+        return getIntProperty("protocol.compression.threshold.bytes", 1024);
+    }
+
+    /**
+     * Livello del Deflater (1 = più veloce, 9 = più compatto).
+     */
+    public int getCompressionLevel() {
+        return getIntProperty("protocol.compression.level", 6);
+    }
+
+    /**
+     * File in cui vengono salvati utenti e statistiche.
+     * In modalità cluster ogni nodo salva solo la propria partizione.
+     */
+    public String getUsersFilePath() {
+        return nodeFilePath(getProperty("users.file.path", "data/users.json"));
+    }
+
+    /**
+     * Intervallo (secondi) tra due salvataggi periodici degli utenti (0 = solo alla chiusura).
+     */
+    public int getPersistenceIntervalSeconds() {
+        return getIntProperty("persistence.interval.seconds", 300);
+    }
+
+    /**
+     * Tempo massimo (secondi) per completare richieste e risposte in corso alla chiusura.
+     */
+    public int getShutdownDrainTimeoutSeconds() {
+        return getIntProperty("shutdown.drain.timeout.seconds", 10);
+    }
+
+    /**
+     * Livello minimo dei messaggi di log: DEBUG, INFO, WARN, ERROR, OFF.
+     */
+    public String getLogLevel() {
+        return getProperty("log.level", "INFO");
+    }
+
+    /**
+     * Righe di log per richiesta/risposta: una ogni N richieste (1 = tutte).
+     */
+    public int getLogRequestSampleRate() {
+        return getIntProperty("log.request.sample.rate", 1);
+    }
+
+    /**
+     * File di log (vuoto = solo console).
+     */
+    public String getLogFilePath() {
+        return nodeFilePath(getProperty("log.file.path", ""));
+    }
+
+    public int getLogFileMaxMb() {
+        return getIntProperty("log.file.max.mb", 10);
+    }
+
+    public int getLogFileMaxCount() {
+        return getIntProperty("log.file.max.count", 5);
+    }
+
+    public boolean isLogConsoleEnabled() {
+        return getBooleanProperty("log.console", true);
+    }
+
+    /**
+     * Messaggi in attesa di scrittura oltre cui i nuovi vengono scartati.
+     */
+    public int getLogBufferSize() {
+        return getIntProperty("log.buffer.size", 8192);
+    }
+
+    /**
+     * Nuove connessioni al secondo accettate per indirizzo IP (0 = nessun limite).
+     */
+    public int getAcceptRatePerSecond() {
+        return getIntProperty("ratelimit.accept.per.second", 0);
+    }
+
+    public int getAcceptRateBurst() {
+        return getIntProperty("ratelimit.accept.burst", 1);
+    }
+
+    /**
+     * Richieste al secondo per operazione (0 = nessun limite).
+     * ratelimit.OPERAZIONE.per.second sostituisce ratelimit.request.per.second.
+     * @param operation nome dell'operazione, o null per il limite generale
+     */
+    public int getRequestRatePerSecond(String operation) {
+        int general = getIntProperty("ratelimit.request.per.second", 0);
+        return operation == null ? general : getIntProperty("ratelimit." + operation + ".per.second", general);
+    }
+
+    public int getRequestRateBurst(String operation) {
+        int general = getIntProperty("ratelimit.request.burst", 1);
+        return operation == null ? general : getIntProperty("ratelimit." + operation + ".burst", general);
+    }
+
+    /**
+     * Modalità cluster: gli utenti sono ripartiti tra più processi server.
+     */
+    public boolean isClusterEnabled() {
+        return getBooleanProperty("cluster.enabled", false);
+    }
+
+    /**
+     * Indice di questo nodo nella lista cluster.nodes (il nodo 0 coordina le partite).
+     */
+    public int getClusterNodeId() {
+        return getIntProperty("cluster.node.id", 0);
+    }
+
+    /**
+     * Indirizzi interni (host:porta) dei nodi del cluster, nell'ordine degli indici.
+     */
+    public String[] getClusterNodes() {
+        String value = getProperty("cluster.nodes", "").trim();
+        return value.isEmpty() ? new String[0] : value.split("\\s*,\\s*");
+    }
+
+    /**
+     * Tempo massimo (ms) di attesa della risposta di un altro nodo.
+     */
+    public int getClusterRequestTimeoutMs() {
+        return getIntProperty("cluster.request.timeout.ms", 2000);
+    }
+
+    /**
+     * Thread che eseguono le richieste ricevute dagli altri nodi.
+     */
+    public int getClusterWorkerThreads() {
+        return getIntProperty("cluster.worker.threads", 8);
+    }
+
+    /**
+     * Partizioni per core: utenti e stati di gioco ripartiti tra thread proprietari.
+     */
+    public boolean isPartitionEnabled() {
+        return getBooleanProperty("partition.enabled", false);
+    }
+
+    /**
+     * Numero di partizioni (0 = una per core disponibile).
+     */
+    public int getPartitionCount() {
+        int count = getIntProperty("partition.count", 0);
+        return count > 0 ? count : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * In modalità cluster aggiunge l'indice del nodo al nome del file
+     * (data/users.json -> data/users-node1.json), così i processi sulla
+     * stessa macchina non scrivono sugli stessi file.
+     */
+    private String nodeFilePath(String path) {
+        if (path.isEmpty() || !isClusterEnabled()) {
+            return path;
+        }
+        String suffix = "-node" + getClusterNodeId();
+        int dot = path.lastIndexOf('.');
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar));
+        return dot > slash ? path.substring(0, dot) + suffix + path.substring(dot) : path + suffix;
+    }
+
     /**
      * Stampa tutte le proprietà caricate (utile per debug)
      */
@@ -0,0 +1,21 @@
+package server.manager;
+
+import server.model.Game;
+
+/**
+ * Riceve gli eventi del ciclo di vita delle partite.
+ * I metodi sono chiamati dal thread del timer di GameManager (o da chi avvia
+ * la partita): devono solo accodare il lavoro e tornare subito.
+ */
+public interface GameEventListener {
+
+    /**
+     * Una nuova partita è appena iniziata.
+     */
+    void onGameStarted(Game game);
+
+    /**
+     * Il tempo della partita è scaduto e gli stati finali sono stati calcolati.
+     */
+    void onGameEnded(Game game, GameManager.GameStats finalStats);
+}
@@ -1,13 +1,16 @@
 package server.manager;
 
+import server.log.AsyncLogger;
 import server.model.Game;
 import server.model.PlayerGameState;
 import server.model.User;
 import server.model.WordGroup;
+import server.partition.PartitionExecutor;
 import server.util.JsonGameLoader;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Gestisce il ciclo di vita delle partite.
@@ -27,10 +30,39 @@ public class GameManager {
     // Storico partite (thread-safe)
     private final ConcurrentHashMap<Integer, Game> gameHistory;
     
+    // Protegge cambio partita e ingresso dei giocatori.
+    // ReentrantLock invece di synchronized: un virtual thread che attende
+    // o fa I/O (es. log) mentre lo tiene non blocca il proprio carrier thread.
+    private final ReentrantLock gameLock;
+    
+    // Notificati all'inizio e alla fine di ogni partita
+    private final List<GameEventListener> listeners;
+    
     // Timer per gestire la scadenza della partita
     private ScheduledExecutorService gameTimer;
     private ScheduledFuture<?> currentGameTask;
     
+    // true quando i risultati della partita corrente sono già nelle statistiche
+    // degli utenti (scadenza o chiusura del server), protetto da gameLock
+    private boolean currentGameFinalized;
+    
+    // false sui nodi del cluster che ricevono le partite dal coordinatore
+    private volatile boolean autoAdvance = true;
+    
+    // Partizioni per core (null = stati in playerStates): ogni partizione
+    // possiede gli stati dei propri giocatori, vedi enablePartitions()
+    private PartitionExecutor partitions;
+    private PlayerSlice[] slices;
+    
+    /**
+     * Stati dei giocatori di una partizione e partita a cui si riferiscono
+     * (accesso solo dal thread della partizione).
+     */
+    private static final class PlayerSlice {
+        final HashMap<String, PlayerGameState> states = new HashMap<>();
+        Game game;
+    }
+    
     /**
      * Costruttore
      */
@@ -41,6 +73,8 @@ public class GameManager {
         
         this.playerStates = new ConcurrentHashMap<>();
         this.gameHistory = new ConcurrentHashMap<>();
+        this.gameLock = new ReentrantLock();
+        this.listeners = new CopyOnWriteArrayList<>();
         
         // Timer con un singolo thread per gestire la scadenza
         this.gameTimer = Executors.newSingleThreadScheduledExecutor();
@@ -49,17 +83,32 @@ public class GameManager {
                          (gameDuration/1000) + " secondi)");
     }
     
+    /**
+     * Ripartisce gli stati dei giocatori tra i thread delle partizioni:
+     * ingresso in partita e proposte vengono eseguiti dalla partizione
+     * proprietaria del giocatore, senza gameLock.
+     * Va chiamato prima di avviare la prima partita.
+     */
+    public void enablePartitions(PartitionExecutor partitions) {
+        PlayerSlice[] newSlices = new PlayerSlice[partitions.getPartitionCount()];
+        for (int i = 0; i < newSlices.length; i++) {
+            newSlices[i] = new PlayerSlice();
+        }
+        this.slices = newSlices;
+        this.partitions = partitions;
+    }
+    
+    public PartitionExecutor getPartitions() {
+        return partitions;
+    }
+    
     /**
      * Avvia una nuova partita.
      * Carica dal JSON e avvia il timer.
      */
-    public synchronized boolean startNewGame() {
+    public boolean startNewGame() {
+        gameLock.lock();
         try {
-            // Cancella il timer della partita precedente se esiste
-            if (currentGameTask != null && !currentGameTask.isDone()) {
-                currentGameTask.cancel(false);
-            }
-            
             // Carica la prossima partita dal JSON
             Game newGame = gameLoader.loadNextGame(gameDuration);
             
@@ -68,6 +117,30 @@ public class GameManager {
                 return false;
             }
             
+            return startGame(newGame);
+            
+        } catch (Exception e) {
+            System.err.println("[ERR] Errore nell'avvio della partita: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+            
+        } finally {
+            gameLock.unlock();
+        }
+    }
+    
+    /**
+     * Rende corrente una partita già pronta (es. ricevuta dal nodo che
+     * coordina il cluster) e avvia il timer per la sua scadenza.
+     */
+    public boolean startGame(Game newGame) {
+        gameLock.lock();
+        try {
+            // Cancella il timer della partita precedente se esiste
+            if (currentGameTask != null && !currentGameTask.isDone()) {
+                currentGameTask.cancel(false);
+            }
+            
             // Archivia la partita precedente se esiste
             if (currentGame != null) {
                 gameHistory.put(currentGame.getGameId(), currentGame);
@@ -77,30 +150,47 @@ public class GameManager {
             
             // Imposta la nuova partita
             currentGame = newGame;
+            currentGameFinalized = false;
             playerStates.clear();  // Reset stati giocatori
+            if (partitions != null) {
+                // Accodato: le richieste già in coda nella partizione vedono ancora la partita precedente
+                for (int p = 0; p < slices.length; p++) {
+                    PlayerSlice slice = slices[p];
+                    partitions.execute(p, () -> {
+                        slice.states.clear();
+                        slice.game = newGame;
+                    });
+                }
+            }
             
             System.out.println("[OK] Nuova partita avviata: #" + currentGame.getGameId());
-            System.out.println("  Scadenza tra: " + (gameDuration/1000) + " secondi");
+            System.out.println("  Scadenza tra: " + (newGame.getRemainingTime()/1000) + " secondi");
             
             // Avvia il timer per la scadenza
-            startGameTimer();
+            startGameTimer(newGame.getRemainingTime());
+            
+            for (GameEventListener listener : listeners) {
+                try {
+                    listener.onGameStarted(newGame);
+                } catch (Exception e) {
+                    System.err.println("[ERR] Errore nella notifica di inizio partita: " + e.getMessage());
+                }
+            }
             
             return true;
             
-        } catch (Exception e) {
-            System.err.println("[ERR] Errore nell'avvio della partita: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        } finally {
+            gameLock.unlock();
         }
     }
     
     /**
      * Avvia il timer che gestisce la scadenza della partita.
      */
-    private void startGameTimer() {
+    private void startGameTimer(long delayMs) {
         currentGameTask = gameTimer.schedule(() -> {
             handleGameTimeout();
-        }, gameDuration, TimeUnit.MILLISECONDS);
+        }, delayMs, TimeUnit.MILLISECONDS);
     }
     
     /**
@@ -109,8 +199,64 @@ public class GameManager {
     private void handleGameTimeout() {
         System.out.println("\n-- TEMPO SCADUTO per partita #" + currentGame.getGameId());
         
-        // Marca tutti i giocatori non finiti come "tempo scaduto"
-        for (PlayerGameState state : playerStates.values()) {
+        if (finalizeCurrentGame() < 0) {
+            return;  // Già chiusa dallo shutdown del server
+        }
+        
+        System.out.println("[OK] Stati finali calcolati per tutti i giocatori");
+        
+        // Notifica la fine della partita (i listener non bloccano il timer)
+        Game endedGame = currentGame;
+        GameStats finalStats = getCurrentGameStats();
+        for (GameEventListener listener : listeners) {
+            try {
+                listener.onGameEnded(endedGame, finalStats);
+            } catch (Exception e) {
+                System.err.println("[ERR] Errore nella notifica di fine partita: " + e.getMessage());
+            }
+        }
+        
+        if (!autoAdvance) {
+            return;  // La prossima partita arriva dal coordinatore del cluster
+        }
+        
+        // Dopo un breve delay, avvia automaticamente la prossima partita
+        gameTimer.schedule(() -> {
+            System.out.println("\n -- Avvio automatico prossima partita...\n");
+            startNewGame();
+        }, 5, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Marca tutti i giocatori non finiti come "tempo scaduto" e ne registra
+     * il risultato nelle statistiche utente. Eseguito una sola volta per partita.
+     * @return giocatori aggiornati, o -1 se la partita era già stata chiusa
+     */
+    private int finalizeCurrentGame() {
+        gameLock.lock();
+        try {
+            if (currentGame == null || currentGameFinalized) {
+                return -1;
+            }
+            currentGameFinalized = true;
+            
+            if (partitions != null) {
+                // Ogni partizione chiude i propri giocatori
+                int updated = 0;
+                for (int count : partitions.collect(p -> finalizeStates(slices[p].states.values()))) {
+                    updated += count;
+                }
+                return updated;
+            }
+            return finalizeStates(playerStates.values());
+        } finally {
+            gameLock.unlock();
+        }
+    }
+    
+    private int finalizeStates(Collection<PlayerGameState> states) {
+        int updated = 0;
+        for (PlayerGameState state : states) {
             if (!state.isFinished()) {
                 state.markTimeExpired();
                 
@@ -120,49 +266,55 @@ public class GameManager {
                     user.addScore(state.getCurrentScore());
                     user.updateStats(false, state.getWrongProposals(), false);
                 }
+                updated++;
             }
         }
-        
-        System.out.println("[OK] Stati finali calcolati per tutti i giocatori");
-        
-        // TODO: Inviare notifica UDP a tutti i giocatori loggati
-        
-        // Dopo un breve delay, avvia automaticamente la prossima partita
-        gameTimer.schedule(() -> {
-            System.out.println("\n -- Avvio automatico prossima partita...\n");
-            startNewGame();
-        }, 5, TimeUnit.SECONDS);
+        return updated;
     }
     
     /**
      * Fa entrare un giocatore nella partita corrente.
      * Crea il suo PlayerGameState se non esiste.
      */
-    public synchronized PlayerGameState joinGame(String username) {
-        if (currentGame == null) {
+    public PlayerGameState joinGame(String username) {
+        if (partitions != null) {
+            return partitions.call(username, () -> {
+                PlayerSlice slice = slices[partitions.ownerOf(username)];
+                return joinGame(slice.game, slice.states, username);
+            });
+        }
+        
+        gameLock.lock();
+        try {
+            return joinGame(currentGame, playerStates, username);
+        } finally {
+            gameLock.unlock();
+        }
+    }
+    
+    private PlayerGameState joinGame(Game game, Map<String, PlayerGameState> states, String username) {
+        if (game == null) {
             return null;
         }
         
         // Se già ha uno stato per questa partita, restituiscilo
-        PlayerGameState state = playerStates.get(username);
+        PlayerGameState state = states.get(username);
         if (state != null) {
-            System.out.println("  " + username + " si è riconnesso alla partita #" + 
-                             currentGame.getGameId());
+            AsyncLogger.info("  {} si è riconnesso alla partita #{}", username, game.getGameId());
             return state;
         }
         
         // Crea nuovo stato per questo giocatore
-        state = new PlayerGameState(username, currentGame.getGameId());
-        playerStates.put(username, state);
+        state = new PlayerGameState(username, game.getGameId());
+        states.put(username, state);
         
         // Aggiorna lo stato dell'utente
         User user = userManager.getUser(username);
         if (user != null) {
-            user.setCurrentGameId(currentGame.getGameId());
+            user.setCurrentGameId(game.getGameId());
         }
         
-        System.out.println("[OK] " + username + " è entrato nella partita #" + 
-                         currentGame.getGameId());
+        AsyncLogger.info("[OK] {} è entrato nella partita #{}", username, game.getGameId());
         
         return state;
     }
@@ -172,13 +324,23 @@ public class GameManager {
      * @return risultato della validazione
      */
     public ProposalResult submitProposal(String username, List<String> proposedWords) {
+        if (partitions != null) {
+            return partitions.call(username, () -> {
+                PlayerSlice slice = slices[partitions.ownerOf(username)];
+                return evaluateProposal(slice.game, slice.states.get(username), username, proposedWords);
+            });
+        }
+        return evaluateProposal(currentGame, playerStates.get(username), username, proposedWords);
+    }
+    
+    private ProposalResult evaluateProposal(Game currentGame, PlayerGameState state,
+                                            String username, List<String> proposedWords) {
         // Verifica che ci sia una partita in corso
         if (currentGame == null) {
             return new ProposalResult(false, "Nessuna partita in corso", null, 0);
         }
         
         // Verifica che il giocatore abbia uno stato
-        PlayerGameState state = playerStates.get(username);
         if (state == null) {
             return new ProposalResult(false, "Non sei nella partita", null, 0);
         }
@@ -227,8 +389,7 @@ public class GameManager {
             int newScore = state.registerCorrectProposal(groupIndex);
             WordGroup foundGroup = currentGame.getGroups().get(groupIndex);
             
-            System.out.println("[OK[ " + username + " ha trovato: " + foundGroup.getTheme() + 
-                             " (score: " + newScore + ")");
+            AsyncLogger.info("[OK] {} ha trovato: {} (score: {})", username, foundGroup.getTheme(), newScore);
             
             // Se ha vinto, aggiorna le statistiche
             if (state.hasWon()) {
@@ -237,7 +398,7 @@ public class GameManager {
                     user.addScore(newScore);
                     user.updateStats(true, state.getWrongProposals(), true);
                 }
-                System.out.println("[WIN] " + username + " ha VINTO la partita!");
+                AsyncLogger.info("[WIN] {} ha VINTO la partita!", username);
             }
             
             return new ProposalResult(true, "Gruppo corretto!", foundGroup, newScore);
@@ -247,8 +408,8 @@ public class GameManager {
             
             int newScore = state.registerWrongProposal();
             
-            System.out.println("[ERR] " + username + " ha sbagliato (errori: " + 
-                             state.getWrongProposals() + "/4, score: " + newScore + ")");
+            AsyncLogger.info("[ERR] {} ha sbagliato (errori: {}/4, score: {})",
+                             username, state.getWrongProposals(), newScore);
             
             // Se ha perso, aggiorna le statistiche
             if (state.isFinished() && !state.hasWon()) {
@@ -257,13 +418,28 @@ public class GameManager {
                     user.addScore(newScore);
                     user.updateStats(false, 4, true);
                 }
-                System.out.println("[LOSE] " + username + " ha PERSO la partita (4 errori)");
+                AsyncLogger.info("[LOSE] {} ha PERSO la partita (4 errori)", username);
             }
             
             return new ProposalResult(false, "Gruppo sbagliato", null, newScore);
         }
     }
     
+    /**
+     * Se false, alla scadenza non viene caricata automaticamente la prossima
+     * partita (nodi del cluster che seguono il coordinatore).
+     */
+    public void setAutoAdvance(boolean autoAdvance) {
+        this.autoAdvance = autoAdvance;
+    }
+    
+    /**
+     * Registra un listener per gli eventi di inizio e fine partita.
+     */
+    public void addGameEventListener(GameEventListener listener) {
+        listeners.add(listener);
+    }
+    
     // Getters
     
     public Game getCurrentGame() {
@@ -271,6 +447,9 @@ public class GameManager {
     }
     
     public PlayerGameState getPlayerState(String username) {
+        if (partitions != null) {
+            return partitions.call(username, () -> slices[partitions.ownerOf(username)].states.get(username));
+        }
         return playerStates.get(username);
     }
     
@@ -282,6 +461,13 @@ public class GameManager {
     }
     
     public Map<String, PlayerGameState> getAllPlayerStates() {
+        if (partitions != null) {
+            Map<String, PlayerGameState> all = new HashMap<>();
+            for (Map<String, PlayerGameState> part : partitions.collect(p -> new HashMap<>(slices[p].states))) {
+                all.putAll(part);
+            }
+            return all;
+        }
         return new HashMap<>(playerStates);
     }
     
@@ -293,17 +479,22 @@ public class GameManager {
             return null;
         }
         
-        int totalPlayers = playerStates.size();
+        int totalPlayers = 0;
         int finishedPlayers = 0;
         int winners = 0;
         
-        for (PlayerGameState state : playerStates.values()) {
-            if (state.isFinished()) {
-                finishedPlayers++;
-                if (state.hasWon()) {
-                    winners++;
-                }
+        if (partitions != null) {
+            // Conteggi per partizione: {giocatori, finiti, vincitori}
+            for (int[] counts : partitions.collect(p -> countStates(slices[p].states.values()))) {
+                totalPlayers += counts[0];
+                finishedPlayers += counts[1];
+                winners += counts[2];
             }
+        } else {
+            int[] counts = countStates(playerStates.values());
+            totalPlayers = counts[0];
+            finishedPlayers = counts[1];
+            winners = counts[2];
         }
         
         return new GameStats(
@@ -316,14 +507,44 @@ public class GameManager {
         );
     }
     
+    private static int[] countStates(Collection<PlayerGameState> states) {
+        int finished = 0;
+        int won = 0;
+        for (PlayerGameState state : states) {
+            if (state.isFinished()) {
+                finished++;
+                if (state.hasWon()) {
+                    won++;
+                }
+            }
+        }
+        return new int[] {states.size(), finished, won};
+    }
+    
     /**
      * Chiude il GameManager e libera le risorse.
+     * La partita in corso viene chiusa come per scadenza del tempo, così i
+     * risultati dei giocatori finiscono nelle statistiche prima del salvataggio.
+     * Va chiamato quando non arrivano più proposte (richieste già smaltite).
      */
     public void shutdown() {
         if (currentGameTask != null) {
             currentGameTask.cancel(false);
         }
-        gameTimer.shutdown();
+        gameTimer.shutdownNow();  // Scarta anche l'avvio già pianificato della prossima partita
+        
+        // Attende un'eventuale scadenza già in esecuzione sul timer
+        try {
+            gameTimer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        int updated = finalizeCurrentGame();
+        if (updated >= 0) {
+            System.out.println("[OK] Partita #" + currentGame.getGameId() +
+                             " chiusa: risultati registrati per " + updated + " giocatori");
+        }
         System.out.println("[OK] GameManager chiuso");
     }
     
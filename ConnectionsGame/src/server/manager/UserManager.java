@@ -1,8 +1,10 @@
 package server.manager;
 
+import server.log.AsyncLogger;
 import server.model.User;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Gestisce tutti gli utenti registrati nel sistema.
@@ -15,12 +17,16 @@ public class UserManager {
     // Set degli utenti attualmente loggati (thread-safe)
     private final Set<String> loggedInUsers;
 
+    // Serializza i cambi di credenziali (ReentrantLock: non blocca il carrier dei virtual thread)
+    private final ReentrantLock credentialsLock;
+
     /**
      * Costruttore
      */
     public UserManager() {
         this.users = new ConcurrentHashMap<>();
         this.loggedInUsers = Collections.synchronizedSet(new HashSet<>());
+        this.credentialsLock = new ReentrantLock();
 
         System.out.println("[OK] UserManager inizializzato");
     }
@@ -41,10 +47,10 @@ public class UserManager {
         User existing = users.putIfAbsent(username, newUser);
 
         if (existing == null) {
-            System.out.println("[OK] Nuovo utente registrato: " + username);
+            AsyncLogger.info("[OK] Nuovo utente registrato: {}", username);
             return true;
         } else {
-            System.out.println("[ERR] Username gia esistente: " + username);
+            AsyncLogger.info("[ERR] Username gia esistente: {}", username);
             return false;
         }
     }
@@ -57,19 +63,19 @@ public class UserManager {
         User user = users.get(username);
 
         if (user == null) {
-            System.out.println("[ERR] Login fallito: utente non esistente - " + username);
+            AsyncLogger.info("[ERR] Login fallito: utente non esistente - {}", username);
             return false;
         }
 
         if (!user.getPassword().equals(password)) {
-            System.out.println("[ERR] Login fallito: password errata - " + username);
+            AsyncLogger.info("[ERR] Login fallito: password errata - {}", username);
             return false;
         }
 
         user.setLoggedIn(true);
         loggedInUsers.add(username);
 
-        System.out.println("[OK] Login effettuato: " + username);
+        AsyncLogger.info("[OK] Login effettuato: {}", username);
         return true;
     }
 
@@ -81,7 +87,7 @@ public class UserManager {
         if (user != null) {
             user.setLoggedIn(false);
             loggedInUsers.remove(username);
-            System.out.println("[OK] Logout effettuato: " + username);
+            AsyncLogger.info("[OK] Logout effettuato: {}", username);
         }
     }
 
@@ -95,46 +101,93 @@ public class UserManager {
     /**
      * Aggiorna le credenziali di un utente.
      */
-    public synchronized boolean updateCredentials(String oldUsername, String newUsername,
-                                                  String oldPassword, String newPassword) {
-        User user = users.get(oldUsername);
-
-        if (user == null) {
-            System.out.println("[ERR] Update fallito: utente non esistente - " + oldUsername);
-            return false;
-        }
-
-        if (!user.getPassword().equals(oldPassword)) {
-            System.out.println("[ERR] Update fallito: password errata - " + oldUsername);
-            return false;
-        }
+    public boolean updateCredentials(String oldUsername, String newUsername,
+                                     String oldPassword, String newPassword) {
+        credentialsLock.lock();
+        try {
+            User user = users.get(oldUsername);
+
+            if (user == null) {
+                AsyncLogger.info("[ERR] Update fallito: utente non esistente - {}", oldUsername);
+                return false;
+            }
 
-        // Cambia username
-        if (newUsername != null && !newUsername.equals(oldUsername)) {
-            if (users.containsKey(newUsername)) {
-                System.out.println("[ERR] Update fallito: nuovo username gia esistente - " + newUsername);
+            if (!user.getPassword().equals(oldPassword)) {
+                AsyncLogger.info("[ERR] Update fallito: password errata - {}", oldUsername);
                 return false;
             }
 
-            users.remove(oldUsername);
-            user.setUsername(newUsername);
-            users.put(newUsername, user);
+            // Cambia username
+            if (newUsername != null && !newUsername.equals(oldUsername)) {
+                if (users.containsKey(newUsername)) {
+                    AsyncLogger.info("[ERR] Update fallito: nuovo username gia esistente - {}", newUsername);
+                    return false;
+                }
+
+                users.remove(oldUsername);
+                user.setUsername(newUsername);
+                users.put(newUsername, user);
+
+                if (loggedInUsers.contains(oldUsername)) {
+                    loggedInUsers.remove(oldUsername);
+                    loggedInUsers.add(newUsername);
+                }
+
+                AsyncLogger.info("[OK] Username aggiornato: {} -> {}", oldUsername, newUsername);
+            }
 
-            if (loggedInUsers.contains(oldUsername)) {
-                loggedInUsers.remove(oldUsername);
-                loggedInUsers.add(newUsername);
+            // Cambia password
+            if (newPassword != null && !newPassword.equals(oldPassword)) {
+                user.setPassword(newPassword);
+                AsyncLogger.info("[OK] Password aggiornata per: {}", user.getUsername());
             }
 
-            System.out.println("[OK] Username aggiornato: " + oldUsername + " -> " + newUsername);
+            return true;
+        } finally {
+            credentialsLock.unlock();
         }
+    }
 
-        // Cambia password
-        if (newPassword != null && !newPassword.equals(oldPassword)) {
-            user.setPassword(newPassword);
-            System.out.println("[OK] Password aggiornata per: " + user.getUsername());
+    /**
+     * Rimuove un utente dopo averne verificato la password, per spostarlo su
+     * un altro nodo del cluster (cambio di username verso un'altra partizione).
+     * Gli utenti loggati non vengono spostati.
+     * @return l'utente rimosso, o null se le verifiche falliscono
+     */
+    public User detachUser(String username, String password) {
+        credentialsLock.lock();
+        try {
+            User user = users.get(username);
+
+            if (user == null || !user.getPassword().equals(password)) {
+                AsyncLogger.info("[ERR] Spostamento fallito: credenziali errate - {}", username);
+                return null;
+            }
+            if (loggedInUsers.contains(username)) {
+                AsyncLogger.info("[ERR] Spostamento fallito: utente loggato - {}", username);
+                return null;
+            }
+
+            users.remove(username);
+            return user;
+        } finally {
+            credentialsLock.unlock();
         }
+    }
 
-        return true;
+    /**
+     * Aggiunge un utente esistente (con le sue statistiche) ricevuto da un altro nodo.
+     * @return false se l'username è già in uso
+     */
+    public boolean attachUser(User user) {
+        credentialsLock.lock();
+        try {
+            user.setLoggedIn(false);
+            user.setCurrentGameId(-1);
+            return users.putIfAbsent(user.getUsername(), user) == null;
+        } finally {
+            credentialsLock.unlock();
+        }
     }
 
     /**
@@ -206,6 +259,20 @@ public class UserManager {
         return -1;
     }
 
+    /**
+     * Numero di utenti con punteggio totale maggiore di score
+     * (per calcolare la posizione in classifica su più nodi).
+     */
+    public int countUsersAbove(int score) {
+        int count = 0;
+        for (User user : users.values()) {
+            if (user.getTotalScore() > score) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     /**
      * Restituisce tutti gli utenti (copia per sicurezza).
      */
@@ -49,6 +49,17 @@ public class Game {
         return new ArrayList<>(allWords);  // Copia per immutabilità
     }
     
+    /**
+     * Parola in posizione index (stesso ordine di getAllWords), senza copiare la lista
+     */
+    public String getWord(int index) {
+        return allWords.get(index);
+    }
+    
+    public int getWordCount() {
+        return allWords.size();
+    }
+    
     public long getStartTime() {
         return startTime;
     }
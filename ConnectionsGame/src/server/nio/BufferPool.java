@@ -0,0 +1,115 @@
+package server.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool di ByteBuffer diretti suddiviso in classi di dimensione (4KB, 16KB, 64KB, 256KB).
+ * I buffer vengono prestati solo per la durata di una lettura o di una scrittura
+ * e poi restituiti, così le connessioni inattive non occupano memoria per i buffer.
+ * Usando buffer diretti il channel non deve copiare i dati in un buffer temporaneo.
+ */
+public class BufferPool {
+    private static final int MIN_CLASS_SIZE = 4096;
+    private static final int CLASS_COUNT = 4;
+
+    private final Queue<ByteBuffer>[] freeLists;
+
+    // Byte massimi trattenuti nel pool, oltre i buffer restituiti vengono scartati
+    private final long maxPooledBytes;
+
+    // Statistiche
+    private final AtomicLong pooledBytes;
+    private final AtomicLong allocatedBytes;
+    private final AtomicLong inUseBytes;
+
+    @SuppressWarnings("unchecked")
+    public BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.freeLists = (Queue<ByteBuffer>[]) new Queue<?>[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            freeLists[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.pooledBytes = new AtomicLong(0);
+        this.allocatedBytes = new AtomicLong(0);
+        this.inUseBytes = new AtomicLong(0);
+    }
+
+    /**
+     * Dimensione della classe più grande.
+     */
+    public static int maxBufferSize() {
+        return classSize(CLASS_COUNT - 1);
+    }
+
+    /**
+     * Restituisce un buffer diretto (già pulito) di capacità almeno minCapacity,
+     * limitata alla classe più grande.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeClass = classIndex(minCapacity);
+        ByteBuffer buffer = freeLists[sizeClass].poll();
+
+        if (buffer != null) {
+            pooledBytes.addAndGet(-buffer.capacity());
+            buffer.clear();
+        } else {
+            buffer = ByteBuffer.allocateDirect(classSize(sizeClass));
+            allocatedBytes.addAndGet(buffer.capacity());
+        }
+
+        inUseBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * Restituisce un buffer al pool.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        int capacity = buffer.capacity();
+        inUseBytes.addAndGet(-capacity);
+
+        if (pooledBytes.get() + capacity > maxPooledBytes) {
+            allocatedBytes.addAndGet(-capacity);  // Lasciato al GC
+            return;
+        }
+
+        pooledBytes.addAndGet(capacity);
+        freeLists[classIndex(capacity)].offer(buffer);
+    }
+
+    public long getInUseBytes() {
+        return inUseBytes.get();
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Riepilogo dell'occupazione del pool.
+     */
+    public String getStats() {
+        return String.format("buffer diretti: allocati=%dKB, in uso=%dKB, liberi=%dKB",
+            allocatedBytes.get() / 1024, inUseBytes.get() / 1024, pooledBytes.get() / 1024);
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_CLASS_SIZE << (2 * sizeClass);
+    }
+
+    private static int classIndex(int capacity) {
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            if (capacity <= classSize(i)) {
+                return i;
+            }
+        }
+        return CLASS_COUNT - 1;
+    }
+}
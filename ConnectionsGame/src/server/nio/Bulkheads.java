@@ -0,0 +1,164 @@
+package server.nio;
+
+import server.admission.AdmissionControl;
+import server.admission.OperationClass;
+import server.manager.ConfigManager;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker pool e controllo di ammissione per ogni classe di operazioni.
+ *
+ * Con i bulkhead attivi ogni OperationClass ha pool, coda e metriche
+ * propri: una raffica di classifiche complete riempie il pool HEAVY e
+ * viene rifiutata dalla sua coda, mentre le proposte continuano sul pool
+ * GAMEPLAY. Disattivati, tutte le classi condividono un pool e il
+ * controllo di ammissione generale.
+ */
+public class Bulkheads {
+    private static final OperationClass[] CLASSES = OperationClass.values();
+
+    private final ExecutorService[] executors;
+    private final AdmissionControl[] admissions;
+    private final boolean enabled;
+
+    private Bulkheads(ExecutorService[] executors, AdmissionControl[] admissions, boolean enabled) {
+        this.executors = executors;
+        this.admissions = admissions;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Crea i pool dalla configurazione (nio.bulkhead.*).
+     * @param shared controllo di ammissione generale, usato se i bulkhead sono disattivati
+     */
+    public static Bulkheads fromConfig(AdmissionControl shared) {
+        ConfigManager config = ConfigManager.getInstance();
+        ExecutorService[] executors = new ExecutorService[CLASSES.length];
+        AdmissionControl[] admissions = new AdmissionControl[CLASSES.length];
+        boolean enabled = config.isNioBulkheadsEnabled();
+
+        if (!enabled) {
+            // Coda limitata: le mailbox con i soli rifiuti già pronti, se la riempiono, vengono rifiutate
+            ExecutorService pool = newWorkerPool(shared, "nio-worker", config.getThreadPoolSize());
+            for (OperationClass operationClass : CLASSES) {
+                executors[operationClass.ordinal()] = pool;
+                admissions[operationClass.ordinal()] = shared;
+            }
+            return new Bulkheads(executors, admissions, false);
+        }
+
+        for (OperationClass operationClass : CLASSES) {
+            String name = operationClass.getConfigName();
+            AdmissionControl admission = new AdmissionControl(name,
+                config.getNioBulkheadQueueCapacity(name), config.getAdmissionDeadlineMs());
+            admissions[operationClass.ordinal()] = admission;
+            executors[operationClass.ordinal()] = newWorkerPool(admission, "nio-" + name,
+                config.getNioBulkheadThreads(name));
+        }
+        return new Bulkheads(executors, admissions, true);
+    }
+
+    /**
+     * Pool di una classe: ThreadPoolExecutor con la coda limitata alla
+     * capacità di ammissione, o ring buffer di nio.ring.size posizioni
+     * (nio.worker.executor). In entrambi i casi un task oltre la coda viene
+     * rifiutato, mai eseguito dal reactor.
+     */
+    private static ExecutorService newWorkerPool(AdmissionControl admission, String threadName, int threads) {
+        ConfigManager config = ConfigManager.getInstance();
+        if (!"ringbuffer".equals(config.getNioWorkerExecutor())) {
+            return admission.newWorkerPool(threadName, threads);
+        }
+
+        RingBufferExecutor ring = new RingBufferExecutor(threadName, threads, config.getNioRingSize(),
+            RingBufferExecutor.WaitStrategy.of(config.getNioRingWaitStrategy()), config.getNioRingBatchSize());
+
+        // Ring più piccolo della coda di ammissione: rifiuta richieste già ammesse
+        int queueCapacity = admission.getQueueCapacity();
+        if (queueCapacity == 0 || queueCapacity > ring.getCapacity()) {
+            System.out.println("⚠ Ring " + threadName + " da " + ring.getCapacity() + " posizioni, coda di ammissione " +
+                               (queueCapacity > 0 ? String.valueOf(queueCapacity) : "illimitata") +
+                               ": oltre il ring le richieste ricevono \"server occupato\"");
+        }
+        return ring;
+    }
+
+    public Executor executor(OperationClass operationClass) {
+        return executors[operationClass.ordinal()];
+    }
+
+    public AdmissionControl admission(OperationClass operationClass) {
+        return admissions[operationClass.ordinal()];
+    }
+
+    /**
+     * Descrizione per il log di avvio.
+     */
+    public String describe() {
+        ConfigManager config = ConfigManager.getInstance();
+        String handoff = "ringbuffer".equals(config.getNioWorkerExecutor())
+            ? ", ring buffer (" + config.getNioRingSize() + " posizioni, " + config.getNioRingWaitStrategy() +
+              ", lotti da " + config.getNioRingBatchSize() + ")"
+            : "";
+        if (!enabled) {
+            return config.getThreadPoolSize() + " worker threads (pool unico), coda " +
+                   config.getAdmissionQueueCapacity() + " richieste" + handoff;
+        }
+        StringBuilder sb = new StringBuilder("bulkhead");
+        for (OperationClass operationClass : CLASSES) {
+            String name = operationClass.getConfigName();
+            sb.append(operationClass.ordinal() == 0 ? " " : ", ").append(name).append('=')
+              .append(config.getNioBulkheadThreads(name)).append(" worker/coda ")
+              .append(config.getNioBulkheadQueueCapacity(name));
+        }
+        return sb.append(handoff).toString();
+    }
+
+    /**
+     * Niente nuovi task; quelli in coda vengono completati.
+     */
+    public void shutdown() {
+        for (ExecutorService executor : distinctExecutors()) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Attende la fine dei task di tutti i pool, al più fino a deadlineNanos.
+     */
+    public void awaitTermination(long deadlineNanos) throws InterruptedException {
+        for (ExecutorService executor : distinctExecutors()) {
+            executor.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Iterable<ExecutorService> distinctExecutors() {
+        Map<ExecutorService, Boolean> distinct = new IdentityHashMap<>();
+        for (ExecutorService executor : executors) {
+            distinct.put(executor, Boolean.TRUE);
+        }
+        return distinct.keySet();
+    }
+
+    /**
+     * Metriche di ammissione (coda, rifiuti, attesa) per classe, una riga ciascuna.
+     */
+    public String getStats() {
+        if (!enabled) {
+            return admissions[0].getStats();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (AdmissionControl admission : admissions) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(admission.getStats());
+        }
+        return sb.toString();
+    }
+}
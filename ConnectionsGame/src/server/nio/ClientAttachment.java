@@ -1,125 +1,238 @@
 package server.nio;
 
-import server.handler.CommandHandler;
+import server.log.AsyncLogger;
+import server.protocol.ProtocolSession;
+import server.transport.ConnectionContext;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Mantiene lo stato di una connessione client nel server NIO.
- * Viene associato come "attachment" alla SelectionKey.
+ * Viene associato come "attachment" alla SelectionKey ed è anche la voce
+ * della connessione nella TimerWheel di inattività del reactor.
  */
-public class ClientAttachment {
+public class ClientAttachment extends TimerWheel.Entry {
     private final SocketChannel channel;
-    private final CommandHandler commandHandler;
     
-    // Buffer per lettura
-    private final ByteBuffer readBuffer;
+    // Stato della connessione nella pipeline (decoder, protocollo, utente)
+    private final ConnectionContext context;
     
-    // Buffer per scrittura
-    private final ByteBuffer writeBuffer;
+    // Massimo numero di buffer diretti inviati con una singola gathering write
+    private static final int MAX_GATHER = 4;
     
-    // Coda di messaggi da inviare
-    private final Queue<String> messageQueue;
+    // Coda lock-free di messaggi già codificati: più worker producono, il reactor consuma
+    private final Queue<ByteBuffer> messageQueue;
     
-    // Accumula dati letti fino a trovare un messaggio completo
-    private final StringBuilder partialMessage;
+    // Pool da cui prendere i buffer diretti per l'invio
+    private final BufferPool bufferPool;
     
-    // Indirizzo del client (per logging)
-    private final String clientAddress;
+    // Buffer diretti in corso di invio, presi dal pool solo finché servono
+    // (accesso solo dal thread del reactor)
+    private final ByteBuffer[] inFlight;
+    private int inFlightCount;
     
-    public ClientAttachment(SocketChannel channel, CommandHandler commandHandler) {
+    // Messaggio copiato solo in parte nei buffer diretti
+    private ByteBuffer current;
+    
+    // Byte accodati e non ancora scritti sul socket
+    private final AtomicLong pendingOutboundBytes;
+    
+    // true se il reactor ha sospeso la lettura per backpressure
+    private boolean readPaused;
+    
+    // Esegue le richieste di questa connessione in ordine, una alla volta
+    private final RequestMailbox mailbox;
+    
+    // Chiave di registrazione sul Selector del reactor
+    private volatile SelectionKey selectionKey;
+    
+    // true se la connessione è già nella coda di scrittura del reactor
+    private final AtomicBoolean writePending;
+    
+    public ClientAttachment(SocketChannel channel, ConnectionContext context,
+                            Bulkheads bulkheads, RequestMailbox.Handler requestHandler,
+                            BufferPool bufferPool) {
         this.channel = channel;
-        this.commandHandler = commandHandler;
-        
-        // Buffer di lettura (8KB)
-        this.readBuffer = ByteBuffer.allocate(8192);
-        
-        // Buffer di scrittura (8KB)
-        this.writeBuffer = ByteBuffer.allocate(8192);
+        this.context = context;
+        this.bufferPool = bufferPool;
         
-        // Coda messaggi
-        this.messageQueue = new LinkedList<>();
+        // Coda messaggi (nessun buffer allocato finché non c'è da scrivere)
+        this.messageQueue = new ConcurrentLinkedQueue<>();
+        this.inFlight = new ByteBuffer[MAX_GATHER];
+        this.inFlightCount = 0;
+        this.current = null;
+        this.pendingOutboundBytes = new AtomicLong(0);
+        this.readPaused = false;
+        this.writePending = new AtomicBoolean(false);
         
-        // Messaggio parziale
-        this.partialMessage = new StringBuilder();
-        
-        // Indirizzo client
-        try {
-            this.clientAddress = channel.getRemoteAddress().toString();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        // Mailbox seriale delle richieste
+        this.mailbox = new RequestMailbox(this, bulkheads, requestHandler);
     }
     
     public SocketChannel getChannel() {
         return channel;
     }
     
-    public CommandHandler getCommandHandler() {
-        return commandHandler;
+    public ConnectionContext getContext() {
+        return context;
     }
     
-    public ByteBuffer getReadBuffer() {
-        return readBuffer;
+    public String getClientAddress() {
+        return context.getClientAddress();
     }
     
-    public ByteBuffer getWriteBuffer() {
-        return writeBuffer;
+    public ProtocolSession getSession() {
+        return context.getSession();
     }
     
-    public String getClientAddress() {
-        return clientAddress;
+    public RequestMailbox getMailbox() {
+        return mailbox;
+    }
+    
+    public SelectionKey getSelectionKey() {
+        return selectionKey;
+    }
+    
+    public void setSelectionKey(SelectionKey selectionKey) {
+        this.selectionKey = selectionKey;
     }
     
     /**
-     * Aggiunge dati letti al messaggio parziale.
-     * Restituisce messaggi completi (terminati da newline).
+     * Accoda un messaggio già codificato da inviare al client.
+     * Può essere chiamato da qualsiasi thread.
      */
-    public Queue<String> extractMessages(String data) {
-        Queue<String> completeMessages = new LinkedList<>();
-        partialMessage.append(data);
-        
-        // Cerca messaggi completi (terminati da \n)
-        String accumulated = partialMessage.toString();
-        String[] lines = accumulated.split("\n", -1);
-        
-        // Tutti tranne l'ultimo sono messaggi completi
-        for (int i = 0; i < lines.length - 1; i++) {
-            String msg = lines[i].trim();
-            if (!msg.isEmpty()) {
-                completeMessages.add(msg);
-            }
-        }
-        
-        // L'ultimo è il messaggio parziale rimanente
-        partialMessage.setLength(0);
-        partialMessage.append(lines[lines.length - 1]);
-        
-        return completeMessages;
+    public void queueMessage(ByteBuffer message) {
+        pendingOutboundBytes.addAndGet(message.remaining());
+        messageQueue.offer(message);
+    }
+    
+    public long getPendingOutboundBytes() {
+        return pendingOutboundBytes.get();
+    }
+    
+    public boolean isReadPaused() {
+        return readPaused;
+    }
+    
+    public void setReadPaused(boolean readPaused) {
+        this.readPaused = readPaused;
     }
     
     /**
-     * Accoda un messaggio da inviare al client.
+     * Segna la connessione come in attesa di scrittura.
+     * @return true se non lo era già (va quindi segnalata al reactor)
      */
-    public synchronized void queueMessage(String message) {
-        messageQueue.offer(message);
+    public boolean markWritePending() {
+        return writePending.compareAndSet(false, true);
+    }
+    
+    /**
+     * Chiamato dal reactor quando prende in carico la scrittura.
+     */
+    public void clearWritePending() {
+        writePending.set(false);
     }
     
     /**
-     * Preleva il prossimo messaggio da inviare.
+     * Verifica se ci sono messaggi in coda o in corso di invio.
      */
-    public synchronized String pollMessage() {
-        return messageQueue.poll();
+    public boolean hasMessages() {
+        return inFlightCount > 0 || current != null || !messageQueue.isEmpty();
     }
     
     /**
-     * Verifica se ci sono messaggi in coda.
+     * Invia tutti i messaggi in coda con gathering write.
+     * I messaggi vengono copiati in buffer diretti presi dal pool, dimensionati
+     * sul messaggio da inviare (fino a 256KB). Se il socket è pieno, i byte non
+     * scritti restano in inFlight e l'invio riprende al prossimo OP_WRITE;
+     * i buffer completamente inviati tornano subito al pool.
+     * Chiamato solo dal thread del reactor.
+     * @return true se la coda è stata svuotata, false se il socket è pieno
      */
-    public synchronized boolean hasMessages() {
-        return !messageQueue.isEmpty();
+    public boolean flush() throws IOException {
+        while (true) {
+            stageMessages();
+            
+            if (inFlightCount == 0) {
+                return true;
+            }
+            
+            long written = channel.write(inFlight, 0, inFlightCount);
+            pendingOutboundBytes.addAndGet(-written);
+            
+            // Restituisce al pool i buffer completamente inviati
+            int sent = 0;
+            while (sent < inFlightCount && !inFlight[sent].hasRemaining()) {
+                bufferPool.release(inFlight[sent]);
+                sent++;
+            }
+            
+            if (sent > 0) {
+                System.arraycopy(inFlight, sent, inFlight, 0, inFlightCount - sent);
+                for (int i = inFlightCount - sent; i < inFlightCount; i++) {
+                    inFlight[i] = null;
+                }
+                inFlightCount -= sent;
+            }
+            
+            if (inFlightCount > 0) {
+                return false;  // Scrittura parziale: socket pieno
+            }
+        }
+    }
+    
+    /**
+     * Copia i messaggi in coda nei buffer diretti di inFlight.
+     * Più messaggi piccoli finiscono nello stesso buffer; un messaggio più
+     * grande di un buffer viene spezzato su più buffer.
+     */
+    private void stageMessages() {
+        while (inFlightCount < MAX_GATHER) {
+            if (current == null) {
+                current = messageQueue.poll();
+                if (current == null) {
+                    return;
+                }
+            }
+            
+            ByteBuffer staging = bufferPool.acquire(current.remaining());
+            
+            while (current != null && staging.hasRemaining()) {
+                if (current.remaining() <= staging.remaining()) {
+                    staging.put(current);
+                    current = messageQueue.poll();
+                } else {
+                    // Copia solo la parte che entra nel buffer
+                    int oldLimit = current.limit();
+                    current.limit(current.position() + staging.remaining());
+                    staging.put(current);
+                    current.limit(oldLimit);
+                }
+            }
+            
+            staging.flip();
+            inFlight[inFlightCount++] = staging;
+        }
+    }
+    
+    /**
+     * Restituisce al pool i buffer ancora in uso (chiamato dal reactor alla chiusura).
+     */
+    public void releaseBuffers() {
+        for (int i = 0; i < inFlightCount; i++) {
+            bufferPool.release(inFlight[i]);
+            inFlight[i] = null;
+        }
+        inFlightCount = 0;
+        current = null;
+        messageQueue.clear();
     }
     
     /**
@@ -127,17 +240,14 @@ public class ClientAttachment {
      */
     public void close() {
         try {
-            // Logout automatico se loggato
-            String loggedUser = commandHandler.getLoggedUsername();
-            if (loggedUser != null) {
-                System.out.println("  Auto-logout: " + loggedUser);
-            }
+            // Logout automatico se loggato, dopo la richiesta eventualmente in corso
+            mailbox.close(context::close);
             
             channel.close();
-            System.out.println("✗ Connessione chiusa: " + clientAddress);
+            AsyncLogger.info("✗ Connessione chiusa: {}", context.getClientAddress());
             
         } catch (Exception e) {
-            System.err.println("Errore durante chiusura: " + e.getMessage());
+            AsyncLogger.warn("Errore durante chiusura: {}", e.getMessage());
         }
     }
 }
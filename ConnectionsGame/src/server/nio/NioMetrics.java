@@ -0,0 +1,49 @@
+package server.nio;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contatori globali del server NIO.
+ * LongAdder evita la contesa tra reactor e worker che li incrementano.
+ */
+public final class NioMetrics {
+    // Iterazioni dei loop dei reactor
+    public static final LongAdder LOOP_ITERATIONS = new LongAdder();
+
+    // Chiamate effettive a Selector.wakeup()
+    public static final LongAdder WAKEUPS = new LongAdder();
+
+    // Risposte accodate dai worker
+    public static final LongAdder RESPONSES = new LongAdder();
+
+    // Risposte prodotte direttamente dai reactor (operazioni inline)
+    public static final LongAdder INLINE_RESPONSES = new LongAdder();
+
+    // Backpressure: letture sospese (high water), riprese (low water), connessioni chiuse
+    public static final LongAdder HIGH_WATER_EVENTS = new LongAdder();
+    public static final LongAdder LOW_WATER_EVENTS = new LongAdder();
+    public static final LongAdder HARD_LIMIT_DISCONNECTS = new LongAdder();
+
+    // Eventi push pubblicati e messaggi accodati agli iscritti
+    public static final LongAdder PUSH_EVENTS = new LongAdder();
+    public static final LongAdder PUSH_DELIVERIES = new LongAdder();
+
+    private NioMetrics() {
+    }
+
+    /**
+     * Riepilogo leggibile dei contatori.
+     */
+    public static String snapshot() {
+        long responses = RESPONSES.sum();
+        long wakeups = WAKEUPS.sum();
+        double wakeupsPerResponse = responses == 0 ? 0.0 : (double) wakeups / responses;
+
+        return String.format("loop=%d, risposte=%d, inline=%d, wakeup=%d (%.2f per risposta), " +
+                             "high water=%d, low water=%d, chiuse per limite=%d, " +
+                             "eventi push=%d (consegne=%d)",
+            LOOP_ITERATIONS.sum(), responses, INLINE_RESPONSES.sum(), wakeups, wakeupsPerResponse,
+            HIGH_WATER_EVENTS.sum(), LOW_WATER_EVENTS.sum(), HARD_LIMIT_DISCONNECTS.sum(),
+            PUSH_EVENTS.sum(), PUSH_DELIVERIES.sum());
+    }
+}
@@ -0,0 +1,337 @@
+package server.nio;
+
+import server.log.AsyncLogger;
+import server.manager.ConfigManager;
+import server.protocol.ProtocolSession;
+import server.ratelimit.RateLimiter;
+import server.transport.RequestPipeline;
+import server.transport.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * Trasporto NIO con Selector.
+ * Usa multiplexing per gestire molti client con pochi thread:
+ * un thread acceptor distribuisce le connessioni a N reactor,
+ * ognuno con il proprio Selector; le richieste girano sul worker pool.
+ */
+public class NioTransport implements Transport {
+    private volatile boolean running = true;
+    private Selector selector;  // Selector dell'acceptor (solo OP_ACCEPT)
+    private ServerSocketChannel serverChannel;
+    private Thread acceptorThread;
+    private Reactor[] reactors;
+    private boolean leastLoaded;
+    private int nextReactor = 0;
+    private Bulkheads bulkheads;
+    private BufferPool bufferPool;
+    private PushBroadcaster pushBroadcaster;
+    private RateLimiter rateLimiter;
+    private long metricsIntervalMs;
+
+    @Override
+    public String getName() {
+        return "NIO";
+    }
+
+    @Override
+    public void start(RequestPipeline pipeline) throws IOException {
+        ConfigManager config = ConfigManager.getInstance();
+        int tcpPort = config.getTcpPort();
+        int reactorCount = config.getReactorCount();
+        leastLoaded = "least-loaded".equals(config.getReactorBalancing());
+        long idleTimeoutMs = config.getIdleTimeoutSeconds() * 1000L;
+        metricsIntervalMs = config.getIntProperty("metrics.log.interval.seconds", 0) * 1000L;
+        rateLimiter = pipeline.getRateLimiter();
+
+        // Worker pool delle richieste
+        System.out.println("4. Creazione Worker Thread Pool...");
+        bulkheads = Bulkheads.fromConfig(pipeline.getAdmission());
+        System.out.println("   Thread Pool: " + bulkheads.describe());
+        System.out.println("   Scadenza in coda: " + config.getAdmissionDeadlineMs() + " ms");
+        System.out.println("   ✓ Worker Pool creato\n");
+
+        // Reactor e acceptor
+        System.out.println("5. Inizializzazione NIO...");
+        System.out.println("   Reactor: " + reactorCount + " (" +
+                         (leastLoaded ? "least-loaded" : "round-robin") + ")");
+        System.out.println("   Timeout inattività: " +
+                         (idleTimeoutMs > 0 ? (idleTimeoutMs / 1000) + " secondi" : "disattivato"));
+        System.out.println("   Messaggio max: " + config.getMaxFrameBytes() + " byte, budget lettura: " +
+                         config.getReadBudgetBytes() + " byte");
+        System.out.println("   Esecuzione inline: " +
+                         (config.isNioInlineEnabled() ? String.join(", ", config.getNioInlineOperations()) +
+                                                        " e rifiuti per login mancante" : "disattivata"));
+
+        bufferPool = new BufferPool(config.getIntProperty("nio.buffer.pool.max.mb", 64) * 1024L * 1024L);
+        pushBroadcaster = new PushBroadcaster(config.getPushJitterWindowMs());
+        pipeline.getGameManager().addGameEventListener(pushBroadcaster);
+
+        reactors = new Reactor[reactorCount];
+        for (int i = 0; i < reactorCount; i++) {
+            reactors[i] = new Reactor(i, bulkheads, pipeline, pushBroadcaster, bufferPool);
+            reactors[i].start();
+        }
+
+        selector = Selector.open();
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(tcpPort));
+        serverChannel.configureBlocking(false);  // NON-BLOCCANTE!
+
+        // Registra il server channel per OP_ACCEPT
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        System.out.println("   ✓ " + reactorCount + " reactor avviati");
+        System.out.println("   ✓ Selector acceptor creato");
+        System.out.println("   ✓ Server channel registrato sulla porta " + tcpPort + "\n");
+
+        acceptorThread = new Thread(this::acceptorLoop, "nio-acceptor");
+        acceptorThread.start();
+    }
+
+    /**
+     * Loop dell'acceptor.
+     * Accetta le nuove connessioni e le distribuisce ai reactor.
+     */
+    private void acceptorLoop() {
+        System.out.println("▶ Acceptor avviato\n");
+
+        long lastMetricsReport = System.currentTimeMillis();
+
+        try {
+            while (running) {
+                // Attende nuove connessioni (timeout 1 secondo per controllare running)
+                int readyChannels = selector.select(1000);
+
+                // Report periodico delle metriche
+                if (metricsIntervalMs > 0 && System.currentTimeMillis() - lastMetricsReport >= metricsIntervalMs) {
+                    lastMetricsReport = System.currentTimeMillis();
+                    System.out.println("[METRICS] " + NioMetrics.snapshot());
+                    System.out.println("[METRICS] " + bufferPool.getStats());
+                    System.out.println("[METRICS] " + ProtocolSession.compressionStats());
+                    System.out.println("[METRICS] " + rateLimiter.getStats());
+                    for (String line : bulkheads.getStats().split("\n")) {
+                        System.out.println("[METRICS] " + line);
+                    }
+                    System.out.println("[METRICS] log: messaggi scartati=" + AsyncLogger.getDroppedCount());
+                }
+
+                if (readyChannels == 0) {
+                    continue;  // Nessun evento, riprova
+                }
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();  // IMPORTANTE: rimuovi dalla lista
+
+                    if (key.isValid() && key.isAcceptable()) {
+                        handleAccept();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("✗ Errore nell'acceptor: " + e.getMessage());
+            }
+        }
+
+        System.out.println("✓ Acceptor terminato");
+    }
+
+    /**
+     * Gestisce evento OP_ACCEPT: accetta tutte le connessioni pendenti
+     * e le assegna a un reactor.
+     * Le connessioni oltre il limite per IP vengono chiuse subito.
+     */
+    private void handleAccept() throws IOException {
+        SocketChannel clientChannel;
+
+        while ((clientChannel = serverChannel.accept()) != null) {
+            if (!rateLimiter.tryAcceptConnection(clientChannel.socket().getInetAddress())) {
+                clientChannel.close();
+                continue;
+            }
+            selectReactor().assign(clientChannel);
+        }
+    }
+
+    /**
+     * Sceglie il reactor a cui assegnare una nuova connessione.
+     */
+    private Reactor selectReactor() {
+        if (leastLoaded) {
+            Reactor best = reactors[0];
+            for (Reactor reactor : reactors) {
+                if (reactor.getConnectionCount() < best.getConnectionCount()) {
+                    best = reactor;
+                }
+            }
+            return best;
+        }
+
+        int index = nextReactor;
+        nextReactor = (index + 1) % reactors.length;
+        return reactors[index];
+    }
+
+    /**
+     * Chiusura ordinata, a fasi:
+     * 1. niente nuove connessioni;
+     * 2. i reactor smettono di leggere dai client;
+     * 3. le richieste già ricevute vengono completate;
+     * 4. le risposte accodate vengono inviate.
+     * Le connessioni restano aperte fino a close().
+     */
+    @Override
+    public boolean drain(long deadlineNanos) {
+        long start = System.nanoTime();
+
+        // 1. Niente nuove connessioni
+        running = false;
+        if (serverChannel != null && serverChannel.isOpen()) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+        if (selector != null) {
+            selector.wakeup();
+        }
+
+        // 2-3. Niente nuove richieste, completamento di quelle ricevute
+        if (reactors != null) {
+            for (Reactor reactor : reactors) {
+                if (reactor != null) reactor.beginDrain();
+            }
+        }
+        boolean requestsDone = awaitReactors(Reactor::isRequestsDrained, deadlineNanos);
+
+        if (bulkheads != null) {
+            bulkheads.shutdown();
+            try {
+                bulkheads.awaitTermination(deadlineNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long requestsMs = elapsedMs(start);
+
+        // 4. Invio delle risposte accodate
+        boolean outboundDone = awaitReactors(Reactor::isOutboundDrained, deadlineNanos);
+
+        // Gli eventi della chiusura della partita non vengono più inviati
+        if (pushBroadcaster != null) {
+            pushBroadcaster.shutdown();
+        }
+
+        if (!requestsDone || !outboundDone) {
+            System.out.println("⚠ Scadenza raggiunta: " +
+                             (!requestsDone ? "richieste non completate" : "risposte non inviate") +
+                             " (connessioni chiuse comunque)");
+        }
+        System.out.println("✓ Connessioni NIO svuotate (richieste: " + requestsMs +
+                         " ms, invio: " + elapsedMs(start) + " ms)");
+        return requestsDone && outboundDone;
+    }
+
+    /**
+     * Attende che tutti i reactor soddisfino la condizione, al più fino a deadline.
+     * @return false se la scadenza è stata raggiunta
+     */
+    private boolean awaitReactors(Predicate<Reactor> condition, long deadline) {
+        if (reactors == null) {
+            return true;
+        }
+
+        while (true) {
+            boolean done = true;
+            for (Reactor reactor : reactors) {
+                if (reactor != null && !condition.test(reactor)) {
+                    done = false;
+                    break;
+                }
+            }
+
+            if (done) {
+                return true;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000L;
+    }
+
+    /**
+     * Ferma reactor e acceptor: i reactor chiudono tutte le connessioni client.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+
+        if (reactors != null) {
+            for (Reactor reactor : reactors) {
+                if (reactor != null) reactor.shutdown();
+            }
+
+            for (Reactor reactor : reactors) {
+                try {
+                    if (reactor != null) reactor.awaitTermination(2000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        try {
+            if (acceptorThread != null) acceptorThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (selector != null && selector.isOpen()) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+    }
+
+    @Override
+    public String getStats() {
+        String stats = NioMetrics.snapshot();
+        if (bufferPool != null) {
+            stats += "\n" + bufferPool.getStats();
+        }
+        if (bulkheads != null) {
+            stats += "\n" + bulkheads.getStats();
+        }
+        return stats;
+    }
+}
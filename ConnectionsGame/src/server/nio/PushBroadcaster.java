@@ -0,0 +1,165 @@
+package server.nio;
+
+import server.manager.GameEventListener;
+import server.manager.GameManager;
+import server.model.Game;
+import server.protocol.JsonResponse;
+import server.protocol.ProtocolSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invia gli eventi di partita (nuova partita con le parole, fine partita con
+ * le statistiche finali) alle connessioni NIO che hanno chiesto "subscribe".
+ *
+ * Ogni evento viene serializzato una sola volta per variante di protocollo
+ * in un buffer di sola lettura; a ogni iscritto viene accodata una vista
+ * duplicate() dello stesso buffer, senza ricodifica per client.
+ * Le consegne sono distribuite su una finestra di jitter: gli iscritti,
+ * in ordine casuale, vengono divisi in JITTER_SLOTS gruppi consegnati in
+ * momenti diversi, così i client non rispondono tutti nello stesso istante.
+ */
+public class PushBroadcaster implements GameEventListener {
+    private static final int JITTER_SLOTS = 16;
+
+    // Iscritti e reactor che ne gestisce la scrittura
+    private final ConcurrentHashMap<ClientAttachment, Reactor> subscribers;
+
+    // Un solo thread: codifica e consegna degli eventi (non blocca il timer delle partite)
+    private final ScheduledExecutorService scheduler;
+    private final long jitterWindowMs;
+
+    public PushBroadcaster(long jitterWindowMs) {
+        this.subscribers = new ConcurrentHashMap<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "push-broadcaster");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jitterWindowMs = Math.max(0, jitterWindowMs);
+    }
+
+    public void subscribe(ClientAttachment attachment, Reactor reactor) {
+        subscribers.put(attachment, reactor);
+    }
+
+    public void unsubscribe(ClientAttachment attachment) {
+        subscribers.remove(attachment);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void onGameStarted(Game game) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("gameId", game.getGameId());
+        data.put("words", game.getAllWords());
+        data.put("remainingTime", game.getRemainingTime());
+
+        publish(JsonResponse.event("gameStarted", "Nuova partita #" + game.getGameId(), data));
+    }
+
+    @Override
+    public void onGameEnded(Game game, GameManager.GameStats finalStats) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("gameId", game.getGameId());
+        if (finalStats != null) {
+            data.put("totalPlayers", finalStats.totalPlayers);
+            data.put("finishedPlayers", finalStats.finishedPlayers);
+            data.put("winners", finalStats.winners);
+        }
+
+        publish(JsonResponse.event("gameEnded", "Partita #" + game.getGameId() + " terminata", data));
+    }
+
+    /**
+     * Pianifica la consegna dell'evento agli iscritti attuali.
+     * Il chiamante (thread del timer) si limita ad accodare il lavoro.
+     */
+    private void publish(JsonResponse event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        try {
+            scheduler.execute(() -> deliver(event));
+        } catch (Exception e) {
+            // Scheduler fermato durante lo shutdown
+        }
+    }
+
+    private void deliver(JsonResponse event) {
+        List<Map.Entry<ClientAttachment, Reactor>> targets = new ArrayList<>(subscribers.entrySet());
+        if (targets.isEmpty()) {
+            return;
+        }
+        Collections.shuffle(targets, ThreadLocalRandom.current());
+
+        // Codifiche condivise, una per variante di protocollo (create al primo uso)
+        ByteBuffer[] encoded = new ByteBuffer[ProtocolSession.PUSH_VARIANTS];
+
+        NioMetrics.PUSH_EVENTS.increment();
+
+        int slots = Math.min(JITTER_SLOTS, targets.size());
+        int sliceSize = (targets.size() + slots - 1) / slots;
+        long slotMs = jitterWindowMs / slots;
+
+        for (int slot = 0; slot < slots; slot++) {
+            int from = slot * sliceSize;
+            int to = Math.min(from + sliceSize, targets.size());
+            if (from >= to) {
+                break;
+            }
+
+            List<Map.Entry<ClientAttachment, Reactor>> slice = targets.subList(from, to);
+            long delay = slot * slotMs + (slotMs > 0 ? ThreadLocalRandom.current().nextLong(slotMs) : 0);
+
+            if (delay == 0) {
+                deliverSlice(slice, event, encoded);
+            } else {
+                scheduler.schedule(() -> deliverSlice(slice, event, encoded), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Accoda l'evento a un gruppo di iscritti (sempre sul thread dello scheduler,
+     * quindi l'array delle codifiche non richiede sincronizzazione).
+     */
+    private void deliverSlice(List<Map.Entry<ClientAttachment, Reactor>> slice,
+                              JsonResponse event, ByteBuffer[] encoded) {
+        for (Map.Entry<ClientAttachment, Reactor> target : slice) {
+            ClientAttachment attachment = target.getKey();
+            if (!subscribers.containsKey(attachment)) {
+                continue;  // Disiscritto o disconnesso nel frattempo
+            }
+
+            ProtocolSession session = attachment.getSession();
+            int variant = session.getPushVariant();
+            if (encoded[variant] == null) {
+                encoded[variant] = ByteBuffer.wrap(session.encodeUncompressed(event)).asReadOnlyBuffer();
+            }
+
+            attachment.queueMessage(encoded[variant].duplicate());
+            target.getValue().requestWrite(attachment);
+            NioMetrics.PUSH_DELIVERIES.increment();
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,683 @@
+package server.nio;
+
+import server.admission.OperationClass;
+import server.handler.CommandHandler;
+import server.log.AsyncLogger;
+import server.manager.ConfigManager;
+import server.transport.ConnectionContext;
+import server.transport.RequestPipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reactor del server NIO: un thread con il proprio Selector.
+ * Gestisce lettura e scrittura delle connessioni che l'acceptor gli assegna.
+ */
+public class Reactor implements Runnable {
+    private static final int INITIAL_READ_BUFFER_SIZE = 16384;
+    private static final long IDLE_TICK_MS = 1000;
+    private static final int IDLE_WHEEL_MAX_SLOTS = 4096;
+    private static final long DRAIN_POLL_MS = 10;
+
+    // Segnaposto nella mailbox per una richiesta rifiutata dal rate limit
+    private static final byte[] RATE_LIMITED = new byte[0];
+
+    // Segnaposto nella mailbox per una richiesta rifiutata per coda piena
+    private static final byte[] SERVER_BUSY = new byte[0];
+
+    private final int id;
+    private final Selector selector;
+    private final Bulkheads bulkheads;
+    private final RequestPipeline pipeline;
+    private final PushBroadcaster pushBroadcaster;
+    private final int readBudgetBytes;
+
+    // Operazioni eseguite nel thread del reactor (null = esecuzione inline disattivata)
+    private final Set<String> inlineOperations;
+
+    // Soglie (in byte) dei dati in uscita per connessione:
+    // sopra highWater si smette di leggere, sotto lowWater si riprende,
+    // oltre hardLimit la connessione viene chiusa
+    private final long highWaterBytes;
+    private final long lowWaterBytes;
+    private final long hardLimitBytes;
+
+    // Pool di buffer diretti condiviso tra i reactor
+    private final BufferPool bufferPool;
+
+    // Esecuzione (nei worker) e rifiuto delle richieste delle mailbox
+    private final RequestMailbox.Handler requestHandler = new RequestMailbox.Handler() {
+        @Override
+        public void handle(ClientAttachment attachment, byte[] frame,
+                           OperationClass operationClass, long admittedNanos) {
+            processRequest(attachment, frame, operationClass, admittedNanos);
+        }
+
+        @Override
+        public void reject(ClientAttachment attachment, byte[] frame, OperationClass operationClass) {
+            rejectRequest(attachment, frame, operationClass);
+        }
+    };
+
+    // Buffer diretto di lettura del reactor, condiviso da tutte le sue connessioni
+    // (un reactor legge una connessione alla volta). Cresce se le letture lo riempiono.
+    private ByteBuffer readBuffer;
+
+    // Frame estratti nell'ultima lettura (riusata, accesso solo dal thread del reactor)
+    private final List<byte[]> decodedFrames;
+
+    // Channel accettati dall'acceptor, in attesa di registrazione sul Selector
+    private final Queue<SocketChannel> pendingChannels;
+
+    // Connessioni con risposte da inviare, segnalate dai worker.
+    // Solo il thread del reactor modifica gli interestOps.
+    private final Queue<ClientAttachment> pendingWrites;
+
+    // true se una wakeup del Selector è già in corso (coalescenza)
+    private final AtomicBoolean wakeupPending;
+
+    // Scadenze di inattività delle connessioni (null = timeout disattivato)
+    private final TimerWheel idleTimers;
+
+    // Istante dell'iterazione corrente del loop
+    private long loopTime;
+
+    // Numero di connessioni attive (usato per il bilanciamento least-loaded)
+    private final AtomicInteger connectionCount;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    // Chiusura ordinata: non si legge più, si completano richieste e risposte in corso
+    private volatile boolean draining;
+    private boolean readsStopped;  // Solo thread del reactor
+    private volatile boolean requestsDrained;
+    private volatile boolean outboundDrained;
+
+    public Reactor(int id, Bulkheads bulkheads, RequestPipeline pipeline,
+                   PushBroadcaster pushBroadcaster, BufferPool bufferPool) throws IOException {
+        ConfigManager config = ConfigManager.getInstance();
+        long idleTimeoutMs = config.getIdleTimeoutSeconds() * 1000L;
+
+        this.id = id;
+        this.selector = Selector.open();
+        this.bulkheads = bulkheads;
+        this.pipeline = pipeline;
+        this.pushBroadcaster = pushBroadcaster;
+        this.readBudgetBytes = config.getReadBudgetBytes();
+        this.inlineOperations = config.isNioInlineEnabled() ? config.getNioInlineOperations() : null;
+        this.highWaterBytes = config.getIntProperty("nio.outbound.high.water.kb", 1024) * 1024L;
+        this.lowWaterBytes = config.getIntProperty("nio.outbound.low.water.kb", 256) * 1024L;
+        this.hardLimitBytes = config.getIntProperty("nio.outbound.hard.limit.kb", 8192) * 1024L;
+        this.bufferPool = bufferPool;
+        this.readBuffer = bufferPool.acquire(INITIAL_READ_BUFFER_SIZE);
+        this.decodedFrames = new ArrayList<>();
+        this.pendingChannels = new ConcurrentLinkedQueue<>();
+        this.pendingWrites = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean(false);
+        this.connectionCount = new AtomicInteger(0);
+        this.loopTime = System.currentTimeMillis();
+        this.idleTimers = idleTimeoutMs > 0
+            ? new TimerWheel((int) Math.min(IDLE_WHEEL_MAX_SLOTS, idleTimeoutMs / IDLE_TICK_MS + 1),
+                             IDLE_TICK_MS, idleTimeoutMs, loopTime, this::onIdleTimeout)
+            : null;
+        this.running = true;
+    }
+
+    /**
+     * Avvia il thread del reactor.
+     */
+    public void start() {
+        thread = new Thread(this, "nio-reactor-" + id);
+        thread.start();
+    }
+
+    /**
+     * Assegna una nuova connessione a questo reactor.
+     * Chiamato dal thread acceptor: la registrazione vera avviene nel thread del reactor.
+     */
+    public void assign(SocketChannel channel) {
+        connectionCount.incrementAndGet();
+        pendingChannels.offer(channel);
+        wakeup();
+    }
+
+    /**
+     * Segnala che una connessione ha risposte da inviare.
+     * Chiamato dai worker: gli interestOps vengono aggiornati dal reactor.
+     */
+    public void requestWrite(ClientAttachment attachment) {
+        if (attachment.markWritePending()) {
+            pendingWrites.offer(attachment);
+            wakeup();
+        }
+    }
+
+    /**
+     * Sveglia il Selector, al più una volta per iterazione del loop.
+     */
+    private void wakeup() {
+        if (wakeupPending.compareAndSet(false, true)) {
+            NioMetrics.WAKEUPS.increment();
+            selector.wakeup();
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Loop principale del reactor.
+     */
+    @Override
+    public void run() {
+        System.out.println("▶ Reactor #" + id + " avviato");
+
+        try {
+            while (running) {
+                selector.select(draining ? DRAIN_POLL_MS : 1000);  // 1 secondo = un tick della ruota
+                loopTime = System.currentTimeMillis();
+
+                // Da qui in poi una nuova segnalazione richiede una nuova wakeup
+                wakeupPending.set(false);
+                NioMetrics.LOOP_ITERATIONS.increment();
+
+                registerPendingChannels();
+                processPendingWrites();
+
+                Set<SelectionKey> selectedKeys = selector.selectedKeys();
+                Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();  // IMPORTANTE: rimuovi dalla lista
+
+                    if (!key.isValid()) {
+                        continue;  // Chiave non più valida
+                    }
+
+                    try {
+                        if (key.isReadable()) {
+                            handleRead(key);
+                        }
+
+                        if (key.isValid() && key.isWritable()) {
+                            handleWrite(key);
+                        }
+
+                    } catch (IOException e) {
+                        AsyncLogger.warn("✗ Errore gestione evento: {}", e.getMessage());
+                        closeConnection(key);
+                    }
+                }
+
+                // Chiude le connessioni inattive oltre il timeout
+                if (idleTimers != null) {
+                    idleTimers.advance(loopTime);
+                }
+
+                if (draining) {
+                    updateDrainState();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("✗ Errore nel reactor #" + id + ": " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+
+        System.out.println("✓ Reactor #" + id + " terminato");
+    }
+
+    /**
+     * Registra sul Selector i channel assegnati dall'acceptor.
+     */
+    private void registerPendingChannels() {
+        SocketChannel clientChannel;
+
+        while ((clientChannel = pendingChannels.poll()) != null) {
+            if (draining) {
+                // Assegnata mentre il server si chiudeva
+                connectionCount.decrementAndGet();
+                try {
+                    clientChannel.close();
+                } catch (IOException e) {
+                    // Ignora
+                }
+                continue;
+            }
+
+            try {
+                // Configura il client channel come non-bloccante
+                clientChannel.configureBlocking(false);
+
+                // Crea l'attachment per questo client
+                ConnectionContext context = pipeline.open(clientChannel.socket().getInetAddress(),
+                                                          clientChannel.getRemoteAddress().toString());
+                ClientAttachment attachment = new ClientAttachment(
+                    clientChannel, context, bulkheads, requestHandler, bufferPool);
+
+                // Registra per OP_READ
+                context.getCommandHandler().setPushSubscriber(new CommandHandler.PushSubscriber() {
+                    @Override
+                    public void subscribe() {
+                        pushBroadcaster.subscribe(attachment, Reactor.this);
+                    }
+
+                    @Override
+                    public void unsubscribe() {
+                        pushBroadcaster.unsubscribe(attachment);
+                    }
+                });
+
+                SelectionKey key = clientChannel.register(selector, SelectionKey.OP_READ, attachment);
+                attachment.setSelectionKey(key);
+
+                if (idleTimers != null) {
+                    idleTimers.add(attachment, loopTime);
+                }
+
+                AsyncLogger.info("✓ Nuova connessione da: {} (reactor #{})", attachment.getClientAddress(), id);
+
+            } catch (Exception e) {
+                AsyncLogger.warn("✗ Errore registrazione connessione: {}", e.getMessage());
+                connectionCount.decrementAndGet();
+                try {
+                    clientChannel.close();
+                } catch (IOException ex) {
+                    // Ignora
+                }
+            }
+        }
+    }
+
+    /**
+     * Applica le richieste di scrittura dei worker.
+     * Prova subito a inviare: OP_WRITE serve solo se il socket è pieno.
+     */
+    private void processPendingWrites() {
+        ClientAttachment attachment;
+
+        while ((attachment = pendingWrites.poll()) != null) {
+            attachment.clearWritePending();
+
+            SelectionKey key = attachment.getSelectionKey();
+            if (key == null || !key.isValid()) {
+                continue;
+            }
+
+            try {
+                writeNow(key, attachment);
+
+            } catch (IOException e) {
+                AsyncLogger.warn("✗ Errore in scrittura: {}", e.getMessage());
+                closeConnection(key);
+            }
+        }
+    }
+
+    /**
+     * Invia le risposte accodate (solo thread del reactor).
+     */
+    private void writeNow(SelectionKey key, ClientAttachment attachment) throws IOException {
+        if (!attachment.flush()) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+        applyBackpressure(key, attachment);
+    }
+
+    /**
+     * Controlla i dati in uscita della connessione rispetto alle soglie.
+     * Un client che invia richieste ma non legge le risposte smette di essere
+     * letto finché non smaltisce l'arretrato, e viene chiuso se supera il limite.
+     */
+    private void applyBackpressure(SelectionKey key, ClientAttachment attachment) {
+        long pending = attachment.getPendingOutboundBytes();
+
+        if (pending > hardLimitBytes) {
+            AsyncLogger.warn("  Connessione oltre il limite di dati in uscita ({} byte): {}",
+                             pending, attachment.getClientAddress());
+            NioMetrics.HARD_LIMIT_DISCONNECTS.increment();
+            closeConnection(key);
+
+        } else if (!attachment.isReadPaused() && pending >= highWaterBytes) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            attachment.setReadPaused(true);
+            NioMetrics.HIGH_WATER_EVENTS.increment();
+
+        } else if (attachment.isReadPaused() && pending <= lowWaterBytes && !draining) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            attachment.setReadPaused(false);
+            NioMetrics.LOW_WATER_EVENTS.increment();
+        }
+    }
+
+    /**
+     * Gestisce evento OP_READ: dati disponibili per lettura.
+     * Legge al massimo readBudgetBytes per passata del selector: se il client
+     * ha ancora dati, il selector lo riproporrà al giro successivo, dopo
+     * aver servito le altre connessioni pronte.
+     */
+    private void handleRead(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ClientAttachment attachment = (ClientAttachment) key.attachment();
+        ConnectionContext context = attachment.getContext();
+
+        ByteBuffer buffer = readBuffer;
+        List<byte[]> frames = decodedFrames;
+        frames.clear();
+
+        int budget = readBudgetBytes;
+
+        while (budget > 0) {
+            buffer.clear();
+            if (budget < buffer.capacity()) {
+                buffer.limit(budget);
+            }
+
+            int bytesRead = channel.read(buffer);
+
+            if (bytesRead == -1) {
+                // Client ha chiuso la connessione
+                AsyncLogger.debug("  Client ha chiuso la connessione: {}", attachment.getClientAddress());
+                closeConnection(key);
+                return;
+            }
+
+            if (bytesRead == 0) {
+                break;  // Nessun altro dato disponibile
+            }
+
+            budget -= bytesRead;
+            attachment.touch(loopTime);  // O(1), nessuna allocazione
+
+            // Estrae i messaggi completi (terminati da \n) direttamente dai byte.
+            // Un preambolo fissa il protocollo prima che i messaggi vengano accodati.
+            buffer.flip();
+            byte[] prefaceAck = context.decode(buffer, frames);
+            if (prefaceAck != null) {
+                attachment.queueMessage(ByteBuffer.wrap(prefaceAck));
+                requestWrite(attachment);
+            }
+
+            if (bytesRead < buffer.capacity()) {
+                break;  // Socket svuotato, inutile un'altra read
+            }
+
+            // Lettura piena: passa a un buffer più grande per le prossime
+            if (buffer.capacity() < BufferPool.maxBufferSize() && buffer.capacity() < readBudgetBytes) {
+                bufferPool.release(buffer);
+                readBuffer = bufferPool.acquire(buffer.capacity() + 1);
+                buffer = readBuffer;
+            }
+        }
+
+        // Accoda i messaggi nella mailbox seriale della connessione:
+        // verranno elaborati in ordine da un worker thread
+        // (le operazioni inline, con la mailbox vuota, vengono eseguite subito)
+        boolean respondedDirectly = false;
+        long admittedNanos = System.nanoTime();
+
+        for (byte[] frame : frames) {
+            OperationClass operationClass = context.operationClass(frame);
+            byte[] rejection = context.checkRateLimit(frame);
+
+            if (rejection == null && inlineOperations != null && attachment.getMailbox().isIdle()
+                    && context.runsInline(frame, inlineOperations)) {
+                // Operazione economica e nessuna risposta in sospeso: eseguita qui,
+                // senza il passaggio al worker e ritorno
+                attachment.queueMessage(ByteBuffer.wrap(context.process(frame)));
+                NioMetrics.INLINE_RESPONSES.increment();
+                respondedDirectly = true;
+                continue;
+            }
+
+            byte[] placeholder = RATE_LIMITED;
+            if (rejection == null && !bulkheads.admission(operationClass).tryAdmit()) {
+                // Coda della classe piena: "server occupato" senza accodare la richiesta
+                rejection = context.serverBusy();
+                placeholder = SERVER_BUSY;
+            }
+
+            if (rejection == null) {
+                attachment.getMailbox().submit(frame, operationClass, admittedNanos);
+            } else if (attachment.getMailbox().isIdle()) {
+                // Nessuna risposta in sospeso: il rifiuto parte subito, senza worker
+                attachment.queueMessage(ByteBuffer.wrap(rejection));
+                respondedDirectly = true;
+            } else {
+                // Il rifiuto deve seguire le risposte già in coda
+                attachment.getMailbox().submit(placeholder, operationClass, admittedNanos);
+            }
+        }
+
+        if (respondedDirectly) {
+            // Siamo nel thread del reactor: si scrive subito, senza wakeup del Selector
+            writeNow(key, attachment);
+        }
+    }
+
+    /**
+     * Elabora una richiesta (eseguito da un worker, in ordine per connessione).
+     * Le richieste rimaste in coda oltre la scadenza non vengono eseguite.
+     */
+    private void processRequest(ClientAttachment attachment, byte[] frame,
+                                OperationClass operationClass, long admittedNanos) {
+        ConnectionContext context = attachment.getContext();
+        byte[] response;
+        if (frame == RATE_LIMITED) {
+            response = context.rateLimited();
+        } else if (frame == SERVER_BUSY || !bulkheads.admission(operationClass).start(admittedNanos)) {
+            response = context.serverBusy();
+        } else {
+            response = context.process(frame);
+        }
+
+        // Accoda la risposta già codificata (framing compreso) per l'invio
+        attachment.queueMessage(ByteBuffer.wrap(response));
+
+        NioMetrics.RESPONSES.increment();
+
+        // Segnala al reactor che ci sono dati da inviare
+        requestWrite(attachment);
+    }
+
+    /**
+     * Richiesta rimasta nella mailbox e mai eseguita (connessione chiusa, pool pieno o in chiusura).
+     * I segnaposto non hanno un'ammissione da liberare.
+     */
+    private void rejectRequest(ClientAttachment attachment, byte[] frame, OperationClass operationClass) {
+        ConnectionContext context = attachment.getContext();
+        byte[] response;
+        if (frame == RATE_LIMITED) {
+            response = context.rateLimited();
+        } else {
+            if (frame != SERVER_BUSY) {
+                bulkheads.admission(operationClass).cancel();
+            }
+            response = context.serverBusy();
+        }
+
+        SelectionKey key = attachment.getSelectionKey();
+        if (key != null && key.isValid()) {
+            attachment.queueMessage(ByteBuffer.wrap(response));
+            requestWrite(attachment);
+        }
+    }
+
+    /**
+     * Gestisce evento OP_WRITE: pronto per scrivere.
+     * Invia in un colpo solo tutte le risposte accumulate; se il socket è pieno
+     * mantiene OP_WRITE e riprende al prossimo evento, senza attese attive.
+     */
+    private void handleWrite(SelectionKey key) throws IOException {
+        ClientAttachment attachment = (ClientAttachment) key.attachment();
+
+        if (attachment.flush()) {
+            // Coda svuotata, rimuovi interesse per OP_WRITE.
+            // Le risposte accodate dopo arrivano di nuovo tramite requestWrite().
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+
+        // Socket pieno: resta l'interesse per OP_WRITE
+        applyBackpressure(key, attachment);
+    }
+
+    /**
+     * Chiamato dalla TimerWheel per una connessione silenziosa oltre il timeout.
+     */
+    private void onIdleTimeout(TimerWheel.Entry entry) {
+        ClientAttachment attachment = (ClientAttachment) entry;
+        AsyncLogger.info("  Connessione inattiva: {}", attachment.getClientAddress());
+        closeConnection(attachment.getSelectionKey());
+    }
+
+    /**
+     * Chiude una connessione client.
+     */
+    private void closeConnection(SelectionKey key) {
+        ClientAttachment attachment = (ClientAttachment) key.attachment();
+
+        if (attachment != null) {
+            if (idleTimers != null) {
+                idleTimers.remove(attachment);
+            }
+            pushBroadcaster.unsubscribe(attachment);
+
+            attachment.close();
+            attachment.releaseBuffers();
+            connectionCount.decrementAndGet();
+        }
+
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Ignora
+        }
+
+        key.cancel();
+    }
+
+    /**
+     * Avvia la chiusura ordinata: il reactor smette di leggere dai client ma
+     * continua a inviare le risposte delle richieste già ricevute.
+     * L'avanzamento si controlla con isRequestsDrained() e isOutboundDrained().
+     */
+    public void beginDrain() {
+        draining = true;
+        selector.wakeup();
+    }
+
+    /**
+     * true quando tutte le richieste già ricevute sono state elaborate.
+     */
+    public boolean isRequestsDrained() {
+        return requestsDrained;
+    }
+
+    /**
+     * true quando, in più, tutte le risposte sono state scritte sui socket.
+     */
+    public boolean isOutboundDrained() {
+        return outboundDrained;
+    }
+
+    /**
+     * Durante la chiusura ordinata: toglie OP_READ a tutte le connessioni
+     * (una volta) e verifica se restano richieste o risposte in sospeso.
+     */
+    private void updateDrainState() {
+        boolean requestsIdle = true;
+        boolean outboundIdle = true;
+
+        for (SelectionKey key : selector.keys()) {
+            if (!key.isValid() || !(key.attachment() instanceof ClientAttachment)) {
+                continue;
+            }
+            ClientAttachment attachment = (ClientAttachment) key.attachment();
+
+            if (!readsStopped) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            if (!attachment.getMailbox().isIdle()) {
+                requestsIdle = false;
+            }
+            if (attachment.getPendingOutboundBytes() > 0) {
+                outboundIdle = false;
+            }
+        }
+
+        readsStopped = true;
+        requestsDrained = requestsIdle;
+        outboundDrained = requestsIdle && outboundIdle;
+    }
+
+    /**
+     * Ferma il reactor. Le connessioni vengono chiuse dal suo thread.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();  // Sempre, anche se una wakeup è già in corso
+    }
+
+    /**
+     * Attende la terminazione del thread del reactor.
+     */
+    public void awaitTermination(long timeoutMs) throws InterruptedException {
+        if (thread != null) {
+            thread.join(timeoutMs);
+        }
+    }
+
+    /**
+     * Chiude tutte le connessioni e il Selector.
+     */
+    private void closeAll() {
+        if (!selector.isOpen()) {
+            return;
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+
+        SocketChannel pending;
+        while ((pending = pendingChannels.poll()) != null) {
+            try {
+                pending.close();
+            } catch (IOException e) {
+                // Ignora
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Ignora
+        }
+
+        bufferPool.release(readBuffer);
+        readBuffer = null;
+    }
+}
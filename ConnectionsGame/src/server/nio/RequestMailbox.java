@@ -0,0 +1,194 @@
+package server.nio;
+
+import server.admission.OperationClass;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mailbox seriale di una connessione (stile attore).
+ * Le richieste di una stessa connessione vengono eseguite in ordine e una
+ * alla volta, mentre connessioni diverse procedono in parallelo sul pool.
+ * Al più un task per mailbox è in coda o in esecuzione, sul pool della
+ * classe della prima richiesta in attesa: un turno elabora solo richieste
+ * di quella classe, la prima di un'altra classe passa al suo pool.
+ *
+ * Alla chiusura della connessione l'azione finale (logout) viene eseguita
+ * dopo la richiesta eventualmente in corso, mai in parallelo: un login che
+ * termina dopo la disconnessione non lascia l'utente loggato senza
+ * connessione. Le richieste non ancora iniziate vengono scartate.
+ */
+public class RequestMailbox implements Runnable {
+
+    /**
+     * Elabora una richiesta della connessione.
+     */
+    public interface Handler {
+        void handle(ClientAttachment attachment, byte[] frame, OperationClass operationClass, long admittedNanos);
+
+        /**
+         * Richiesta in attesa che non verrà eseguita: libera l'ammissione e,
+         * se la connessione è ancora aperta, risponde "server occupato".
+         */
+        void reject(ClientAttachment attachment, byte[] frame, OperationClass operationClass);
+    }
+
+    /**
+     * Richiesta in attesa e istante di ammissione (per la scadenza in coda).
+     */
+    private static final class Pending {
+        final byte[] frame;
+        final OperationClass operationClass;
+        final long admittedNanos;
+
+        Pending(byte[] frame, OperationClass operationClass, long admittedNanos) {
+            this.frame = frame;
+            this.operationClass = operationClass;
+            this.admittedNanos = admittedNanos;
+        }
+    }
+
+    // Richieste elaborate per ogni turno, poi si cede il worker alle altre connessioni
+    private static final int MAX_BATCH = 16;
+
+    private final ClientAttachment attachment;
+    private final Bulkheads bulkheads;
+    private final Handler handler;
+
+    // Richieste in attesa (più produttori possibili, un solo consumatore alla volta)
+    private final Queue<Pending> pending;
+
+    // true se un task di questa mailbox è già in coda o in esecuzione nel pool
+    private final AtomicBoolean scheduled;
+
+    // Classe del turno pianificato (scritta prima di execute(), letta dal task)
+    private OperationClass turnClass;
+
+    // Connessione chiusa: azione finale da eseguire una sola volta (scritta prima di closed)
+    private volatile boolean closed;
+    private final AtomicReference<Runnable> closeAction;
+
+    public RequestMailbox(ClientAttachment attachment, Bulkheads bulkheads, Handler handler) {
+        this.attachment = attachment;
+        this.bulkheads = bulkheads;
+        this.handler = handler;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+        this.closeAction = new AtomicReference<>();
+    }
+
+    /**
+     * Accoda una richiesta e, se la mailbox è inattiva, la pianifica sul pool.
+     * @param admittedNanos System.nanoTime() dell'ammissione in coda
+     */
+    public void submit(byte[] frame, OperationClass operationClass, long admittedNanos) {
+        pending.offer(new Pending(frame, operationClass, admittedNanos));
+        schedule();
+    }
+
+    /**
+     * Verifica se ci sono richieste in attesa o in esecuzione.
+     */
+    public boolean isIdle() {
+        return !scheduled.get() && pending.isEmpty();
+    }
+
+    /**
+     * Connessione chiusa: action (il logout) viene eseguita appena nessun
+     * turno è in corso, dal thread che lo rileva.
+     */
+    public void close(Runnable action) {
+        closeAction.set(action);
+        closed = true;
+        schedule();
+    }
+
+    private void schedule() {
+        while (scheduled.compareAndSet(false, true)) {
+            if (closed) {
+                finish();
+                scheduled.set(false);
+                return;
+            }
+
+            Pending head = pending.peek();
+            if (head == null) {
+                // Già elaborata dal turno precedente: ricontrolla dopo aver rilasciato
+                scheduled.set(false);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            turnClass = head.operationClass;
+            try {
+                bulkheads.executor(turnClass).execute(this);
+            } catch (RejectedExecutionException e) {
+                // Pool pieno o in chiusura: le richieste in attesa non verranno
+                // eseguite, si liberano le ammissioni e si risponde "server occupato"
+                reject();
+                scheduled.set(false);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            return;
+        }
+    }
+
+    /**
+     * Chiusura senza turni in corso: scarta le richieste rimaste ed esegue
+     * l'azione finale (una volta sola, anche se più thread arrivano qui).
+     */
+    private void finish() {
+        reject();
+
+        Runnable action = closeAction.getAndSet(null);
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    /**
+     * Scarta le richieste in attesa (con scheduled acquisito, nessun turno in corso).
+     */
+    private void reject() {
+        Pending request;
+        while ((request = pending.poll()) != null) {
+            handler.reject(attachment, request.frame, request.operationClass);
+        }
+    }
+
+    /**
+     * Elabora in ordine un lotto di richieste.
+     * Il passaggio di scheduled tra un turno e l'altro garantisce che ogni
+     * turno veda le modifiche del precedente (es. loggedUsername).
+     */
+    @Override
+    public void run() {
+        try {
+            OperationClass operationClass = turnClass;
+            for (int i = 0; i < MAX_BATCH && !closed; i++) {
+                // Solo questo task consuma la coda: peek e poll vedono la stessa richiesta
+                Pending request = pending.peek();
+                if (request == null || request.operationClass != operationClass) {
+                    break;
+                }
+                pending.poll();
+                handler.handle(attachment, request.frame, operationClass, request.admittedNanos);
+            }
+        } finally {
+            scheduled.set(false);
+
+            // Nuove richieste arrivate durante il turno, o chiusura da completare
+            if (!pending.isEmpty() || closed) {
+                schedule();
+            }
+        }
+    }
+}
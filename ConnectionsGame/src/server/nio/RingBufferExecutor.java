@@ -0,0 +1,360 @@
+package server.nio;
+
+import server.log.AsyncLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool di worker con passaggio dei task su un ring buffer preallocato
+ * (stile Disruptor), alternativo al ThreadPoolExecutor.
+ *
+ * Produttori (reactor e worker che ripianificano una mailbox) e consumatori
+ * reclamano le posizioni con una CAS sul proprio contatore di sequenza,
+ * senza lock né allocazioni per task. Ogni slot ha una sequenza che dice a
+ * chi tocca: pos = libero per il produttore della posizione pos,
+ * pos + 1 = pubblicato per il consumatore. Un worker reclama in un colpo
+ * solo fino a batchSize task pubblicati consecutivi, quindi una sola
+ * sveglia serve più task.
+ *
+ * Con il ring pieno execute() lancia RejectedExecutionException, come il
+ * pool dei worker NIO (vedi AdmissionControl.newWorkerPool): il task non
+ * viene mai eseguito dal chiamante, che è di solito il thread del reactor.
+ * Dopo shutdown() i task vengono rifiutati e i worker terminano dopo aver
+ * svuotato il ring.
+ */
+public class RingBufferExecutor extends AbstractExecutorService {
+
+    /**
+     * Attesa di un worker con il ring vuoto.
+     */
+    public enum WaitStrategy {
+        // Lock e condition: nessun consumo di CPU, latenza di una sveglia
+        BLOCKING,
+
+        // Breve attesa attiva, poi Thread.yield(): per worker non oltre i core liberi
+        YIELDING,
+
+        // Attesa attiva continua: latenza minima, un core per worker
+        BUSY_SPIN;
+
+        /**
+         * Strategia dal nome in configurazione (blocking | yielding | busy-spin).
+         */
+        public static WaitStrategy of(String name) {
+            switch (name) {
+                case "yielding":
+                    return YIELDING;
+                case "busy-spin":
+                    return BUSY_SPIN;
+                default:
+                    return BLOCKING;
+            }
+        }
+    }
+
+    // Tentativi di attesa attiva prima di cedere il core (YIELDING)
+    private static final int SPIN_TRIES = 100;
+
+    private final Runnable[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final int batchSize;
+    private final WaitStrategy waitStrategy;
+
+    // Prossima posizione da reclamare per i produttori e per i consumatori
+    private final AtomicLong tail;
+    private final AtomicLong head;
+
+    // BLOCKING: worker in attesa, svegliati dai produttori solo se ce ne sono.
+    // Al più una sveglia alla volta (come Reactor.wakeup()): il worker svegliato
+    // prende un lotto e, se resta lavoro, sveglia a sua volta il successivo.
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final AtomicInteger sleepers;
+    private final AtomicBoolean wakeupPending;
+
+    // Produttori tra il controllo di shutdown e la pubblicazione: i worker
+    // non terminano finché non hanno finito
+    private final AtomicInteger activeProducers;
+
+    private final Thread[] workers;
+    private final CountDownLatch terminated;
+    private volatile boolean shutdown;
+
+    /**
+     * @param threadName prefisso dei nomi dei thread (es. "nio-gameplay" -> nio-gameplay-0)
+     * @param capacity posizioni del ring, arrotondate alla potenza di 2 successiva
+     * @param batchSize task reclamati al più da un worker per volta
+     * @throws IllegalArgumentException se capacity non è positiva
+     */
+    public RingBufferExecutor(String threadName, int threads, int capacity,
+                              WaitStrategy waitStrategy, int batchSize) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacità del ring non valida: " + capacity);
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+
+        this.slots = new Runnable[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.batchSize = Math.max(1, batchSize);
+        this.waitStrategy = waitStrategy;
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+        this.lock = new ReentrantLock();
+        this.notEmpty = lock.newCondition();
+        this.sleepers = new AtomicInteger();
+        this.wakeupPending = new AtomicBoolean(false);
+        this.activeProducers = new AtomicInteger();
+        this.terminated = new CountDownLatch(threads);
+
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(this::runWorker, threadName + "-" + i);
+            workers[i].start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        activeProducers.incrementAndGet();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor chiuso");
+            }
+            if (!publish(task)) {
+                throw new RejectedExecutionException("Ring pieno");
+            }
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+
+        wakeWorker();
+    }
+
+    /**
+     * BLOCKING: sveglia un worker in attesa, se non ce n'è già uno in arrivo.
+     */
+    private void wakeWorker() {
+        if (waitStrategy == WaitStrategy.BLOCKING && sleepers.get() > 0
+                && wakeupPending.compareAndSet(false, true)) {
+            lock.lock();
+            try {
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Reclama una posizione e pubblica il task.
+     * @return false se il ring è pieno
+     */
+    private boolean publish(Runnable task) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[index] = task;
+                    sequences.set(index, pos + 1);  // Pubblica (scrittura volatile dopo lo slot)
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;  // Slot non ancora liberato dal giro precedente
+            } else {
+                pos = tail.get();  // Posizione presa da un altro produttore
+            }
+        }
+    }
+
+    /**
+     * Reclama fino a batchSize task pubblicati consecutivi.
+     * @return numero di task copiati in batch (0 = ring vuoto)
+     */
+    private int take(Runnable[] batch) {
+        long pos = head.get();
+        while (true) {
+            int count = 0;
+            while (count < batchSize && sequences.get((int) ((pos + count) & mask)) == pos + count + 1) {
+                count++;
+            }
+
+            if (count == 0) {
+                if (sequences.get((int) (pos & mask)) < pos + 1) {
+                    return 0;  // Niente di pubblicato in testa
+                }
+                pos = head.get();  // Testa consumata da un altro worker
+                continue;
+            }
+
+            if (head.compareAndSet(pos, pos + count)) {
+                for (int i = 0; i < count; i++) {
+                    int index = (int) ((pos + i) & mask);
+                    batch[i] = slots[index];
+                    slots[index] = null;
+                    sequences.set(index, pos + i + slots.length);  // Libera per il giro successivo
+                }
+                return count;
+            }
+            pos = head.get();
+        }
+    }
+
+    private boolean isEmpty() {
+        long pos = head.get();
+        return sequences.get((int) (pos & mask)) < pos + 1;
+    }
+
+    private void runWorker() {
+        Runnable[] batch = new Runnable[batchSize];
+        int idleRounds = 0;
+
+        try {
+            while (true) {
+                int count = take(batch);
+
+                if (count == 0) {
+                    if (shutdown && activeProducers.get() == 0 && isEmpty()) {
+                        return;
+                    }
+                    idleRounds = await(idleRounds);
+                    continue;
+                }
+                idleRounds = 0;
+
+                if (!isEmpty()) {
+                    wakeWorker();  // Resta lavoro oltre il lotto: lo prende un altro worker
+                }
+
+                for (int i = 0; i < count; i++) {
+                    try {
+                        batch[i].run();
+                    } catch (RuntimeException e) {
+                        AsyncLogger.error("[ERR] Errore in un task di {}", Thread.currentThread().getName(), e);
+                    } finally {
+                        batch[i] = null;
+                    }
+                }
+            }
+        } finally {
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Attesa con il ring vuoto, secondo la strategia.
+     * @return tentativi a vuoto consecutivi
+     */
+    private int await(int idleRounds) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                return idleRounds;
+
+            case YIELDING:
+                if (idleRounds < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                    return idleRounds + 1;
+                }
+                Thread.yield();
+                return idleRounds;
+
+            default:
+                sleepers.incrementAndGet();
+                lock.lock();
+                try {
+                    // Ricontrolla dopo essersi annunciato: un produttore che pubblica
+                    // da qui in poi vede sleepers > 0 e segnala. La sveglia in arrivo
+                    // si azzera prima di ogni controllo, così non resta mai impostata
+                    // con tutti i worker in attesa.
+                    while (true) {
+                        wakeupPending.set(false);
+                        if (!isEmpty() || shutdown) {
+                            break;
+                        }
+                        notEmpty.awaitUninterruptibly();
+                    }
+                } finally {
+                    lock.unlock();
+                    sleepers.decrementAndGet();
+                }
+                return 0;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Chiusura immediata: i task non ancora reclamati non vengono eseguiti.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> remaining = new ArrayList<>();
+        Runnable[] batch = new Runnable[batchSize];
+        int count;
+        while ((count = take(batch)) > 0) {
+            for (int i = 0; i < count; i++) {
+                remaining.add(batch[i]);
+            }
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        return remaining;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * Task pubblicati e non ancora reclamati (approssimato).
+     */
+    public int getPending() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,150 @@
+package server.nio;
+
+/**
+ * Hashed timer wheel per le scadenze di inattività delle connessioni.
+ * Appartiene a un reactor e viene usata solo dal suo thread, quindi non ha lock.
+ *
+ * Le voci sono nodi intrusivi di una lista doppia (nessuna allocazione) e
+ * "toccare" una connessione aggiorna solo il suo lastActivity: la voce viene
+ * spostata nello slot giusto solo quando il suo slot scade, se nel frattempo
+ * la connessione è stata attiva.
+ */
+public class TimerWheel {
+
+    /**
+     * Voce della ruota (estesa dagli oggetti da monitorare).
+     */
+    public abstract static class Entry {
+        private Entry prev;
+        private Entry next;
+        private int slot = -1;  // -1 = non in ruota
+        private long lastActivity;
+
+        /**
+         * Registra attività: costo O(1), nessuna allocazione.
+         */
+        public void touch(long now) {
+            lastActivity = now;
+        }
+
+        public long getLastActivity() {
+            return lastActivity;
+        }
+    }
+
+    /**
+     * Notificato per ogni voce scaduta (già rimossa dalla ruota).
+     */
+    public interface ExpiryListener {
+        void onExpired(Entry entry);
+    }
+
+    private final Entry[] slots;
+    private final int mask;
+    private final long tickMs;
+    private final long timeoutMs;
+    private final ExpiryListener listener;
+
+    // Ultimo tick elaborato
+    private long currentTick;
+
+    /**
+     * @param wheelSize numero di slot (arrotondato alla potenza di 2 successiva)
+     * @param tickMs durata di uno slot in millisecondi
+     * @param timeoutMs inattività dopo cui una voce scade
+     */
+    public TimerWheel(int wheelSize, long tickMs, long timeoutMs, long now, ExpiryListener listener) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.slots = new Entry[size];
+        this.mask = size - 1;
+        this.tickMs = tickMs;
+        this.timeoutMs = timeoutMs;
+        this.listener = listener;
+        this.currentTick = now / tickMs;
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    /**
+     * Inserisce una voce con attività al tempo now.
+     */
+    public void add(Entry entry, long now) {
+        entry.touch(now);
+        link(entry, now + timeoutMs);
+    }
+
+    /**
+     * Rimuove una voce (es. connessione chiusa).
+     */
+    public void remove(Entry entry) {
+        if (entry.slot < 0) {
+            return;
+        }
+
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.prev = null;
+        entry.next = null;
+        entry.slot = -1;
+    }
+
+    /**
+     * Fa avanzare la ruota fino a now, notificando le voci scadute.
+     */
+    public void advance(long now) {
+        long targetTick = now / tickMs;
+
+        // Dopo una lunga pausa basta un giro completo della ruota
+        if (targetTick - currentTick > slots.length) {
+            currentTick = targetTick - slots.length;
+        }
+
+        while (currentTick < targetTick) {
+            currentTick++;
+            expireSlot((int) (currentTick & mask), now);
+        }
+    }
+
+    private void expireSlot(int slot, long now) {
+        Entry entry = slots[slot];
+        slots[slot] = null;
+
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.prev = null;
+            entry.next = null;
+            entry.slot = -1;
+
+            long deadline = entry.lastActivity + timeoutMs;
+            if (deadline <= now) {
+                listener.onExpired(entry);
+            } else {
+                link(entry, deadline);  // Attiva nel frattempo: rinvia
+            }
+
+            entry = next;
+        }
+    }
+
+    private void link(Entry entry, long deadline) {
+        long deadlineTick = Math.max(deadline / tickMs, currentTick + 1);
+        int slot = (int) (deadlineTick & mask);
+
+        entry.slot = slot;
+        entry.prev = null;
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        slots[slot] = entry;
+    }
+}
@@ -0,0 +1,265 @@
+package server.notification;
+
+import com.google.gson.Gson;
+import server.manager.ConfigManager;
+import server.manager.GameEventListener;
+import server.manager.GameManager;
+import server.model.Game;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Invia le notifiche UDP di inizio e fine partita ai giocatori loggati.
+ *
+ * Il DatagramChannel è non-bloccante e guidato da un piccolo reactor con un
+ * Selector proprio (usato da entrambi i server). GameManager si limita ad
+ * accodare l'evento: ogni datagram viene codificato una sola volta e inviato
+ * a tutti gli endpoint come vista duplicate() dello stesso buffer.
+ * Gli invii sono divisi in lotti con una breve pausa tra l'uno e l'altro,
+ * per non riempire i buffer del sistema e dei client (UDP scarta i pacchetti
+ * in eccesso); se il socket è pieno si attende OP_WRITE.
+ */
+public class UdpNotifier implements GameEventListener, Runnable {
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Un evento da inviare a un insieme fisso di destinatari.
+     */
+    private static class Broadcast {
+        final ByteBuffer payload;
+        final InetSocketAddress[] targets;
+        int next;
+
+        Broadcast(ByteBuffer payload, InetSocketAddress[] targets) {
+            this.payload = payload;
+            this.targets = targets;
+            this.next = 0;
+        }
+    }
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final int batchSize;
+    private final long batchPauseMs;
+
+    // Endpoint UDP dichiarati al login, per username
+    private final ConcurrentHashMap<String, InetSocketAddress> endpoints;
+
+    // Eventi in attesa di invio e evento in corso (solo thread del notifier)
+    private final Queue<Broadcast> broadcasts;
+    private final AtomicBoolean wakeupPending;
+    private Broadcast current;
+    private long nextBatchTime;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param port porta locale da cui partono le notifiche
+     * @param batchSize datagram inviati per lotto
+     * @param batchPauseMs pausa tra un lotto e il successivo
+     */
+    public UdpNotifier(int port, int batchSize, long batchPauseMs) throws IOException {
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.bind(new InetSocketAddress(port));
+
+        this.selector = Selector.open();
+        this.key = channel.register(selector, 0);
+
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMs = Math.max(0, batchPauseMs);
+        this.endpoints = new ConcurrentHashMap<>();
+        this.broadcasts = new ConcurrentLinkedQueue<>();
+        this.wakeupPending = new AtomicBoolean(false);
+    }
+
+    /**
+     * Crea e avvia il notifier sulla porta udp.port e lo registra sul GameManager.
+     * @return il notifier, o null se la porta non è disponibile (notifiche disattivate)
+     */
+    public static UdpNotifier startFor(GameManager gameManager) {
+        ConfigManager config = ConfigManager.getInstance();
+        try {
+            UdpNotifier notifier = new UdpNotifier(config.getUdpPort(),
+                config.getUdpBatchSize(), config.getUdpBatchPauseMs());
+            notifier.start();
+            gameManager.addGameEventListener(notifier);
+            return notifier;
+        } catch (IOException e) {
+            System.err.println("[ERR] Notifiche UDP disattivate: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "udp-notifier");
+        thread.start();
+        System.out.println("[OK] Notifiche UDP attive sulla porta " + channel.socket().getLocalPort());
+    }
+
+    /**
+     * Registra l'endpoint a cui inviare le notifiche per un utente.
+     */
+    public void registerEndpoint(String username, InetSocketAddress address) {
+        endpoints.put(username, address);
+    }
+
+    public void unregisterEndpoint(String username) {
+        endpoints.remove(username);
+    }
+
+    // ==================== EVENTI (thread del chiamante) ====================
+
+    @Override
+    public void onGameStarted(Game game) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", "gameStarted");
+        event.put("gameId", game.getGameId());
+        event.put("remainingTime", game.getRemainingTime());
+        event.put("message", "Nuova partita #" + game.getGameId() + " iniziata");
+        broadcast(event);
+    }
+
+    @Override
+    public void onGameEnded(Game game, GameManager.GameStats finalStats) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("type", "gameEnded");
+        event.put("gameId", game.getGameId());
+        if (finalStats != null) {
+            event.put("totalPlayers", finalStats.totalPlayers);
+            event.put("finishedPlayers", finalStats.finishedPlayers);
+            event.put("winners", finalStats.winners);
+        }
+        event.put("message", "Partita #" + game.getGameId() + " terminata");
+        broadcast(event);
+    }
+
+    /**
+     * Codifica l'evento una volta e lo accoda per tutti gli endpoint attuali.
+     */
+    private void broadcast(Map<String, Object> event) {
+        if (!running || endpoints.isEmpty()) {
+            return;
+        }
+
+        byte[] bytes = GSON.toJson(event).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        InetSocketAddress[] targets = endpoints.values().toArray(new InetSocketAddress[0]);
+
+        broadcasts.offer(new Broadcast(payload, targets));
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    // ==================== LOOP DEL NOTIFIER ====================
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                long timeout = 0;  // 0 = attesa senza limite
+                boolean hasWork = current != null || !broadcasts.isEmpty();
+
+                // Lavoro in sospeso e socket libero: invia appena finita la pausa
+                if (hasWork && key.interestOps() == 0) {
+                    long wait = nextBatchTime - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        sendBatch();
+                        continue;
+                    }
+                    timeout = wait;
+                }
+
+                selector.select(timeout);
+                wakeupPending.set(false);
+
+                // Socket di nuovo scrivibile dopo un buffer pieno
+                if (!selector.selectedKeys().isEmpty()) {
+                    selector.selectedKeys().clear();
+                    sendBatch();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ERR] Errore nel notifier UDP: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Invia al più batchSize datagram, senza mai bloccare.
+     */
+    private void sendBatch() {
+        if (current == null) {
+            current = broadcasts.poll();
+            if (current == null) {
+                return;
+            }
+        }
+
+        int sent = 0;
+        while (current.next < current.targets.length && sent < batchSize) {
+            InetSocketAddress target = current.targets[current.next];
+
+            try {
+                if (channel.send(current.payload.duplicate(), target) == 0) {
+                    key.interestOps(SelectionKey.OP_WRITE);  // Buffer pieno: riprova quando si libera
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("[ERR] Notifica UDP a " + target + " fallita: " + e.getMessage());
+            }
+
+            current.next++;
+            sent++;
+        }
+
+        key.interestOps(0);
+
+        if (current.next == current.targets.length) {
+            System.out.println("[OK] Notifica UDP inviata a " + current.targets.length + " giocatori");
+            current = broadcasts.poll();
+        }
+
+        // Lotto successivo dopo la pausa
+        nextBatchTime = System.currentTimeMillis() + batchPauseMs;
+    }
+
+    /**
+     * Ferma il notifier e chiude il channel.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            selector.close();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[ERR] Errore chiusura notifier UDP: " + e.getMessage());
+        }
+        System.out.println("[OK] Notifier UDP chiuso");
+    }
+}
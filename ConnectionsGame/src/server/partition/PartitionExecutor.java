@@ -0,0 +1,261 @@
+package server.partition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Thread proprietari delle partizioni (uno per core).
+ *
+ * Ogni utente appartiene a una partizione, scelta dall'hash dell'username:
+ * i dati della partizione (utenti, stati di gioco) vengono letti e
+ * modificati solo dal suo thread, quindi senza lock. Gli altri thread
+ * consegnano il lavoro con una coda lock-free (più produttori, un solo
+ * consumatore); il thread della partizione si sospende con park() quando
+ * la coda è vuota e viene risvegliato dal primo produttore.
+ *
+ * Un thread di partizione non deve mai attendere un'altra partizione
+ * (due partizioni in attesa l'una dell'altra si bloccherebbero):
+ * call() e collect() da un thread di partizione verso un'altra partizione
+ * lanciano IllegalStateException.
+ */
+public class PartitionExecutor {
+    private final Partition[] partitions;
+
+    public PartitionExecutor(int count) {
+        this.partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(i);
+        }
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+        System.out.println("[OK] " + count + " partizioni avviate (un thread proprietario ciascuna)");
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Partizione proprietaria di un utente.
+     * L'hash viene rimescolato, così la ripartizione resta uniforme anche
+     * sui nodi di un cluster, che ricevono solo gli utenti con hash % nodi fisso.
+     */
+    public int ownerOf(String username) {
+        int h = username.hashCode() * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % partitions.length;
+    }
+
+    /**
+     * true se il thread corrente è quello della partizione.
+     */
+    public boolean isOwnerThread(int partition) {
+        return Thread.currentThread() == partitions[partition].thread;
+    }
+
+    /**
+     * true se il thread corrente è il thread di una partizione qualsiasi.
+     */
+    public boolean isPartitionThread() {
+        return currentPartition() >= 0;
+    }
+
+    private int currentPartition() {
+        Thread current = Thread.currentThread();
+        for (Partition partition : partitions) {
+            if (partition.thread == current) {
+                return partition.id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Accoda un'operazione alla partizione senza attenderla
+     * (eseguita subito se il chiamante è già il thread della partizione).
+     */
+    public void execute(int partition, Runnable task) {
+        if (isOwnerThread(partition)) {
+            task.run();
+        } else {
+            partitions[partition].submit(task);
+        }
+    }
+
+    /**
+     * Esegue un'operazione nel thread della partizione proprietaria dell'utente e ne attende il risultato.
+     */
+    public <T> T call(String username, Supplier<T> task) {
+        return call(ownerOf(username), task);
+    }
+
+    /**
+     * Esegue un'operazione nel thread della partizione e ne attende il risultato.
+     * Le eccezioni dell'operazione vengono rilanciate al chiamante.
+     */
+    public <T> T call(int partition, Supplier<T> task) {
+        if (isOwnerThread(partition)) {
+            return task.get();
+        }
+        checkNotPartitionThread();
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        partitions[partition].submit(() -> complete(future, task));
+        return join(future);
+    }
+
+    /**
+     * Esegue un'operazione in ogni partizione, in parallelo, e raccoglie i
+     * risultati in ordine di partizione (es. snapshot da unire per le viste globali).
+     */
+    public <T> List<T> collect(IntFunction<T> task) {
+        checkNotPartitionThread();
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            int id = partition.id;
+            partition.submit(() -> complete(future, () -> task.apply(id)));
+            futures.add(future);
+        }
+
+        List<T> results = new ArrayList<>(partitions.length);
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    private void checkNotPartitionThread() {
+        int current = currentPartition();
+        if (current >= 0) {
+            throw new IllegalStateException("La partizione " + current + " non può attendere altre partizioni");
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<T> future, Supplier<T> task) {
+        try {
+            future.complete(task.get());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ferma i thread dopo aver eseguito le operazioni già accodate.
+     */
+    public void shutdown() {
+        for (Partition partition : partitions) {
+            partition.running = false;
+            LockSupport.unpark(partition.thread);
+        }
+        for (Partition partition : partitions) {
+            try {
+                partition.thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // Operazioni accodate mentre il thread terminava
+            Runnable task;
+            while ((task = partition.queue.poll()) != null) {
+                task.run();
+            }
+        }
+        System.out.println("[OK] Partizioni fermate");
+    }
+
+    /**
+     * Operazioni eseguite da ogni partizione (per verificare la ripartizione del carico).
+     */
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("partizioni: operazioni=[");
+        for (int i = 0; i < partitions.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(partitions[i].executed.get());
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Una partizione: coda di operazioni e thread che le esegue in ordine.
+     */
+    private static final class Partition implements Runnable {
+        private final int id;
+        private final Queue<Runnable> queue;
+        private final Thread thread;
+        private final AtomicLong executed;
+
+        // true mentre il thread è (o sta per essere) sospeso: il produttore deve svegliarlo
+        private volatile boolean sleeping;
+        private volatile boolean running;
+
+        Partition(int id) {
+            this.id = id;
+            this.queue = new ConcurrentLinkedQueue<>();
+            this.executed = new AtomicLong();
+            this.running = true;
+            this.thread = new Thread(this, "partition-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Runnable task) {
+            if (!running && !thread.isAlive()) {
+                task.run();  // Partizione già fermata: nessun altro thread ne usa i dati
+                return;
+            }
+            queue.offer(task);
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable task = queue.poll();
+
+                if (task == null) {
+                    if (!running) {
+                        return;  // Coda svuotata dopo shutdown()
+                    }
+                    // Ricontrolla la coda dopo aver segnalato la sospensione:
+                    // un'offer concorrente vede sleeping oppure viene trovata qui
+                    sleeping = true;
+                    if (queue.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    System.err.println("[ERR] Errore nella partizione " + id + ": " + e.getMessage());
+                }
+                executed.lazySet(executed.get() + 1);
+            }
+        }
+    }
+}
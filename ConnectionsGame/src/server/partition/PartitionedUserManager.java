@@ -0,0 +1,435 @@
+package server.partition;
+
+import server.log.AsyncLogger;
+import server.manager.UserManager;
+import server.model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * UserManager ripartito tra i thread di un PartitionExecutor.
+ *
+ * Ogni partizione possiede la propria fetta di utenti in strutture non
+ * sincronizzate, lette e modificate solo dal suo thread. Le operazioni su
+ * un utente vengono eseguite dalla partizione proprietaria (subito se il
+ * chiamante è già il suo thread); le viste globali (classifica, conteggi,
+ * snapshot per la persistenza) uniscono i risultati di tutte le partizioni.
+ *
+ * Le mappe di UserManager restano vuote: tutti i metodi pubblici sono ridefiniti qui.
+ */
+public class PartitionedUserManager extends UserManager {
+    private static final Comparator<ScoreSnapshot> BY_SCORE =
+            (s1, s2) -> Integer.compare(s2.score, s1.score);
+
+    private final PartitionExecutor partitions;
+    private final Slice[] slices;
+
+    // Serializza i cambi di credenziali e gli spostamenti di utenti, che
+    // possono coinvolgere due partizioni (operazioni rare, mai nei thread delle partizioni)
+    private final ReentrantLock moveLock;
+
+    /**
+     * Utenti di una partizione (accesso solo dal thread della partizione).
+     */
+    private static final class Slice {
+        final HashMap<String, User> users = new HashMap<>();
+        final HashSet<String> loggedInUsers = new HashSet<>();
+    }
+
+    /**
+     * Punteggio di un utente letto dal thread della sua partizione.
+     * La classifica si ordina su queste copie: il punteggio dell'utente può
+     * cambiare mentre il chiamante ordina, la copia no.
+     */
+    private static final class ScoreSnapshot {
+        final User user;
+        final String username;
+        final int score;
+
+        ScoreSnapshot(User user) {
+            this.user = user;
+            this.username = user.getUsername();
+            this.score = user.getTotalScore();
+        }
+    }
+
+    public PartitionedUserManager(PartitionExecutor partitions) {
+        this.partitions = partitions;
+        this.slices = new Slice[partitions.getPartitionCount()];
+        for (int i = 0; i < slices.length; i++) {
+            slices[i] = new Slice();
+        }
+        this.moveLock = new ReentrantLock();
+
+        System.out.println("[OK] Utenti ripartiti su " + slices.length + " partizioni");
+    }
+
+    private Slice sliceOf(String username) {
+        return slices[partitions.ownerOf(username)];
+    }
+
+    @Override
+    public boolean register(String username, String password) {
+        if (username == null || username.trim().isEmpty()) {
+            return false;
+        }
+        if (password == null || password.trim().isEmpty()) {
+            return false;
+        }
+
+        boolean registered = partitions.call(username,
+                () -> sliceOf(username).users.putIfAbsent(username, new User(username, password)) == null);
+
+        if (registered) {
+            AsyncLogger.info("[OK] Nuovo utente registrato: {}", username);
+        } else {
+            AsyncLogger.info("[ERR] Username gia esistente: {}", username);
+        }
+        return registered;
+    }
+
+    @Override
+    public boolean login(String username, String password) {
+        return partitions.call(username, () -> {
+            Slice slice = sliceOf(username);
+            User user = slice.users.get(username);
+
+            if (user == null) {
+                AsyncLogger.info("[ERR] Login fallito: utente non esistente - {}", username);
+                return false;
+            }
+
+            if (!user.getPassword().equals(password)) {
+                AsyncLogger.info("[ERR] Login fallito: password errata - {}", username);
+                return false;
+            }
+
+            user.setLoggedIn(true);
+            slice.loggedInUsers.add(username);
+
+            AsyncLogger.info("[OK] Login effettuato: {}", username);
+            return true;
+        });
+    }
+
+    /**
+     * Non attende la partizione: chiamato anche dal thread di I/O alla
+     * chiusura della connessione. Un login successivo dello stesso utente
+     * passa dalla stessa coda, quindi lo vede già eseguito.
+     */
+    @Override
+    public void logout(String username) {
+        partitions.execute(partitions.ownerOf(username), () -> {
+            Slice slice = sliceOf(username);
+            User user = slice.users.get(username);
+            if (user != null) {
+                user.setLoggedIn(false);
+                slice.loggedInUsers.remove(username);
+                AsyncLogger.info("[OK] Logout effettuato: {}", username);
+            }
+        });
+    }
+
+    @Override
+    public boolean isLoggedIn(String username) {
+        return partitions.call(username, () -> sliceOf(username).loggedInUsers.contains(username));
+    }
+
+    /**
+     * Cambio di credenziali. Se il nuovo username appartiene a un'altra
+     * partizione l'utente viene spostato in tre passi: verifica nella
+     * partizione di origine, inserimento nella nuova (fallisce se il nome è
+     * già usato), rimozione dall'origine. Fino all'ultimo passo il vecchio
+     * nome resta occupato, quindi nessuno può registrarlo nel frattempo.
+     */
+    @Override
+    public boolean updateCredentials(String oldUsername, String newUsername,
+                                     String oldPassword, String newPassword) {
+        moveLock.lock();
+        try {
+            boolean sameSlice = newUsername == null || newUsername.equals(oldUsername)
+                    || partitions.ownerOf(newUsername) == partitions.ownerOf(oldUsername);
+            if (sameSlice) {
+                return partitions.call(oldUsername,
+                        () -> updateInSlice(oldUsername, newUsername, oldPassword, newPassword));
+            }
+
+            // 1. Verifica nella partizione di origine
+            User user = partitions.call(oldUsername, () -> {
+                User found = sliceOf(oldUsername).users.get(oldUsername);
+                if (found == null) {
+                    AsyncLogger.info("[ERR] Update fallito: utente non esistente - {}", oldUsername);
+                    return null;
+                }
+                if (!found.getPassword().equals(oldPassword)) {
+                    AsyncLogger.info("[ERR] Update fallito: password errata - {}", oldUsername);
+                    return null;
+                }
+                return found;
+            });
+            if (user == null) {
+                return false;
+            }
+
+            // 2. Occupa il nuovo nome nella partizione di destinazione
+            boolean reserved = partitions.call(newUsername,
+                    () -> sliceOf(newUsername).users.putIfAbsent(newUsername, user) == null);
+            if (!reserved) {
+                AsyncLogger.info("[ERR] Update fallito: nuovo username gia esistente - {}", newUsername);
+                return false;
+            }
+
+            // 3. Libera il vecchio nome
+            boolean wasLoggedIn = partitions.call(oldUsername, () -> {
+                Slice slice = sliceOf(oldUsername);
+                slice.users.remove(oldUsername);
+                return slice.loggedInUsers.remove(oldUsername);
+            });
+
+            partitions.call(newUsername, () -> {
+                user.setUsername(newUsername);
+                if (wasLoggedIn) {
+                    sliceOf(newUsername).loggedInUsers.add(newUsername);
+                }
+                if (newPassword != null && !newPassword.equals(oldPassword)) {
+                    user.setPassword(newPassword);
+                    AsyncLogger.info("[OK] Password aggiornata per: {}", newUsername);
+                }
+                return null;
+            });
+
+            AsyncLogger.info("[OK] Username aggiornato: {} -> {} (cambio di partizione)", oldUsername, newUsername);
+            return true;
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    /**
+     * Cambio di credenziali che resta nella stessa partizione (thread della partizione).
+     */
+    private boolean updateInSlice(String oldUsername, String newUsername,
+                                  String oldPassword, String newPassword) {
+        Slice slice = sliceOf(oldUsername);
+        User user = slice.users.get(oldUsername);
+
+        if (user == null) {
+            AsyncLogger.info("[ERR] Update fallito: utente non esistente - {}", oldUsername);
+            return false;
+        }
+
+        if (!user.getPassword().equals(oldPassword)) {
+            AsyncLogger.info("[ERR] Update fallito: password errata - {}", oldUsername);
+            return false;
+        }
+
+        if (newUsername != null && !newUsername.equals(oldUsername)) {
+            if (slice.users.containsKey(newUsername)) {
+                AsyncLogger.info("[ERR] Update fallito: nuovo username gia esistente - {}", newUsername);
+                return false;
+            }
+
+            slice.users.remove(oldUsername);
+            user.setUsername(newUsername);
+            slice.users.put(newUsername, user);
+
+            if (slice.loggedInUsers.remove(oldUsername)) {
+                slice.loggedInUsers.add(newUsername);
+            }
+
+            AsyncLogger.info("[OK] Username aggiornato: {} -> {}", oldUsername, newUsername);
+        }
+
+        if (newPassword != null && !newPassword.equals(oldPassword)) {
+            user.setPassword(newPassword);
+            AsyncLogger.info("[OK] Password aggiornata per: {}", user.getUsername());
+        }
+
+        return true;
+    }
+
+    @Override
+    public User detachUser(String username, String password) {
+        moveLock.lock();
+        try {
+            return partitions.call(username, () -> {
+                Slice slice = sliceOf(username);
+                User user = slice.users.get(username);
+
+                if (user == null || !user.getPassword().equals(password)) {
+                    AsyncLogger.info("[ERR] Spostamento fallito: credenziali errate - {}", username);
+                    return null;
+                }
+                if (slice.loggedInUsers.contains(username)) {
+                    AsyncLogger.info("[ERR] Spostamento fallito: utente loggato - {}", username);
+                    return null;
+                }
+
+                slice.users.remove(username);
+                return user;
+            });
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean attachUser(User user) {
+        moveLock.lock();
+        try {
+            String username = user.getUsername();
+            return partitions.call(username, () -> {
+                user.setLoggedIn(false);
+                user.setCurrentGameId(-1);
+                return sliceOf(username).users.putIfAbsent(username, user) == null;
+            });
+        } finally {
+            moveLock.unlock();
+        }
+    }
+
+    @Override
+    public User getUser(String username) {
+        return partitions.call(username, () -> sliceOf(username).users.get(username));
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return partitions.call(username, () -> sliceOf(username).users.containsKey(username));
+    }
+
+    // Viste globali: uniscono le fette di tutte le partizioni
+
+    @Override
+    public int getTotalUsers() {
+        int total = 0;
+        for (int count : partitions.collect(p -> slices[p].users.size())) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public int getLoggedInCount() {
+        int total = 0;
+        for (int count : partitions.collect(p -> slices[p].loggedInUsers.size())) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public List<String> getLoggedInUsers() {
+        List<String> all = new ArrayList<>();
+        for (List<String> part : partitions.collect(p -> new ArrayList<>(slices[p].loggedInUsers))) {
+            all.addAll(part);
+        }
+        return all;
+    }
+
+    @Override
+    public List<User> getLeaderboard() {
+        List<ScoreSnapshot> all = new ArrayList<>();
+        for (List<ScoreSnapshot> part : partitions.collect(p -> snapshot(slices[p].users.values()))) {
+            all.addAll(part);
+        }
+        all.sort(BY_SCORE);
+        return usersOf(all);
+    }
+
+    /**
+     * Ogni partizione ordina i propri utenti e restituisce i suoi primi k:
+     * si uniscono solo k * partizioni utenti invece dell'intera classifica.
+     */
+    @Override
+    public List<User> getTopKUsers(int k) {
+        List<ScoreSnapshot> candidates = new ArrayList<>();
+        for (List<ScoreSnapshot> part : partitions.collect(p -> {
+            List<ScoreSnapshot> users = snapshot(slices[p].users.values());
+            users.sort(BY_SCORE);
+            return users.subList(0, Math.min(k, users.size()));
+        })) {
+            candidates.addAll(part);
+        }
+        candidates.sort(BY_SCORE);
+        return usersOf(candidates.subList(0, Math.min(k, candidates.size())));
+    }
+
+    /**
+     * Copie dei punteggi (dal thread della partizione).
+     */
+    private static List<ScoreSnapshot> snapshot(Collection<User> users) {
+        List<ScoreSnapshot> snapshots = new ArrayList<>(users.size());
+        for (User user : users) {
+            snapshots.add(new ScoreSnapshot(user));
+        }
+        return snapshots;
+    }
+
+    private static List<User> usersOf(List<ScoreSnapshot> snapshots) {
+        List<User> users = new ArrayList<>(snapshots.size());
+        for (ScoreSnapshot snapshot : snapshots) {
+            users.add(snapshot.user);
+        }
+        return users;
+    }
+
+    @Override
+    public int countUsersAbove(int score) {
+        int total = 0;
+        for (int count : partitions.collect(p -> {
+            int above = 0;
+            for (User user : slices[p].users.values()) {
+                if (user.getTotalScore() > score) {
+                    above++;
+                }
+            }
+            return above;
+        })) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        List<User> all = new ArrayList<>();
+        for (List<User> part : partitions.collect(p -> new ArrayList<>(slices[p].users.values()))) {
+            all.addAll(part);
+        }
+        return all;
+    }
+
+    @Override
+    public void loadUsers(Map<String, User> loadedUsers) {
+        List<Map<String, User>> byPartition = new ArrayList<>();
+        for (int i = 0; i < slices.length; i++) {
+            byPartition.add(new HashMap<>());
+        }
+        for (Map.Entry<String, User> entry : loadedUsers.entrySet()) {
+            byPartition.get(partitions.ownerOf(entry.getKey())).put(entry.getKey(), entry.getValue());
+        }
+
+        partitions.collect(p -> {
+            Slice slice = slices[p];
+            slice.users.clear();
+            slice.loggedInUsers.clear();
+            slice.users.putAll(byPartition.get(p));
+            for (User user : slice.users.values()) {
+                user.setLoggedIn(false);
+                user.setCurrentGameId(-1);
+            }
+            return null;
+        });
+
+        System.out.println("[OK] Caricati " + loadedUsers.size() + " utenti dalla persistenza (" +
+                         slices.length + " partizioni)");
+    }
+}
@@ -0,0 +1,390 @@
+package server.protocol;
+
+import server.manager.GameManager;
+import server.model.Game;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codec binario compatto, alternativo al JSON.
+ *
+ * Richiesta: [opcode][campi dell'operazione]
+ * Risposta:  [success (0/1)][message][data]
+ * Evento:    [2][event][message][data]
+ *
+ * - interi: varint (zigzag per i valori con segno)
+ * - stringhe: varint lunghezza + byte UTF-8
+ * - opzionali: varint 0 = null, altrimenti valore + 1 (o lunghezza + 1)
+ * - parole di submitProposal: varint (indice << 1) per una parola della
+ *   partita corrente (posizione nella lista "words" ricevuta al login),
+ *   oppure varint (lunghezza << 1 | 1) seguito dalla stringa
+ * - data: valore con tag (null, booleani, interi, double, stringhe, liste, mappe);
+ *   le chiavi note delle mappe sono inviate come indice in KEYS
+ */
+public class BinaryCodec implements WireCodec {
+    // Opcode delle operazioni (uno per ogni case di CommandHandler)
+    public static final int OP_REGISTER = 1;
+    public static final int OP_UPDATE_CREDENTIALS = 2;
+    public static final int OP_LOGIN = 3;
+    public static final int OP_LOGOUT = 4;
+    public static final int OP_SUBMIT_PROPOSAL = 5;
+    public static final int OP_REQUEST_GAME_INFO = 6;
+    public static final int OP_REQUEST_GAME_STATS = 7;
+    public static final int OP_REQUEST_LEADERBOARD = 8;
+    public static final int OP_REQUEST_PLAYER_STATS = 9;
+    public static final int OP_PING = 10;
+    public static final int OP_SUBSCRIBE = 11;
+    public static final int OP_UNSUBSCRIBE = 12;
+
+    private static final String[] OPERATIONS = {
+        null, "register", "updateCredentials", "login", "logout", "submitProposal",
+        "requestGameInfo", "requestGameStats", "requestLeaderboard", "requestPlayerStats", "ping",
+        "subscribe", "unsubscribe"
+    };
+
+    // Primo byte di un messaggio push (al posto di success)
+    private static final int STATUS_EVENT = 2;
+
+    // Tag dei valori in "data"
+    private static final int T_NULL = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_INT = 3;
+    private static final int T_DOUBLE = 4;
+    private static final int T_STRING = 5;
+    private static final int T_LIST = 6;
+    private static final int T_MAP = 7;
+
+    // Chiavi ricorrenti nelle risposte: inviate come indice invece che come stringa
+    private static final String[] KEYS = {
+        "rank", "username", "score", "gameId", "words", "remainingTime",
+        "correctProposals", "wrongProposals", "currentScore", "correct", "newScore",
+        "theme", "active", "totalPlayers", "finishedPlayers", "winners",
+        "puzzlesCompleted", "winRate", "lossRate", "currentStreak", "maxStreak",
+        "perfectPuzzles", "mistakeHistogram"
+    };
+    private static final Map<String, Integer> KEY_IDS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_IDS.put(KEYS[i], i);
+        }
+    }
+
+    private final GameManager gameManager;
+
+    /**
+     * @param gameManager usato per risolvere gli indici delle parole della partita corrente
+     */
+    public BinaryCodec(GameManager gameManager) {
+        this.gameManager = gameManager;
+    }
+
+    // ==================== RICHIESTE ====================
+
+    @Override
+    public JsonRequest decodeRequest(byte[] payload) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(payload);
+            int opcode = in.get() & 0xFF;
+
+            if (opcode == 0 || opcode >= OPERATIONS.length) {
+                throw new IllegalArgumentException("Opcode sconosciuto: " + opcode);
+            }
+
+            JsonRequest request = new JsonRequest();
+            request.setOperation(OPERATIONS[opcode]);
+
+            switch (opcode) {
+                case OP_REGISTER:
+                    request.setName(readString(in));
+                    request.setPsw(readString(in));
+                    break;
+                case OP_UPDATE_CREDENTIALS:
+                    request.setOldName(readString(in));
+                    request.setNewName(readOptionalString(in));
+                    request.setOldPsw(readString(in));
+                    request.setNewPsw(readOptionalString(in));
+                    break;
+                case OP_LOGIN:
+                    request.setUsername(readString(in));
+                    request.setPsw(readString(in));
+                    if (in.hasRemaining()) {
+                        request.setUdpPort(readOptionalInt(in));
+                    }
+                    break;
+                case OP_SUBMIT_PROPOSAL:
+                    request.setWords(readWords(in));
+                    break;
+                case OP_REQUEST_GAME_INFO:
+                case OP_REQUEST_GAME_STATS:
+                    request.setGameId(readOptionalInt(in));
+                    break;
+                case OP_REQUEST_LEADERBOARD:
+                    request.setPlayerName(readOptionalString(in));
+                    request.setTopPlayers(readOptionalInt(in));
+                    break;
+                default:
+                    // Operazioni senza campi
+                    break;
+            }
+
+            return request;
+
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Messaggio binario troncato");
+        }
+    }
+
+    /**
+     * Legge le parole proposte, risolvendo gli indici sulla partita corrente.
+     */
+    private List<String> readWords(ByteBuffer in) {
+        int count = readVarint(in);
+        if (count > 16) {
+            throw new IllegalArgumentException("Troppe parole: " + count);
+        }
+
+        Game game = gameManager.getCurrentGame();
+        List<String> words = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            int header = readVarint(in);
+
+            if ((header & 1) == 1) {
+                words.add(readUtf8(in, header >>> 1));
+            } else {
+                int index = header >>> 1;
+                if (game == null || index >= game.getWordCount()) {
+                    throw new IllegalArgumentException("Indice parola non valido: " + index);
+                }
+                words.add(game.getWord(index));
+            }
+        }
+
+        return words;
+    }
+
+    // ==================== RISPOSTE ====================
+
+    @Override
+    public String peekOperation(byte[] payload) {
+        if (payload.length == 0) {
+            return null;
+        }
+        int opcode = payload[0] & 0xFF;
+        return opcode < OPERATIONS.length ? OPERATIONS[opcode] : null;
+    }
+
+    @Override
+    public byte[] encodeResponse(JsonResponse response) {
+        BinaryWriter out = new BinaryWriter(64);
+        if (response.getEvent() != null) {
+            out.writeByte(STATUS_EVENT);
+            out.writeString(response.getEvent());
+        } else {
+            out.writeByte(response.isSuccess() ? 1 : 0);
+        }
+        out.writeOptionalString(response.getMessage());
+        writeValue(out, response.getData());
+        return out.toByteArray();
+    }
+
+    private void writeValue(BinaryWriter out, Object value) {
+        if (value == null) {
+            out.writeByte(T_NULL);
+
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? T_TRUE : T_FALSE);
+
+        } else if (value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            out.writeByte(T_INT);
+            out.writeVarlong(zigzag(((Number) value).longValue()));
+
+        } else if (value instanceof Number) {
+            out.writeByte(T_DOUBLE);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+
+        } else if (value instanceof String) {
+            out.writeByte(T_STRING);
+            out.writeString((String) value);
+
+        } else if (value instanceof Collection) {
+            Collection<?> list = (Collection<?>) value;
+            out.writeByte(T_LIST);
+            out.writeVarint(list.size());
+            for (Object item : list) {
+                writeValue(out, item);
+            }
+
+        } else if (value instanceof int[]) {
+            int[] array = (int[]) value;
+            out.writeByte(T_LIST);
+            out.writeVarint(array.length);
+            for (int item : array) {
+                out.writeByte(T_INT);
+                out.writeVarlong(zigzag(item));
+            }
+
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(T_MAP);
+            out.writeVarint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeKey(out, String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+
+        } else {
+            out.writeByte(T_STRING);
+            out.writeString(value.toString());
+        }
+    }
+
+    private void writeKey(BinaryWriter out, String key) {
+        Integer keyId = KEY_IDS.get(key);
+        if (keyId != null) {
+            out.writeVarint(keyId << 1);
+        } else {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint((bytes.length << 1) | 1);
+            out.writeBytes(bytes);
+        }
+    }
+
+    @Override
+    public boolean isText() {
+        return false;
+    }
+
+    // ==================== PRIMITIVE ====================
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Legge un varint (7 bit per byte, bit alto = continua).
+     */
+    public static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint troppo lungo");
+    }
+
+    private static String readString(ByteBuffer in) {
+        return readUtf8(in, readVarint(in));
+    }
+
+    private static String readOptionalString(ByteBuffer in) {
+        int length = readVarint(in);
+        return length == 0 ? null : readUtf8(in, length - 1);
+    }
+
+    private static Integer readOptionalInt(ByteBuffer in) {
+        int value = readVarint(in);
+        return value == 0 ? null : unzigzag(value - 1);
+    }
+
+    private static String readUtf8(ByteBuffer in, int length) {
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Stringa troncata");
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Buffer di scrittura che cresce secondo necessità (non thread-safe).
+     */
+    public static class BinaryWriter {
+        private byte[] data;
+        private int size;
+
+        public BinaryWriter(int initialCapacity) {
+            this.data = new byte[initialCapacity];
+            this.size = 0;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        public void writeByte(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+        }
+
+        public void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        public void writeVarint(int value) {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+
+        public void writeVarlong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        public void writeLong(long value) {
+            ensure(8);
+            for (int i = 7; i >= 0; i--) {
+                data[size++] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        public void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        public void writeOptionalString(String value) {
+            if (value == null) {
+                writeVarint(0);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length + 1);
+                writeBytes(bytes);
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package server.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decoder di frame delimitati da newline che lavora direttamente sui byte.
+ * Cerca il byte '\n' nel ByteBuffer e conserva tra una lettura e l'altra
+ * solo i byte del frame incompleto, senza decodificarli: un carattere UTF-8
+ * multi-byte spezzato tra due letture viene ricomposto correttamente.
+ *
+ * Se la connessione inizia con il preambolo di ProtocolSession, il decoder
+ * passa ai frame preceduti dalla lunghezza (varint): il preambolo ricevuto
+ * si ottiene con takeHandshake().
+ */
+public class FrameDecoder {
+    private static final byte DELIMITER = '\n';
+    private static final int INITIAL_PARTIAL_SIZE = 256;
+
+    private enum Mode { DETECT, PREFACE, LINES, LENGTH_PREFIXED }
+
+    private final int maxFrameBytes;
+    private Mode mode;
+
+    // Byte del frame incompleto (allocato solo finché il frame non è completo)
+    private byte[] partial;
+    private int partialLength;
+
+    // Preambolo in arrivo e flag richiesti (-1 = nessun handshake da notificare)
+    private byte[] preface;
+    private int prefaceLength;
+    private int handshakeFlags;
+
+    // Frame con prefisso di lunghezza: varint in lettura, poi payload
+    private int headerValue;
+    private int headerShift;
+    private byte[] frame;
+    private int frameFilled;
+
+    public FrameDecoder(int maxFrameBytes) {
+        this.maxFrameBytes = maxFrameBytes;
+        this.mode = Mode.DETECT;
+        this.partial = null;
+        this.partialLength = 0;
+        this.handshakeFlags = -1;
+    }
+
+    /**
+     * Estrae i frame completi dal buffer (in modalità lettura) e li aggiunge a out.
+     * Il buffer viene consumato interamente.
+     * @throws IOException se un frame supera la dimensione massima consentita
+     *         o il preambolo non è valido
+     */
+    public void decode(ByteBuffer in, List<byte[]> out) throws IOException {
+        if (mode == Mode.DETECT && in.hasRemaining()) {
+            mode = ProtocolSession.isPrefaceStart(in.get(in.position())) ? Mode.PREFACE : Mode.LINES;
+        }
+
+        if (mode == Mode.PREFACE) {
+            readPreface(in);
+        }
+
+        if (mode == Mode.LINES) {
+            decodeLines(in, out);
+        } else if (mode == Mode.LENGTH_PREFIXED) {
+            decodeLengthPrefixed(in, out);
+        }
+    }
+
+    /**
+     * Flag del preambolo appena completato, o -1 se non ce n'è uno da gestire.
+     * Restituisce i flag una sola volta.
+     */
+    public int takeHandshake() {
+        int flags = handshakeFlags;
+        handshakeFlags = -1;
+        return flags;
+    }
+
+    private void readPreface(ByteBuffer in) throws IOException {
+        if (preface == null) {
+            preface = new byte[ProtocolSession.PREFACE_LENGTH];
+        }
+
+        int count = Math.min(in.remaining(), preface.length - prefaceLength);
+        in.get(preface, prefaceLength, count);
+        prefaceLength += count;
+
+        if (prefaceLength < preface.length) {
+            return;
+        }
+
+        try {
+            handshakeFlags = ProtocolSession.parsePreface(preface);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        preface = null;
+        mode = Mode.LENGTH_PREFIXED;
+    }
+
+    /**
+     * Frame preceduti dalla lunghezza: l'array del frame viene allocato
+     * una volta sola, della dimensione esatta, dopo aver letto la lunghezza.
+     */
+    private void decodeLengthPrefixed(ByteBuffer in, List<byte[]> out) throws IOException {
+        while (in.hasRemaining()) {
+            if (frame == null) {
+                byte b = in.get();
+                headerValue |= (b & 0x7F) << headerShift;
+
+                if ((b & 0x80) != 0) {
+                    headerShift += 7;
+                    if (headerShift > 28) {
+                        throw new IOException("Lunghezza del messaggio non valida");
+                    }
+                    continue;
+                }
+
+                int length = headerValue;
+                headerValue = 0;
+                headerShift = 0;
+                if (length < 0) {
+                    throw new IOException("Lunghezza del messaggio non valida");
+                }
+                checkFrameSize(length);
+
+                if (length > 0) {
+                    frame = new byte[length];
+                    frameFilled = 0;
+                }
+                continue;
+            }
+
+            int count = Math.min(in.remaining(), frame.length - frameFilled);
+            in.get(frame, frameFilled, count);
+            frameFilled += count;
+
+            if (frameFilled == frame.length) {
+                out.add(frame);
+                frame = null;
+            }
+        }
+    }
+
+    private void decodeLines(ByteBuffer in, List<byte[]> out) throws IOException {
+        int start = in.position();
+        int limit = in.limit();
+
+        for (int i = start; i < limit; i++) {
+            if (in.get(i) != DELIMITER) {
+                continue;
+            }
+
+            int length = i - start;
+            checkFrameSize(partialLength + length);
+
+            byte[] frame;
+            if (partialLength == 0) {
+                frame = new byte[length];
+                in.get(start, frame, 0, length);
+            } else {
+                frame = Arrays.copyOf(partial, partialLength + length);
+                in.get(start, frame, partialLength, length);
+                partialLength = 0;
+                partial = null;  // Connessione inattiva: nessun buffer trattenuto
+            }
+
+            frame = trim(frame);
+            if (frame.length > 0) {
+                out.add(frame);
+            }
+
+            start = i + 1;
+        }
+
+        // I byte dopo l'ultimo delimitatore restano come frame parziale
+        int remaining = limit - start;
+        if (remaining > 0) {
+            checkFrameSize(partialLength + remaining);
+            ensurePartialCapacity(partialLength + remaining);
+            in.get(start, partial, partialLength, remaining);
+            partialLength += remaining;
+        }
+
+        in.position(limit);
+    }
+
+    /**
+     * Numero di byte del frame incompleto attualmente trattenuti.
+     */
+    public int getPendingBytes() {
+        return frame != null ? frameFilled : partialLength;
+    }
+
+    /**
+     * Byte allocati per il frame incompleto (0 se nessun frame è in corso).
+     */
+    public int getRetainedBytes() {
+        if (frame != null) {
+            return frame.length;
+        }
+        return partial != null ? partial.length : 0;
+    }
+
+    private void checkFrameSize(int size) throws IOException {
+        if (size > maxFrameBytes) {
+            throw new IOException("Messaggio oltre il limite di " + maxFrameBytes + " byte");
+        }
+    }
+
+    /**
+     * Fa crescere il buffer parziale raddoppiando la capacità (costo lineare complessivo).
+     */
+    private void ensurePartialCapacity(int required) {
+        if (partial == null) {
+            partial = new byte[Math.max(INITIAL_PARTIAL_SIZE, required)];
+        } else if (partial.length < required) {
+            int newSize = Math.min(Math.max(partial.length * 2, required), maxFrameBytes);
+            partial = Arrays.copyOf(partial, newSize);
+        }
+    }
+
+    /**
+     * Rimuove spazi e caratteri di controllo ASCII (es. '\r') agli estremi.
+     */
+    private static byte[] trim(byte[] frame) {
+        int from = 0;
+        int to = frame.length;
+
+        while (from < to && (frame[from] & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (frame[to - 1] & 0xFF) <= ' ') {
+            to--;
+        }
+
+        if (from == 0 && to == frame.length) {
+            return frame;
+        }
+        return Arrays.copyOfRange(frame, from, to);
+    }
+}
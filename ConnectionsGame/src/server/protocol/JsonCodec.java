@@ -0,0 +1,132 @@
+package server.protocol;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec JSON (protocollo originale): ogni messaggio è un oggetto JSON in UTF-8.
+ */
+public class JsonCodec implements WireCodec {
+    // Gson è thread-safe: una sola istanza per tutte le connessioni
+    private static final Gson GSON = new Gson();
+
+    public static final JsonCodec INSTANCE = new JsonCodec();
+
+    private static final byte[] OPERATION_KEY = "\"operation\"".getBytes(StandardCharsets.US_ASCII);
+
+    private JsonCodec() {
+    }
+
+    @Override
+    public JsonRequest decodeRequest(byte[] payload) {
+        JsonRequest request = GSON.fromJson(new String(payload, StandardCharsets.UTF_8), JsonRequest.class);
+        if (request == null) {
+            throw new IllegalArgumentException("Richiesta vuota");
+        }
+        return request;
+    }
+
+    /**
+     * Cerca il valore di "operation" scorrendo i byte, senza Gson.
+     * Basta per il rate limiting: la richiesta vera viene poi decodificata per intero.
+     */
+    @Override
+    public String peekOperation(byte[] payload) {
+        int from = 0;
+        while (true) {
+            int key = indexOf(payload, OPERATION_KEY, from);
+            if (key < 0) {
+                return null;
+            }
+
+            int i = skipWhitespace(payload, key + OPERATION_KEY.length);
+            if (i < payload.length && payload[i] == ':') {
+                i = skipWhitespace(payload, i + 1);
+                if (i >= payload.length || payload[i] != '"') {
+                    return null;
+                }
+
+                int start = i + 1;
+                for (int end = start; end < payload.length; end++) {
+                    if (payload[end] == '"') {
+                        return new String(payload, start, end - start, StandardCharsets.UTF_8);
+                    }
+                    if (payload[end] == '\\') {
+                        return null;  // Sequenze di escape: nessun nome di operazione le contiene
+                    }
+                }
+                return null;
+            }
+
+            from = key + 1;  // Era il valore di un altro campo
+        }
+    }
+
+    /**
+     * Come peekOperation, per una riga JSON già letta come stringa.
+     */
+    public String peekOperation(String json) {
+        int from = 0;
+        while (true) {
+            int key = json.indexOf("\"operation\"", from);
+            if (key < 0) {
+                return null;
+            }
+
+            int i = skipWhitespace(json, key + OPERATION_KEY.length);
+            if (i < json.length() && json.charAt(i) == ':') {
+                i = skipWhitespace(json, i + 1);
+                if (i >= json.length() || json.charAt(i) != '"') {
+                    return null;
+                }
+
+                int end = json.indexOf('"', i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                String operation = json.substring(i + 1, end);
+                return operation.indexOf('\\') < 0 ? operation : null;
+            }
+
+            from = key + 1;
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        outer:
+        for (int i = from; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] data, int i) {
+        while (i < data.length && (data[i] == ' ' || data[i] == '\t' || data[i] == '\r' || data[i] == '\n')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipWhitespace(String data, int i) {
+        while (i < data.length() && Character.isWhitespace(data.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public byte[] encodeResponse(JsonResponse response) {
+        return GSON.toJson(response).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean isText() {
+        return true;
+    }
+}
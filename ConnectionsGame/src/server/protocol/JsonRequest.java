@@ -10,6 +10,9 @@ public class JsonRequest {
     // Campo obbligatorio: tipo di operazione
     private String operation;
     
+    // Identificativo scelto dal client, rimandato nella risposta (null = assente)
+    private Long requestId;
+    
     // Campi per register
     private String name;
     private String psw;
@@ -22,6 +25,7 @@ public class JsonRequest {
     
     // Campi per login/logout
     private String username;
+    private Integer udpPort;  // Porta UDP del client per le notifiche (opzionale)
     
     // Campi per submitProposal
     private List<String> words;
@@ -35,6 +39,14 @@ public class JsonRequest {
     
     // Getters e Setters
     
+    public Long getRequestId() {
+        return requestId;
+    }
+    
+    public void setRequestId(Long requestId) {
+        this.requestId = requestId;
+    }
+    
     public String getOperation() {
         return operation;
     }
@@ -99,6 +111,14 @@ public class JsonRequest {
         this.username = username;
     }
     
+    public Integer getUdpPort() {
+        return udpPort;
+    }
+    
+    public void setUdpPort(Integer udpPort) {
+        this.udpPort = udpPort;
+    }
+    
     public List<String> getWords() {
         return words;
     }
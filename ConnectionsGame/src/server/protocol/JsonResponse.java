@@ -8,6 +8,8 @@ public class JsonResponse {
     private boolean success;
     private String message;
     private Object data;  // Dati specifici della risposta
+    private Long requestId;  // Copiato dalla richiesta (omesso da Gson se null)
+    private String event;  // Tipo di evento push, null per le risposte alle richieste
     
     public JsonResponse(boolean success, String message) {
         this.success = success;
@@ -35,6 +37,15 @@ public class JsonResponse {
         return new JsonResponse(false, message);
     }
     
+    /**
+     * Messaggio push inviato dal server senza una richiesta del client.
+     */
+    public static JsonResponse event(String event, String message, Object data) {
+        JsonResponse response = new JsonResponse(true, message, data);
+        response.event = event;
+        return response;
+    }
+    
     // Getters e Setters
     
     public boolean isSuccess() {
@@ -60,4 +71,16 @@ public class JsonResponse {
     public void setData(Object data) {
         this.data = data;
     }
+    
+    public Long getRequestId() {
+        return requestId;
+    }
+    
+    public void setRequestId(Long requestId) {
+        this.requestId = requestId;
+    }
+    
+    public String getEvent() {
+        return event;
+    }
 }
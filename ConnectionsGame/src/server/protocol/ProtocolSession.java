@@ -0,0 +1,292 @@
+package server.protocol;
+
+import server.manager.ConfigManager;
+import server.manager.GameManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Protocollo scelto da una connessione: codec del contenuto e framing.
+ *
+ * Di default (client che inviano subito JSON, es. client.CLI) i messaggi sono
+ * righe JSON terminate da '\n'. Un client può invece aprire la connessione con
+ * un preambolo di 4 byte:
+ *
+ *   0xC0 'C' 'G' [flags]
+ *
+ * 0xC0 non può iniziare né un testo JSON né un carattere UTF-8 valido, quindi
+ * il preambolo si distingue dal primo byte. Il server risponde con lo stesso
+ * preambolo contenente i flag accettati; da quel momento ogni messaggio, in
+ * entrambe le direzioni, è preceduto dalla sua lunghezza (varint).
+ * Con FLAG_BINARY il contenuto usa BinaryCodec, altrimenti resta JSON.
+ *
+ * Con FLAG_DEFLATE le risposte dal server portano nel varint (lunghezza << 1 | c):
+ * se c = 1 il contenuto è compresso. Le risposte sopra la soglia configurata
+ * passano da un unico Deflater per connessione, svuotato con SYNC_FLUSH dopo
+ * ogni messaggio: il dizionario resta condiviso tra i messaggi (le chiavi
+ * ripetute della classifica costano quasi nulla) e il client le decomprime
+ * con un unico Inflater, nell'ordine di arrivo. Le richieste non sono compresse.
+ */
+public class ProtocolSession {
+    public static final int PREFACE_LENGTH = 4;
+    private static final byte PREFACE_MAGIC_0 = (byte) 0xC0;
+    private static final byte PREFACE_MAGIC_1 = 'C';
+    private static final byte PREFACE_MAGIC_2 = 'G';
+
+    // Flag del preambolo
+    public static final int FLAG_BINARY = 0x01;
+    public static final int FLAG_DEFLATE = 0x02;
+    private static final int SUPPORTED_FLAGS = FLAG_BINARY | FLAG_DEFLATE;
+
+    // Byte delle risposte prima e dopo la compressione (tutte le connessioni)
+    private static final LongAdder COMPRESSION_INPUT_BYTES = new LongAdder();
+    private static final LongAdder COMPRESSION_OUTPUT_BYTES = new LongAdder();
+
+    // Varianti di codifica dei messaggi push (vedi getPushVariant)
+    public static final int PUSH_VARIANTS = 5;
+
+    // Sessione di default: righe JSON
+    public static final ProtocolSession JSON_LINES = new ProtocolSession(JsonCodec.INSTANCE, false, 0, 0, 0);
+
+    private final WireCodec codec;
+    private final boolean lengthPrefixed;
+    private final int flags;
+
+    // Compressione (null se non negoziata). L'accesso è serializzato dalla
+    // connessione, il lock serve solo contro close() dal thread di I/O.
+    private final Deflater deflater;
+    private final int compressionThreshold;
+    private byte[] compressBuffer;
+    private boolean closed;
+
+    private ProtocolSession(WireCodec codec, boolean lengthPrefixed, int flags,
+                            int compressionLevel, int compressionThreshold) {
+        this.codec = codec;
+        this.lengthPrefixed = lengthPrefixed;
+        this.flags = flags;
+        this.deflater = (flags & FLAG_DEFLATE) != 0 ? new Deflater(compressionLevel) : null;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * true se il primo byte della connessione è l'inizio di un preambolo.
+     */
+    public static boolean isPrefaceStart(byte firstByte) {
+        return firstByte == PREFACE_MAGIC_0;
+    }
+
+    /**
+     * Valida il preambolo ricevuto e restituisce i flag richiesti dal client.
+     * @throws IllegalArgumentException se il preambolo non è valido
+     */
+    public static int parsePreface(byte[] preface) {
+        if (preface.length != PREFACE_LENGTH
+                || preface[0] != PREFACE_MAGIC_0
+                || preface[1] != PREFACE_MAGIC_1
+                || preface[2] != PREFACE_MAGIC_2) {
+            throw new IllegalArgumentException("Preambolo del protocollo non valido");
+        }
+        return preface[3] & 0xFF;
+    }
+
+    /**
+     * Crea la sessione negoziata: i flag non supportati vengono ignorati.
+     */
+    public static ProtocolSession negotiate(int requestedFlags, GameManager gameManager) {
+        int accepted = requestedFlags & SUPPORTED_FLAGS;
+        WireCodec codec = (accepted & FLAG_BINARY) != 0
+            ? new BinaryCodec(gameManager)
+            : JsonCodec.INSTANCE;
+
+        ConfigManager config = ConfigManager.getInstance();
+        return new ProtocolSession(codec, true, accepted,
+            config.getCompressionLevel(), config.getCompressionThresholdBytes());
+    }
+
+    /**
+     * Risposta al preambolo, con i flag accettati.
+     */
+    public byte[] prefaceAck() {
+        return new byte[] { PREFACE_MAGIC_0, PREFACE_MAGIC_1, PREFACE_MAGIC_2, (byte) flags };
+    }
+
+    /**
+     * Decodifica il contenuto di un frame ricevuto (già senza framing).
+     */
+    public JsonRequest decode(byte[] payload) {
+        return codec.decodeRequest(payload);
+    }
+
+    /**
+     * Nome dell'operazione di un frame, senza decodificarlo (vedi WireCodec.peekOperation).
+     */
+    public String peekOperation(byte[] payload) {
+        return codec.peekOperation(payload);
+    }
+
+    /**
+     * Codifica una risposta, framing compreso, pronta da inviare.
+     */
+    public byte[] encode(JsonResponse response) {
+        return encode(response, true);
+    }
+
+    /**
+     * Codifica senza compressione: il risultato dipende solo da getPushVariant(),
+     * quindi può essere condiviso tra tutte le connessioni della stessa variante
+     * (il dizionario del Deflater della connessione non viene toccato).
+     */
+    public byte[] encodeUncompressed(JsonResponse response) {
+        return encode(response, false);
+    }
+
+    /**
+     * Identifica codec e framing della sessione (0 .. PUSH_VARIANTS - 1):
+     * sessioni con la stessa variante producono gli stessi byte da encodeUncompressed.
+     */
+    public int getPushVariant() {
+        if (!lengthPrefixed) {
+            return 0;
+        }
+        return 1 + ((flags & FLAG_BINARY) != 0 ? 2 : 0) + (deflater != null ? 1 : 0);
+    }
+
+    private byte[] encode(JsonResponse response, boolean allowCompression) {
+        byte[] payload = codec.encodeResponse(response);
+
+        if (!lengthPrefixed) {
+            byte[] line = new byte[payload.length + 1];
+            System.arraycopy(payload, 0, line, 0, payload.length);
+            line[payload.length] = '\n';
+            return line;
+        }
+
+        if (deflater == null) {
+            return frame(payload, payload.length, payload.length);
+        }
+
+        if (allowCompression && payload.length >= compressionThreshold) {
+            synchronized (deflater) {
+                if (!closed) {
+                    int compressedLength = compress(payload);
+                    COMPRESSION_INPUT_BYTES.add(payload.length);
+                    COMPRESSION_OUTPUT_BYTES.add(compressedLength);
+                    return frame(compressBuffer, compressedLength, (compressedLength << 1) | 1);
+                }
+            }
+        }
+
+        return frame(payload, payload.length, payload.length << 1);
+    }
+
+    private static byte[] frame(byte[] payload, int length, int header) {
+        byte[] frame = new byte[varintSize(header) + length];
+        int offset = writeVarint(frame, 0, header);
+        System.arraycopy(payload, 0, frame, offset, length);
+        return frame;
+    }
+
+    /**
+     * Comprime in compressBuffer (riusato) e restituisce i byte prodotti.
+     */
+    private int compress(byte[] payload) {
+        if (compressBuffer == null || compressBuffer.length < payload.length / 2) {
+            compressBuffer = new byte[Math.max(256, payload.length / 2)];
+        }
+
+        deflater.setInput(payload);
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(compressBuffer, length, compressBuffer.length - length, Deflater.SYNC_FLUSH);
+            if (length < compressBuffer.length) {
+                return length;
+            }
+            compressBuffer = Arrays.copyOf(compressBuffer, compressBuffer.length * 2);
+        }
+    }
+
+    /**
+     * Libera le risorse native del compressore (chiusura della connessione).
+     */
+    public void close() {
+        if (deflater != null) {
+            synchronized (deflater) {
+                closed = true;
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Riepilogo della compressione per le metriche.
+     */
+    public static String compressionStats() {
+        long input = COMPRESSION_INPUT_BYTES.sum();
+        long output = COMPRESSION_OUTPUT_BYTES.sum();
+        double ratio = input == 0 ? 0.0 : (double) output / input;
+        return String.format("compressione: %d → %d byte (%.1f%%)", input, output, ratio * 100);
+    }
+
+    /**
+     * Descrizione di una richiesta per il log (testo per JSON, dimensione per il binario).
+     */
+    public String describe(byte[] payload) {
+        return describe(payload, 0, payload.length);
+    }
+
+    /**
+     * Come describe, ma per una risposta prodotta da encode (salta il framing).
+     */
+    public String describeResponse(byte[] frame) {
+        if (!lengthPrefixed) {
+            return describe(frame, 0, frame.length - 1);
+        }
+
+        int offset = 0;
+        while ((frame[offset] & 0x80) != 0) {
+            offset++;
+        }
+        offset++;
+
+        if (deflater != null && (frame[0] & 1) == 1) {
+            return "[compresso, " + (frame.length - offset) + " byte]";
+        }
+        return describe(frame, offset, frame.length - offset);
+    }
+
+    private String describe(byte[] data, int offset, int length) {
+        if (!codec.isText()) {
+            return "[binario, " + length + " byte]";
+        }
+        return new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+
+    public boolean isLengthPrefixed() {
+        return lengthPrefixed;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] dest, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            dest[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dest[offset++] = (byte) value;
+        return offset;
+    }
+}
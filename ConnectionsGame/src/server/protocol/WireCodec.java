@@ -0,0 +1,30 @@
+package server.protocol;
+
+/**
+ * Codifica del contenuto dei messaggi scambiati con i client.
+ * Il framing (newline o prefisso di lunghezza) è gestito da ProtocolSession.
+ */
+public interface WireCodec {
+
+    /**
+     * Decodifica il contenuto di una richiesta.
+     * @throws IllegalArgumentException se il messaggio non è valido
+     */
+    JsonRequest decodeRequest(byte[] payload);
+
+    /**
+     * Legge solo il nome dell'operazione, senza decodificare il messaggio
+     * (usato dal rate limiting). Può restituire null se non è riconoscibile.
+     */
+    String peekOperation(byte[] payload);
+
+    /**
+     * Codifica il contenuto di una risposta (senza framing).
+     */
+    byte[] encodeResponse(JsonResponse response);
+
+    /**
+     * true se il contenuto è testo leggibile (per il log).
+     */
+    boolean isText();
+}
@@ -0,0 +1,243 @@
+package server.ratelimit;
+
+import server.manager.ConfigManager;
+import server.protocol.JsonResponse;
+import server.protocol.ProtocolSession;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limiti di frequenza (token bucket) condivisi da tutte le connessioni:
+ * - nuove connessioni per indirizzo IP, controllate dall'acceptor;
+ * - richieste per operazione, per utente loggato o per IP prima del login.
+ *
+ * I limiti vengono applicati prima di decodificare il messaggio: una richiesta
+ * in eccesso riceve una risposta di errore già codificata (una per variante di
+ * protocollo) senza passare da Gson né dai manager.
+ */
+public class RateLimiter {
+    // Operazioni con limite proprio; le altre usano l'ultimo slot (limite generale)
+    private static final String[] OPERATIONS = {
+        "register", "updateCredentials", "login", "logout", "submitProposal",
+        "requestGameInfo", "requestGameStats", "requestLeaderboard", "requestPlayerStats",
+        "ping", "subscribe", "unsubscribe"
+    };
+    private static final int DEFAULT_SLOT = OPERATIONS.length;
+
+    // Oltre questo numero di chiavi vengono rimossi i secchi pieni (inutilizzati)
+    private static final int MAX_TRACKED_KEYS = 10000;
+
+    private static final JsonResponse REJECTION = JsonResponse.error("Troppe richieste, riprova tra poco");
+
+    private final int acceptPerSecond;
+    private final int acceptBurst;
+    private final int[] requestPerSecond;  // Per slot, 0 = nessun limite
+    private final int[] requestBurst;
+
+    private final ConcurrentHashMap<InetAddress, TokenBucket> acceptBuckets;
+    private final ConcurrentHashMap<InetAddress, TokenBucket[]> addressBuckets;
+    private final ConcurrentHashMap<String, TokenBucket[]> userBuckets;
+    private final AtomicBoolean sweeping;
+
+    // Risposte di rifiuto già codificate, per variante di protocollo
+    private final AtomicReferenceArray<byte[]> rejections;
+    private final String rejectionLine;
+
+    private final LongAdder rejectedConnections;
+    private final LongAdder rejectedRequests;
+
+    public RateLimiter(int acceptPerSecond, int acceptBurst, int[] requestPerSecond, int[] requestBurst) {
+        this.acceptPerSecond = acceptPerSecond;
+        this.acceptBurst = acceptBurst;
+        this.requestPerSecond = requestPerSecond;
+        this.requestBurst = requestBurst;
+        this.acceptBuckets = new ConcurrentHashMap<>();
+        this.addressBuckets = new ConcurrentHashMap<>();
+        this.userBuckets = new ConcurrentHashMap<>();
+        this.sweeping = new AtomicBoolean(false);
+        this.rejections = new AtomicReferenceArray<>(ProtocolSession.PUSH_VARIANTS);
+        this.rejectionLine = new String(ProtocolSession.JSON_LINES.encodeUncompressed(REJECTION),
+            StandardCharsets.UTF_8).trim();
+        this.rejectedConnections = new LongAdder();
+        this.rejectedRequests = new LongAdder();
+    }
+
+    /**
+     * Crea il rate limiter con i limiti di server.properties.
+     */
+    public static RateLimiter fromConfig() {
+        ConfigManager config = ConfigManager.getInstance();
+        int[] perSecond = new int[OPERATIONS.length + 1];
+        int[] burst = new int[OPERATIONS.length + 1];
+
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            perSecond[i] = config.getRequestRatePerSecond(OPERATIONS[i]);
+            burst[i] = config.getRequestRateBurst(OPERATIONS[i]);
+        }
+        perSecond[DEFAULT_SLOT] = config.getRequestRatePerSecond(null);
+        burst[DEFAULT_SLOT] = config.getRequestRateBurst(null);
+
+        return new RateLimiter(config.getAcceptRatePerSecond(), config.getAcceptRateBurst(), perSecond, burst);
+    }
+
+    // ==================== CONNESSIONI ====================
+
+    /**
+     * Verifica se accettare una nuova connessione dall'indirizzo dato.
+     */
+    public boolean tryAcceptConnection(InetAddress address) {
+        if (acceptPerSecond <= 0 || address == null) {
+            return true;
+        }
+
+        TokenBucket bucket = acceptBuckets.get(address);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(acceptPerSecond, acceptBurst);
+            bucket = acceptBuckets.putIfAbsent(address, created);
+            if (bucket == null) {
+                bucket = created;
+                sweepIfNeeded(acceptBuckets);
+            }
+        }
+
+        if (bucket.tryAcquire(System.nanoTime())) {
+            return true;
+        }
+        rejectedConnections.increment();
+        return false;
+    }
+
+    // ==================== RICHIESTE ====================
+
+    /**
+     * Preleva un token per un'operazione di un utente loggato.
+     */
+    public boolean tryAcquire(String username, String operation) {
+        return tryAcquire(userBuckets, username, operation);
+    }
+
+    /**
+     * Preleva un token per un'operazione di un client non ancora loggato.
+     */
+    public boolean tryAcquire(InetAddress address, String operation) {
+        return tryAcquire(addressBuckets, address, operation);
+    }
+
+    private <K> boolean tryAcquire(ConcurrentHashMap<K, TokenBucket[]> buckets, K key, String operation) {
+        int slot = slotOf(operation);
+        if (requestPerSecond[slot] <= 0) {
+            return true;
+        }
+
+        TokenBucket[] keyBuckets = buckets.get(key);
+        if (keyBuckets == null) {
+            TokenBucket[] created = newRequestBuckets();
+            keyBuckets = buckets.putIfAbsent(key, created);
+            if (keyBuckets == null) {
+                keyBuckets = created;
+                sweepIfNeeded(buckets);
+            }
+        }
+
+        if (keyBuckets[slot].tryAcquire(System.nanoTime())) {
+            return true;
+        }
+        rejectedRequests.increment();
+        return false;
+    }
+
+    private TokenBucket[] newRequestBuckets() {
+        TokenBucket[] buckets = new TokenBucket[requestPerSecond.length];
+        for (int i = 0; i < buckets.length; i++) {
+            if (requestPerSecond[i] > 0) {
+                buckets[i] = new TokenBucket(requestPerSecond[i], requestBurst[i]);
+            }
+        }
+        return buckets;
+    }
+
+    private static int slotOf(String operation) {
+        if (operation != null) {
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                if (OPERATIONS[i].equals(operation)) {
+                    return i;
+                }
+            }
+        }
+        return DEFAULT_SLOT;
+    }
+
+    /**
+     * Rimuove i secchi pieni quando le chiavi tracciate sono troppe
+     * (un solo thread alla volta, gli altri proseguono).
+     */
+    private void sweepIfNeeded(ConcurrentHashMap<?, ?> buckets) {
+        if (buckets.size() <= MAX_TRACKED_KEYS || !sweeping.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long now = System.nanoTime();
+            Iterator<? extends Map.Entry<?, ?>> iterator = buckets.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Object value = iterator.next().getValue();
+                if (isFull(value, now)) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    private static boolean isFull(Object value, long now) {
+        if (value instanceof TokenBucket) {
+            return ((TokenBucket) value).isFull(now);
+        }
+        for (TokenBucket bucket : (TokenBucket[]) value) {
+            if (bucket != null && !bucket.isFull(now)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== RISPOSTE DI RIFIUTO ====================
+
+    /**
+     * Risposta di rifiuto già codificata per il protocollo della sessione.
+     * Non va modificata: lo stesso array è condiviso tra le connessioni.
+     */
+    public byte[] rejection(ProtocolSession session) {
+        int variant = session.getPushVariant();
+        byte[] encoded = rejections.get(variant);
+        if (encoded == null) {
+            // Più thread possono codificarla insieme: il risultato è identico
+            encoded = session.encodeUncompressed(REJECTION);
+            rejections.set(variant, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Risposta di rifiuto per i client a righe JSON (senza newline).
+     */
+    public String rejectionLine() {
+        return rejectionLine;
+    }
+
+    /**
+     * Riepilogo per le metriche.
+     */
+    public String getStats() {
+        return String.format("rate limit: connessioni rifiutate=%d, richieste rifiutate=%d",
+            rejectedConnections.sum(), rejectedRequests.sum());
+    }
+}
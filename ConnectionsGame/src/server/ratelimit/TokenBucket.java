@@ -0,0 +1,54 @@
+package server.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket senza lock (variante GCRA).
+ *
+ * Invece di contatore di token e istante dell'ultima ricarica, lo stato è un
+ * solo long: l'istante in cui il secchio tornerà pieno. Ogni richiesta lo
+ * sposta avanti di un intervallo (1 / rate); se finirebbe oltre la capacità
+ * del secchio la richiesta viene rifiutata. Basta quindi una compareAndSet.
+ */
+public class TokenBucket {
+    private final long intervalNanos;  // Tempo per ricaricare un token
+    private final long capacityNanos;  // burst * intervalNanos
+
+    // Istante (System.nanoTime) in cui il secchio sarà di nuovo pieno
+    private final AtomicLong fullAt;
+
+    /**
+     * @param permitsPerSecond token ricaricati al secondo (> 0)
+     * @param burst token disponibili al massimo in una volta (>= 1)
+     */
+    public TokenBucket(int permitsPerSecond, int burst) {
+        this.intervalNanos = 1_000_000_000L / permitsPerSecond;
+        this.capacityNanos = intervalNanos * Math.max(1, burst);
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Preleva un token, se disponibile.
+     * @return false se il limite è superato
+     */
+    public boolean tryAcquire(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * true se il secchio è pieno: rimuoverlo equivale a ricrearlo.
+     */
+    public boolean isFull(long now) {
+        return fullAt.get() - now <= 0;
+    }
+}
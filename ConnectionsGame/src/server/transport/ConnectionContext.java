@@ -0,0 +1,147 @@
+package server.transport;
+
+import server.admission.AdmissionControl;
+import server.admission.OperationClass;
+import server.handler.CommandHandler;
+import server.log.AsyncLogger;
+import server.manager.GameManager;
+import server.protocol.FrameDecoder;
+import server.protocol.ProtocolSession;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stato di una connessione nella RequestPipeline: decoder dei frame,
+ * protocollo negoziato e CommandHandler (utente loggato).
+ *
+ * decode() va chiamato da un solo thread alla volta (quello che legge);
+ * process() dal thread che elabora le richieste della connessione, una
+ * alla volta e nell'ordine di arrivo.
+ */
+public class ConnectionContext {
+    private final CommandHandler commandHandler;
+    private final GameManager gameManager;
+    private final AdmissionControl admission;
+    private final FrameDecoder frameDecoder;
+    private final String clientAddress;
+
+    // Protocollo della connessione (righe JSON finché il client non invia il preambolo)
+    private volatile ProtocolSession session;
+
+    ConnectionContext(CommandHandler commandHandler, GameManager gameManager, AdmissionControl admission,
+                      int maxFrameBytes, String clientAddress) {
+        this.commandHandler = commandHandler;
+        this.gameManager = gameManager;
+        this.admission = admission;
+        this.frameDecoder = new FrameDecoder(maxFrameBytes);
+        this.clientAddress = clientAddress;
+        this.session = ProtocolSession.JSON_LINES;
+    }
+
+    /**
+     * Estrae i messaggi completi dai byte ricevuti (buffer in modalità lettura,
+     * consumato interamente) e li aggiunge a frames.
+     * Se i byte completano il preambolo, il protocollo viene negoziato subito,
+     * prima che i messaggi successivi vengano elaborati.
+     * @return la risposta al preambolo da inviare prima di ogni altra, o null
+     * @throws IOException messaggio oltre il limite o preambolo non valido
+     */
+    public byte[] decode(ByteBuffer in, List<byte[]> frames) throws IOException {
+        frameDecoder.decode(in, frames);
+
+        int handshakeFlags = frameDecoder.takeHandshake();
+        if (handshakeFlags < 0) {
+            return null;
+        }
+
+        session = ProtocolSession.negotiate(handshakeFlags, gameManager);
+        AsyncLogger.info("✓ Protocollo negoziato con {}: {}", clientAddress,
+                         (session.getFlags() & ProtocolSession.FLAG_BINARY) != 0 ? "binario" : "JSON");
+        return session.prefaceAck();
+    }
+
+    /**
+     * Rate limit di un messaggio, prima di decodificarlo.
+     * @return la risposta di rifiuto già codificata, o null se va elaborato
+     */
+    public byte[] checkRateLimit(byte[] frame) {
+        return commandHandler.checkRateLimit(frame, session);
+    }
+
+    /**
+     * Classe dell'operazione di un messaggio, prima di decodificarlo (per il bulkhead che lo esegue).
+     */
+    public OperationClass operationClass(byte[] frame) {
+        return OperationClass.of(session.peekOperation(frame));
+    }
+
+    /**
+     * Verifica se un messaggio può essere eseguito dal thread che lo ha letto
+     * (vedi CommandHandler.runsInline).
+     */
+    public boolean runsInline(byte[] frame, Set<String> inlineOperations) {
+        return commandHandler.runsInline(session.peekOperation(frame), inlineOperations);
+    }
+
+    /**
+     * Rifiuto per rate limit, codificato con il protocollo della connessione.
+     */
+    public byte[] rateLimited() {
+        return commandHandler.rateLimitedResponse(session);
+    }
+
+    /**
+     * Rifiuto per sovraccarico (coda piena o attesa oltre la scadenza),
+     * codificato con il protocollo della connessione.
+     */
+    public byte[] serverBusy() {
+        return admission.busy(session);
+    }
+
+    /**
+     * Decodifica ed esegue un messaggio.
+     * @return la risposta già codificata (framing compreso)
+     */
+    public byte[] process(byte[] frame) {
+        ProtocolSession session = this.session;
+
+        // Righe per richiesta campionate: gli argomenti si costruiscono solo se servono
+        boolean logged = AsyncLogger.sampleRequest();
+        if (logged) {
+            AsyncLogger.info("← [{}] {}", clientAddress, session.describe(frame));
+        }
+
+        byte[] response = commandHandler.handleFrame(frame, session);
+
+        if (logged) {
+            AsyncLogger.info("→ [{}] {}", clientAddress, session.describeResponse(response));
+        }
+        return response;
+    }
+
+    /**
+     * Connessione chiusa: logout automatico e risorse del protocollo.
+     */
+    public void close() {
+        String loggedUser = commandHandler.disconnect();
+        if (loggedUser != null) {
+            AsyncLogger.info("  Auto-logout: {}", loggedUser);
+        }
+        session.close();
+    }
+
+    public CommandHandler getCommandHandler() {
+        return commandHandler;
+    }
+
+    public ProtocolSession getSession() {
+        return session;
+    }
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+}
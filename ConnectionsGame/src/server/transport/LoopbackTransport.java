@@ -0,0 +1,177 @@
+package server.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trasporto in memoria, senza socket: i byte scritti su una Connection
+ * attraversano la RequestPipeline (framing, rate limit, decodifica,
+ * esecuzione, codifica) nel thread del chiamante e le risposte si leggono
+ * dalla stessa Connection.
+ *
+ * Serve a misurare il costo della pipeline e del CommandHandler senza rete
+ * né context switch. Tutte le connessioni hanno lo stesso indirizzo: per i
+ * benchmark conviene disattivare i rate limit
+ * (-Dratelimit.request.per.second=0 -Dratelimit.login.per.second=0 ...).
+ */
+public class LoopbackTransport implements Transport {
+    private static final long DRAIN_POLL_MS = 1;
+
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile RequestPipeline pipeline;
+    private volatile boolean draining;
+
+    @Override
+    public String getName() {
+        return "loopback";
+    }
+
+    @Override
+    public void start(RequestPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    /**
+     * Apre una connessione dall'indirizzo di loopback.
+     */
+    public Connection connect() throws IOException {
+        return connect(InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * Apre una connessione da un indirizzo a scelta (rate limit per IP).
+     */
+    public Connection connect(InetAddress clientAddress) throws IOException {
+        if (pipeline == null || draining) {
+            throw new IOException("Trasporto loopback non attivo");
+        }
+        Connection connection = new Connection(pipeline.open(clientAddress,
+                "loopback-" + clientAddress.getHostAddress()));
+        connections.add(connection);
+        return connection;
+    }
+
+    /**
+     * Niente nuove connessioni né scritture; attende le write() in corso.
+     */
+    @Override
+    public boolean drain(long deadlineNanos) {
+        draining = true;
+
+        while (inFlight.get() > 0) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        draining = true;
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public String getStats() {
+        return "loopback: connessioni aperte=" + connections.size();
+    }
+
+    /**
+     * Connessione in memoria. Va usata da un thread alla volta, come un socket.
+     */
+    public class Connection implements AutoCloseable {
+        private final ConnectionContext context;
+        private final List<byte[]> frames = new ArrayList<>();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        private boolean closed;
+
+        private Connection(ConnectionContext context) {
+            this.context = context;
+        }
+
+        /**
+         * Invia byte al server come se arrivassero dal socket: i messaggi
+         * completi vengono elaborati subito e le risposte accodate in uscita.
+         */
+        public void write(byte[] data) throws IOException {
+            inFlight.incrementAndGet();
+            try {
+                if (closed || draining) {
+                    throw new IOException("Connessione loopback chiusa");
+                }
+
+                frames.clear();
+                byte[] prefaceAck = context.decode(ByteBuffer.wrap(data), frames);
+                if (prefaceAck != null) {
+                    output.write(prefaceAck);
+                }
+
+                for (byte[] frame : frames) {
+                    byte[] response = context.checkRateLimit(frame);
+                    if (response == null) {
+                        response = context.process(frame);
+                    }
+                    output.write(response);
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Byte inviati dal server e non ancora letti (svuota l'uscita).
+         */
+        public byte[] read() {
+            byte[] data = output.toByteArray();
+            output.reset();
+            return data;
+        }
+
+        public int available() {
+            return output.size();
+        }
+
+        /**
+         * Richiesta JSON su una connessione a righe: invia la riga e
+         * restituisce la risposta senza il terminatore.
+         */
+        public String request(String json) throws IOException {
+            write((json + "\n").getBytes(StandardCharsets.UTF_8));
+            String response = new String(read(), StandardCharsets.UTF_8);
+            return response.endsWith("\n") ? response.substring(0, response.length() - 1) : response;
+        }
+
+        /**
+         * Chiude la connessione (logout automatico compreso).
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            connections.remove(this);
+            context.close();
+        }
+    }
+}
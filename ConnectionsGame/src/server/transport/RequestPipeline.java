@@ -0,0 +1,68 @@
+package server.transport;
+
+import server.admission.AdmissionControl;
+import server.cluster.ClusterNode;
+import server.handler.CommandHandler;
+import server.manager.GameManager;
+import server.manager.UserManager;
+import server.notification.UdpNotifier;
+import server.ratelimit.RateLimiter;
+
+import java.net.InetAddress;
+
+/**
+ * Elaborazione delle richieste condivisa da tutti i trasporti.
+ *
+ * Contiene i servizi del server e crea per ogni connessione un
+ * ConnectionContext, che fa passare ogni messaggio per le stesse fasi:
+ * framing (FrameDecoder), rate limit, ammissione, decodifica, esecuzione
+ * (CommandHandler) e codifica della risposta con il protocollo negoziato.
+ */
+public class RequestPipeline {
+    private final UserManager userManager;
+    private final GameManager gameManager;
+    private final UdpNotifier udpNotifier;  // null se le notifiche sono disattivate
+    private final RateLimiter rateLimiter;  // null = nessun limite
+    private final ClusterNode cluster;      // null = server singolo
+    private final AdmissionControl admission;
+    private final int maxFrameBytes;
+
+    public RequestPipeline(UserManager userManager, GameManager gameManager, UdpNotifier udpNotifier,
+                           RateLimiter rateLimiter, ClusterNode cluster, AdmissionControl admission,
+                           int maxFrameBytes) {
+        this.userManager = userManager;
+        this.gameManager = gameManager;
+        this.udpNotifier = udpNotifier;
+        this.rateLimiter = rateLimiter;
+        this.cluster = cluster;
+        this.admission = admission;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Stato di una nuova connessione.
+     * @param clientAddress indirizzo del client (notifiche UDP e rate limit per IP), può essere null
+     * @param description indirizzo leggibile per i log
+     */
+    public ConnectionContext open(InetAddress clientAddress, String description) {
+        CommandHandler commandHandler = new CommandHandler(userManager, gameManager,
+            udpNotifier, clientAddress, rateLimiter, cluster);
+        return new ConnectionContext(commandHandler, gameManager, admission, maxFrameBytes, description);
+    }
+
+    public UserManager getUserManager() {
+        return userManager;
+    }
+
+    public GameManager getGameManager() {
+        return gameManager;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public AdmissionControl getAdmission() {
+        return admission;
+    }
+}
@@ -0,0 +1,45 @@
+package server.transport;
+
+import java.io.IOException;
+
+/**
+ * Trasporto del server: accetta le connessioni e muove i byte tra i client
+ * e la RequestPipeline, scegliendo su quali thread elaborare le richieste.
+ * Framing, rate limit, decodifica, esecuzione e codifica sono della pipeline,
+ * uguali per tutti i trasporti (TCP bloccante, NIO, in memoria).
+ *
+ * Ciclo di vita (guidato da ServerBootstrap):
+ * start() -> drain() alla chiusura -> close() dopo il salvataggio degli utenti.
+ */
+public interface Transport {
+
+    /**
+     * Nome del trasporto (per i log).
+     */
+    String getName();
+
+    /**
+     * Inizia ad accettare connessioni. Non blocca il chiamante.
+     */
+    void start(RequestPipeline pipeline) throws IOException;
+
+    /**
+     * Chiusura ordinata: niente nuove connessioni né nuove letture; le
+     * richieste già ricevute vengono completate e le risposte inviate.
+     * @param deadlineNanos scadenza (System.nanoTime()) oltre cui smettere di attendere
+     * @return false se la scadenza è stata raggiunta con lavoro ancora in corso
+     */
+    boolean drain(long deadlineNanos);
+
+    /**
+     * Chiude tutte le connessioni e libera le risorse del trasporto.
+     */
+    void close();
+
+    /**
+     * Metriche del trasporto da stampare (una per riga), o null se non ne ha.
+     */
+    default String getStats() {
+        return null;
+    }
+}
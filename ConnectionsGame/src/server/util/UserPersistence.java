@@ -0,0 +1,144 @@
+package server.util;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import server.manager.UserManager;
+import server.model.User;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salva e carica gli utenti (credenziali e statistiche) su file JSON.
+ *
+ * Il salvataggio scrive un file temporaneo, lo sincronizza su disco e lo
+ * rinomina sopra quello vecchio con una move atomica: un crash a metà
+ * scrittura lascia sempre intatto l'ultimo snapshot completo.
+ * Come JsonGameLoader usa la Streaming API di GSON, un utente alla volta.
+ */
+public class UserPersistence {
+    private static final Gson GSON = new Gson();
+
+    private final File file;
+    private final File tempFile;
+    private ScheduledExecutorService scheduler;
+
+    public UserPersistence(String filePath) {
+        this.file = new File(filePath);
+        this.tempFile = new File(filePath + ".tmp");
+    }
+
+    /**
+     * Carica gli utenti salvati, se il file esiste.
+     */
+    public void load(UserManager userManager) throws IOException {
+        if (!file.exists()) {
+            System.out.println("[OK] Nessun file utenti (" + file.getPath() + "): si parte da zero");
+            return;
+        }
+
+        Map<String, User> users = new HashMap<>();
+        try (JsonReader reader = new JsonReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                User user = GSON.fromJson(reader, User.class);
+                users.put(user.getUsername(), user);
+            }
+            reader.endArray();
+        }
+
+        userManager.loadUsers(users);
+    }
+
+    /**
+     * Scrive uno snapshot di tutti gli utenti (atomico rispetto al file precedente).
+     * @return numero di utenti salvati
+     */
+    public synchronized int save(UserManager userManager) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        int count = 0;
+        try (FileOutputStream output = new FileOutputStream(tempFile)) {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+            writer.beginArray();
+            for (User user : userManager.getAllUsers()) {
+                // Le statistiche di un utente vengono aggiornate sotto il suo lock
+                synchronized (user) {
+                    GSON.toJson(user, User.class, writer);
+                }
+                count++;
+            }
+            writer.endArray();
+            writer.flush();
+            output.getFD().sync();
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return count;
+    }
+
+    /**
+     * Avvia il salvataggio periodico (intervalSeconds <= 0: disattivato).
+     */
+    public void startPeriodic(UserManager userManager, int intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "user-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                save(userManager);
+            } catch (IOException e) {
+                System.err.println("[ERR] Salvataggio utenti fallito: " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ferma il salvataggio periodico (un salvataggio in corso viene completato).
+     */
+    public void stopPeriodic() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public String getPath() {
+        return file.getPath();
+    }
+}